@@ -0,0 +1,71 @@
+package com.therl.fliprunner;
+
+import android.app.Instrumentation;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that changing the game state allocates nothing once warmed up. A
+ * state change posts the status text to the UI thread, which only a real
+ * Handler and its Message pool can show, so this runs on a device while
+ * FrameAllocationTest covers the frame on the JVM.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StateChangeAllocationTest {
+    private static final int WARMUP_CYCLES = 200;
+    private static final int CYCLES = 1000;
+
+    // Debug's alloc counting is deprecated since API 23 but still the only
+    // per-thread object count on a device; the JVM tests use ThreadMXBean.
+    @SuppressWarnings("deprecation")
+    @Test
+    public void setState_doesNotAllocate() throws Exception {
+        final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        final GameSurface[] surface = new GameSurface[1];
+        // the status Handler needs the main looper
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                surface[0] = new GameSurface(instrumentation.getTargetContext(), null);
+            }
+        });
+        GameSurface.GameThread thread = surface[0].getThread();
+        for (int i = 0; i < WARMUP_CYCLES; i++) {
+            cycle(thread);
+            // lets the UI thread handle the messages and return them to the pool
+            instrumentation.waitForIdleSync();
+        }
+
+        long allocated = 0;
+        Debug.startAllocCounting();
+        try {
+            for (int i = 0; i < CYCLES; i++) {
+                int before = Debug.getThreadAllocCount();
+                cycle(thread);
+                allocated += Debug.getThreadAllocCount() - before;
+                instrumentation.waitForIdleSync();
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        assertEquals("objects allocated over " + CYCLES + " cycles", 0, allocated);
+    }
+
+    /**
+     * Goes through every state the way a run does: ready, running, paused,
+     * running again and lost.
+     */
+    private static void cycle(GameSurface.GameThread thread) {
+        thread.setState(GameSurface.GameThread.STATE_READY);
+        thread.setState(GameSurface.GameThread.STATE_RUNNING);
+        thread.setState(GameSurface.GameThread.STATE_PAUSE);
+        thread.setState(GameSurface.GameThread.STATE_RUNNING);
+        thread.setState(GameSurface.GameThread.STATE_LOSE);
+    }
+}
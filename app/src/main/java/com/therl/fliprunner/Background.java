@@ -0,0 +1,64 @@
+package com.therl.fliprunner;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+/**
+ * The scrolling background, drawn as a row of unscaled tiles.
+ *
+ * The tile is the background image scaled to the surface height, which
+ * GameAssets decodes and caches, usually ahead of time. Drawing is then a
+ * couple of 1:1 blits per frame, the cheapest thing a software canvas can
+ * do.
+ */
+public class Background {
+    /** How fast the background scrolls compared to the obstacles */
+    public static final float PARALLAX = 0.25f;
+
+    private final GameAssets mAssets;
+
+    /** The image scaled to the surface height, or null before sizing. */
+    private Bitmap mTile;
+    /** Surface height mTile was made for. */
+    private int mHeight;
+
+    public Background(GameAssets assets) {
+        mAssets = assets;
+    }
+
+    /**
+     * Fetches the tile for a surface size. Does nothing if the height has
+     * not changed, since the tile only depends on the height. May wait for
+     * the image to be decoded.
+     */
+    public void setSurfaceSize(int width, int height) {
+        if (height <= 0 || (mTile != null && height == mHeight)) return;
+        Bitmap tile = mAssets.getBackground(height);
+        if (tile == null) return;
+        mTile = tile;
+        mHeight = height;
+    }
+
+    /**
+     * @return the image scaled to the surface height, or null before
+     *         setSurfaceSize() has succeeded
+     */
+    public Bitmap getTile() {
+        return mTile;
+    }
+
+    /**
+     * Covers the canvas with the background. Operations on the Canvas
+     * accumulate so this is like clearing the screen.
+     *
+     * @param scroll distance the track has scrolled, in pixels
+     */
+    public void doDraw(Canvas canvas, int canvasWidth, double scroll) {
+        if (mTile == null) return;
+        int tileWidth = mTile.getWidth();
+        float x = -(float) ((scroll * PARALLAX) % tileWidth);
+        for (; x < canvasWidth; x += tileWidth) {
+            canvas.drawBitmap(mTile, x, 0, null);
+        }
+    }
+}
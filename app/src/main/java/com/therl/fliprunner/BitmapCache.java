@@ -0,0 +1,65 @@
+package com.therl.fliprunner;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * Decoded bitmaps by key, bounded by the memory their pixels take rather
+ * than by count. When a put goes over the budget the least recently used
+ * bitmaps are dropped. They are not recycled, since a renderer may still
+ * be drawing one; the GC frees them once nothing uses them.
+ *
+ * Safe to use from any thread.
+ */
+public class BitmapCache {
+    /** Share of the heap the cache may fill by default */
+    private static final int HEAP_FRACTION = 8;
+
+    private final LruCache<String, Bitmap> mCache;
+
+    /**
+     * @param maxBytes most pixel memory to hold on to
+     */
+    public BitmapCache(int maxBytes) {
+        mCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getRowBytes() * value.getHeight();
+            }
+        };
+    }
+
+    /**
+     * @return a budget of a fixed share of the heap
+     */
+    public static int defaultMaxBytes() {
+        return (int) Math.min(Runtime.getRuntime().maxMemory() / HEAP_FRACTION,
+                Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the bitmap, or null if it was never put or has been dropped
+     */
+    public Bitmap get(String key) {
+        return mCache.get(key);
+    }
+
+    public void put(String key, Bitmap bitmap) {
+        mCache.put(key, bitmap);
+    }
+
+    public void evictAll() {
+        mCache.evictAll();
+    }
+
+    /**
+     * @return bytes of pixels held
+     */
+    public int size() {
+        return mCache.size();
+    }
+
+    public int maxSize() {
+        return mCache.maxSize();
+    }
+}
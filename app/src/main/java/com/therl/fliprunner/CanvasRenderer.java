@@ -0,0 +1,361 @@
+package com.therl.fliprunner;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.view.SurfaceHolder;
+
+/**
+ * Draws on a software Canvas locked from the SurfaceHolder. Works on every
+ * device, but the CPU fills every pixel of every frame, so it is only the
+ * fallback for devices without OpenGL ES 2.0.
+ *
+ * In dirty rect mode it instead repaints only the rects of what moved:
+ * each sprite and particle batch where it is this frame and where it was
+ * the last one. Draw calls are collected until endFrame(), which locks the
+ * bounding box of those rects with lockCanvas(Rect), then, clipped to each
+ * rect in turn, restores the background and draws what overlaps it. The
+ * background stands still in this mode, since a scrolling one would make
+ * the whole screen dirty every frame.
+ */
+public class CanvasRenderer implements SurfaceRenderer {
+    /*
+     * Batched primitives, kept for dirty rect mode
+     */
+    private static final int OP_POINTS = 0;
+    private static final int OP_LINES = 1;
+
+    private final SurfaceHolder mSurfaceHolder;
+    /** The scrolling background of the animation canvas */
+    private final Background mBackground;
+    /** Paint for the player, shared by every frame. */
+    private final Paint mPlayerPaint = new Paint();
+    /** Paint for all obstacles, shared by every frame. */
+    private final Paint mObstaclePaint = new Paint();
+    /** Paint for all points and lines; only its color and width change */
+    private final Paint mParticlePaint = new Paint();
+    /** Whether to repaint only what changed */
+    private final boolean mDirtyRects;
+
+    /** The canvas of the current frame, or null between frames */
+    private Canvas mCanvas;
+    private int mWidth;
+    private int mHeight;
+
+    /*
+     * Dirty rect mode state
+     */
+    /** Rects of everything drawn this frame */
+    private final DirtyRects mCurrent = new DirtyRects();
+    /** Rects of everything drawn last frame, which have to be erased */
+    private final DirtyRects mPrevious = new DirtyRects();
+    /** What endFrame() repaints: both of the above, merged */
+    private final DirtyRects mDirty = new DirtyRects();
+    private final DirtyRegion mBounds = new DirtyRegion();
+    private final Rect mLockRect = new Rect();
+    /** Set when the whole surface has to be repainted, e.g. after a resize */
+    private boolean mFullRedraw = true;
+    /** Sprites of this frame, replayed in endFrame() */
+    private int mSpriteCount;
+    private int[] mSprites = new int[16];
+    private float[] mSpriteRects = new float[16 * 4];
+    /** Point and line batches of this frame, replayed in endFrame() */
+    private int mBatchCount;
+    private float[][] mBatchData = new float[4][];
+    /** op, count, color per batch */
+    private int[] mBatchInfo = new int[4 * 3];
+    private float[] mBatchSizes = new float[4];
+    /** left, top, right, bottom per batch */
+    private float[] mBatchBounds = new float[4 * 4];
+    /** Overlay to draw this frame, or null */
+    private StatsOverlay mOverlay;
+    /** Pixels repainted by the last frame */
+    private long mLastDirtyArea;
+    /** Pixels locked by the last frame */
+    private long mLastLockedArea;
+
+    public CanvasRenderer(SurfaceHolder surfaceHolder, GameAssets assets) {
+        this(surfaceHolder, assets, false);
+    }
+
+    /**
+     * @param dirtyRects whether to repaint only what changed; see above
+     */
+    public CanvasRenderer(SurfaceHolder surfaceHolder, GameAssets assets, boolean dirtyRects) {
+        mSurfaceHolder = surfaceHolder;
+        mDirtyRects = dirtyRects;
+        mBackground = new Background(assets);
+        mPlayerPaint.setStyle(Paint.Style.FILL);
+        mObstaclePaint.setStyle(Paint.Style.FILL);
+        // round dots, and streaks that end in round caps
+        mParticlePaint.setStrokeCap(Paint.Cap.ROUND);
+    }
+
+    @Override
+    public boolean beginFrame(int width, int height) {
+        // Decodes only when the height changed.
+        mBackground.setSurfaceSize(width, height);
+        if (width != mWidth || height != mHeight) mFullRedraw = true;
+        mWidth = width;
+        mHeight = height;
+        if (mDirtyRects) {
+            // We lock in endFrame(), once we know what changed.
+            mCurrent.setEmpty();
+            mSpriteCount = 0;
+            mBatchCount = 0;
+            mOverlay = null;
+            return true;
+        }
+        mCanvas = mSurfaceHolder.lockCanvas(null);
+        return mCanvas != null;
+    }
+
+    @Override
+    public void drawBackground(double scroll) {
+        // In dirty rect mode endFrame() restores it where needed.
+        if (!mDirtyRects) mBackground.doDraw(mCanvas, mWidth, scroll);
+    }
+
+    @Override
+    public void drawSprite(int sprite, float left, float top, float right, float bottom) {
+        if (mDirtyRects) {
+            addSprite(sprite, left, top, right, bottom);
+            mCurrent.addSprite(left, top, right, bottom);
+            return;
+        }
+        paintSprite(mCanvas, sprite, left, top, right, bottom);
+    }
+
+    @Override
+    public void drawPoints(float[] points, int count, float size, int color) {
+        if (mDirtyRects) {
+            addBatch(OP_POINTS, points, count, size, color);
+            return;
+        }
+        paintBatch(mCanvas, OP_POINTS, points, count, size, color);
+    }
+
+    @Override
+    public void drawLines(float[] lines, int count, float width, int color) {
+        if (mDirtyRects) {
+            addBatch(OP_LINES, lines, count, width, color);
+            return;
+        }
+        paintBatch(mCanvas, OP_LINES, lines, count, width, color);
+    }
+
+    @Override
+    public void drawOverlay(StatsOverlay overlay) {
+        if (mDirtyRects) {
+            mOverlay = overlay;
+            mCurrent.add(0, 0, overlay.getWidth(), overlay.getHeight());
+            return;
+        }
+        overlay.doDraw(mCanvas);
+    }
+
+    @Override
+    public void endFrame() {
+        if (mDirtyRects) {
+            paintDirty();
+            return;
+        }
+        mSurfaceHolder.unlockCanvasAndPost(mCanvas);
+        mCanvas = null;
+        mLastDirtyArea = (long) mWidth * mHeight;
+        mLastLockedArea = mLastDirtyArea;
+    }
+
+    /**
+     * Locks the bounding box of this frame's and the last frame's rects,
+     * then in each of those rects restores the background and draws what
+     * of the frame overlaps it.
+     */
+    private void paintDirty() {
+        mDirty.set(mCurrent);
+        mDirty.add(mPrevious);
+        if (mFullRedraw) {
+            mDirty.setEmpty();
+            mDirty.add(0, 0, mWidth, mHeight);
+        }
+        mDirty.clip(mWidth, mHeight);
+        mDirty.merge();
+        if (mDirty.isEmpty()) {
+            mLastDirtyArea = 0;
+            mLastLockedArea = 0;
+            return;
+        }
+
+        mDirty.getBounds(mBounds);
+        mLockRect.set(mBounds.getLeft(), mBounds.getTop(), mBounds.getRight(),
+                mBounds.getBottom());
+        Canvas canvas = mSurfaceHolder.lockCanvas(mLockRect);
+        if (canvas == null) {
+            // we don't know what is on screen any more
+            mFullRedraw = true;
+            return;
+        }
+        if (mLockRect.left != mBounds.getLeft() || mLockRect.top != mBounds.getTop()
+                || mLockRect.right != mBounds.getRight()
+                || mLockRect.bottom != mBounds.getBottom()) {
+            // The surface grew the rect, e.g. when it had no previous buffer
+            // to copy the rest from: all of it has to be painted.
+            mDirty.setEmpty();
+            mDirty.add(mLockRect.left, mLockRect.top, mLockRect.right, mLockRect.bottom);
+        }
+        try {
+            for (int i = 0; i < mDirty.getCount(); i++) {
+                canvas.save();
+                canvas.clipRect(mDirty.getLeft(i), mDirty.getTop(i), mDirty.getRight(i),
+                        mDirty.getBottom(i));
+                paintRect(canvas, i);
+                canvas.restore();
+            }
+        } finally {
+            mSurfaceHolder.unlockCanvasAndPost(canvas);
+        }
+        mLastDirtyArea = mDirty.getArea();
+        mLastLockedArea = (long) mLockRect.width() * mLockRect.height();
+        mPrevious.set(mCurrent);
+        mFullRedraw = false;
+    }
+
+    /**
+     * Restores the background in dirty rect i and draws on top what of the
+     * frame overlaps it. The canvas is already clipped to the rect.
+     */
+    private void paintRect(Canvas canvas, int i) {
+        mBackground.doDraw(canvas, mWidth, 0);
+        float margin = DirtyRects.MARGIN;
+        for (int s = 0; s < mSpriteCount; s++) {
+            int r = s * 4;
+            if (mDirty.intersects(i, mSpriteRects[r] - margin, mSpriteRects[r + 1] - margin,
+                    mSpriteRects[r + 2] + margin, mSpriteRects[r + 3] + margin)) {
+                paintSprite(canvas, mSprites[s], mSpriteRects[r], mSpriteRects[r + 1],
+                        mSpriteRects[r + 2], mSpriteRects[r + 3]);
+            }
+        }
+        for (int b = 0; b < mBatchCount; b++) {
+            int r = b * 4;
+            if (mDirty.intersects(i, mBatchBounds[r], mBatchBounds[r + 1], mBatchBounds[r + 2],
+                    mBatchBounds[r + 3])) {
+                paintBatch(canvas, mBatchInfo[b * 3], mBatchData[b], mBatchInfo[b * 3 + 1],
+                        mBatchSizes[b], mBatchInfo[b * 3 + 2]);
+            }
+        }
+        if (mOverlay != null
+                && mDirty.intersects(i, 0, 0, mOverlay.getWidth(), mOverlay.getHeight())) {
+            mOverlay.doDraw(canvas);
+        }
+    }
+
+    private void addSprite(int sprite, float left, float top, float right, float bottom) {
+        if (mSpriteCount == mSprites.length) {
+            int[] sprites = new int[mSpriteCount * 2];
+            System.arraycopy(mSprites, 0, sprites, 0, mSpriteCount);
+            mSprites = sprites;
+            float[] rects = new float[sprites.length * 4];
+            System.arraycopy(mSpriteRects, 0, rects, 0, mSpriteCount * 4);
+            mSpriteRects = rects;
+        }
+        int r = mSpriteCount * 4;
+        mSprites[mSpriteCount] = sprite;
+        mSpriteRects[r] = left;
+        mSpriteRects[r + 1] = top;
+        mSpriteRects[r + 2] = right;
+        mSpriteRects[r + 3] = bottom;
+        mSpriteCount++;
+    }
+
+    /**
+     * Keeps a batch to paint in endFrame(), and adds a rect around it to
+     * this frame's. The coordinates are not copied; callers keep them unchanged
+     * until the frame ends.
+     */
+    private void addBatch(int op, float[] coords, int count, float size, int color) {
+        if (mBatchCount == mBatchSizes.length) {
+            int grown = mBatchCount * 2;
+            float[][] data = new float[grown][];
+            System.arraycopy(mBatchData, 0, data, 0, mBatchCount);
+            mBatchData = data;
+            int[] info = new int[grown * 3];
+            System.arraycopy(mBatchInfo, 0, info, 0, mBatchCount * 3);
+            mBatchInfo = info;
+            float[] sizes = new float[grown];
+            System.arraycopy(mBatchSizes, 0, sizes, 0, mBatchCount);
+            mBatchSizes = sizes;
+            float[] bounds = new float[grown * 4];
+            System.arraycopy(mBatchBounds, 0, bounds, 0, mBatchCount * 4);
+            mBatchBounds = bounds;
+        }
+        mBatchData[mBatchCount] = coords;
+        mBatchInfo[mBatchCount * 3] = op;
+        mBatchInfo[mBatchCount * 3 + 1] = count;
+        mBatchInfo[mBatchCount * 3 + 2] = color;
+        mBatchSizes[mBatchCount] = size;
+        int rects = mCurrent.getCount();
+        mCurrent.addBatch(coords, count * (op == OP_POINTS ? 2 : 4), size);
+        int r = mBatchCount * 4;
+        if (mCurrent.getCount() > rects) {
+            mBatchBounds[r] = mCurrent.getLeft(rects);
+            mBatchBounds[r + 1] = mCurrent.getTop(rects);
+            mBatchBounds[r + 2] = mCurrent.getRight(rects);
+            mBatchBounds[r + 3] = mCurrent.getBottom(rects);
+        } else {
+            mBatchBounds[r] = mBatchBounds[r + 1] = mBatchBounds[r + 2] = mBatchBounds[r + 3] = 0;
+        }
+        mBatchCount++;
+    }
+
+    private void paintBatch(Canvas canvas, int op, float[] coords, int count, float size,
+                            int color) {
+        mParticlePaint.setColor(color);
+        mParticlePaint.setStrokeWidth(size);
+        if (op == OP_POINTS) {
+            canvas.drawPoints(coords, 0, count * 2, mParticlePaint);
+        } else {
+            canvas.drawLines(coords, 0, count * 4, mParticlePaint);
+        }
+    }
+
+    private void paintSprite(Canvas canvas, int sprite, float left, float top, float right,
+                             float bottom) {
+        switch (sprite) {
+            case SPRITE_PLAYER:
+                canvas.drawCircle((left + right) / 2, (top + bottom) / 2, (right - left) / 2,
+                        mPlayerPaint);
+                break;
+            case SPRITE_OBSTACLE:
+                canvas.drawRect(left, top, right, bottom, mObstaclePaint);
+                break;
+        }
+    }
+
+    /**
+     * @return pixels the last frame repainted, to compare the two modes;
+     *         pixels where dirty rects overlap count once per rect
+     */
+    public long getLastDirtyArea() {
+        return mLastDirtyArea;
+    }
+
+    /**
+     * @return pixels the last frame locked, which the surface copies from
+     *         the previous buffer where they weren't repainted
+     */
+    public long getLastLockedArea() {
+        return mLastLockedArea;
+    }
+
+    @Override
+    public boolean hasFailed() {
+        // a null canvas is the surface going away, not the renderer failing
+        return false;
+    }
+
+    @Override
+    public void release() {
+        // nothing is held between frames, but the next surface starts blank
+        mFullRedraw = true;
+    }
+}
@@ -0,0 +1,221 @@
+package com.therl.fliprunner;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Paces the render thread to the display refresh, or to a target frame rate
+ * when no vsync signal is available.
+ *
+ * RenderThread calls {@link #awaitFrame()} once per frame. Where the
+ * platform has Choreographer (API 16+) the call blocks until the next vsync
+ * that falls on the target frame rate; on older devices it sleeps until the
+ * next frame deadline instead.
+ */
+public class FramePacer {
+    /*
+     * Pacing constants
+     */
+    public static final int DEFAULT_TARGET_FPS = 60;
+    /** Vsync timestamps jitter; accept a vsync this early for a frame slot */
+    private static final long VSYNC_SLOP_NANOS = 2000000L;
+    /**
+     * How far, as a fraction of the vsync period, the target interval may
+     * fall short of a whole number of periods and still count as that
+     * number: 60fps stays 60 on a 61Hz panel.
+     */
+    private static final double PERIOD_TOLERANCE = 0.05;
+
+    /** Receives display refresh notifications from a VsyncSource. */
+    public interface Callback {
+        void onVsync(long frameTimeNanos);
+    }
+
+    /** Something that calls back once per display refresh, like Choreographer. */
+    public interface VsyncSource {
+        void start(Callback callback);
+        void stop();
+    }
+
+    /** Where vsync comes from, or null to pace by sleeping. */
+    private final VsyncSource mSource;
+    private final Callback mCallback = new Callback() {
+        @Override
+        public void onVsync(long frameTimeNanos) {
+            synchronized (FramePacer.this) {
+                updateVsyncPeriod(frameTimeNanos - mLastVsync);
+                mLastVsync = frameTimeNanos;
+                FramePacer.this.notifyAll();
+            }
+        }
+    };
+
+    /** Minimum time between two frames, from the target frame rate. */
+    private long mFrameIntervalNanos;
+    /** Time of the frame last handed out by awaitFrame(). */
+    private long mLastFrame;
+    /** Time of the most recent vsync reported by the source. */
+    private long mLastVsync;
+    /** Measured time between two vsyncs, or 0 until we have seen two. */
+    private long mVsyncPeriodNanos;
+    /** Whether we are between start() and stop(). */
+    private boolean mStarted;
+
+    public FramePacer(VsyncSource source, int targetFps) {
+        mSource = source;
+        setTargetFps(targetFps);
+    }
+
+    /**
+     * Creates a pacer that follows vsync where the platform supports it.
+     *
+     * @param targetFps most frames per second to hand out
+     */
+    public static FramePacer create(int targetFps) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return new FramePacer(new ChoreographerSource(), targetFps);
+        }
+        return new FramePacer(null, targetFps);
+    }
+
+    /**
+     * Sets the frame rate to aim for. With vsync available this is rounded
+     * down to a whole fraction of the measured display rate, e.g. 55 runs
+     * at 30 on a 60Hz panel, and 60 at 60.
+     *
+     * @param fps frames per second, at least 1
+     */
+    public synchronized void setTargetFps(int fps) {
+        mFrameIntervalNanos = 1000000000L / Math.max(1, fps);
+    }
+
+    /**
+     * Starts listening for vsync. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (mStarted) return;
+        mStarted = true;
+        if (mSource != null) mSource.start(mCallback);
+    }
+
+    /**
+     * Stops listening for vsync and releases a thread blocked in
+     * awaitFrame(). Does nothing if already stopped.
+     */
+    public synchronized void stop() {
+        if (!mStarted) return;
+        mStarted = false;
+        if (mSource != null) mSource.stop();
+        notifyAll();
+    }
+
+    /**
+     * Blocks until the next frame is due. Returns early if the pacer is
+     * stopped, so callers must re-check their own run flag.
+     *
+     * @return the time of the frame, in System.nanoTime() units
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public long awaitFrame() throws InterruptedException {
+        if (mSource == null) return sleepUntilDeadline();
+        synchronized (this) {
+            while (mStarted && !isFrameDue()) wait();
+            mLastFrame = mLastVsync;
+            return mLastFrame;
+        }
+    }
+
+    /**
+     * Whether the most recent vsync is far enough past the last frame to
+     * hand out, i.e. whether awaitFrame() would return without waiting.
+     * The target interval is snapped up to a whole number of vsync periods
+     * once the period is known.
+     */
+    synchronized boolean isFrameDue() {
+        long interval = mFrameIntervalNanos;
+        long slop = VSYNC_SLOP_NANOS;
+        if (mVsyncPeriodNanos > 0) {
+            int periods = Math.max(1, (int) Math.ceil(
+                    (double) interval / mVsyncPeriodNanos - PERIOD_TOLERANCE));
+            interval = periods * mVsyncPeriodNanos;
+            slop = mVsyncPeriodNanos / 2;
+        }
+        return mLastVsync >= mLastFrame + interval - slop;
+    }
+
+    /**
+     * Folds the time since the previous vsync into the measured period.
+     * Gaps of a vsync or more that was never reported, after stop() or
+     * while the UI thread was busy, are left out.
+     */
+    private void updateVsyncPeriod(long delta) {
+        if (mLastVsync == 0 || delta <= 0) return;
+        if (mVsyncPeriodNanos == 0 || delta * 3 < mVsyncPeriodNanos * 2) {
+            // the first, or the one before was measured across a missed vsync
+            mVsyncPeriodNanos = delta;
+        } else if (delta * 2 < mVsyncPeriodNanos * 3) {
+            mVsyncPeriodNanos += (delta - mVsyncPeriodNanos) / 8;
+        }
+    }
+
+    private long sleepUntilDeadline() throws InterruptedException {
+        long interval;
+        synchronized (this) {
+            interval = mFrameIntervalNanos;
+        }
+        long now = System.nanoTime();
+        long deadline = mLastFrame + interval;
+        if (deadline > now) {
+            long sleep = deadline - now;
+            Thread.sleep(sleep / 1000000L, (int) (sleep % 1000000L));
+            now = deadline;
+        } else if (now - deadline > interval) {
+            // We missed more than a whole frame; don't try to make it up.
+            deadline = now;
+        }
+        mLastFrame = deadline;
+        return now;
+    }
+
+    /**
+     * Vsync from the main thread's Choreographer. The callback runs on the UI
+     * thread, so it must do no more than record the time and notify.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class ChoreographerSource implements VsyncSource,
+            Choreographer.FrameCallback {
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+        private volatile Callback mCallback;
+
+        @Override
+        public void start(Callback callback) {
+            mCallback = callback;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    Choreographer.getInstance().removeFrameCallback(ChoreographerSource.this);
+                    if (mCallback != null) {
+                        Choreographer.getInstance().postFrameCallback(ChoreographerSource.this);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void stop() {
+            mCallback = null;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            Callback callback = mCallback;
+            // Stopped: let the callback chain die out.
+            if (callback == null) return;
+            callback.onVsync(frameTimeNanos);
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.therl.fliprunner;
 
+import android.content.Context;
 import android.content.pm.ActivityInfo;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
@@ -7,7 +8,48 @@ import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+
 public class GameActivity extends AppCompatActivity {
+    /** Where frame timing is exported, in the app's external files dir */
+    private static final String STATS_FILE = "frame_stats.csv";
+    /** Where the running game is autosaved, in the app's files dir */
+    private static final String AUTOSAVE_FILE = "autosave.bin";
+    /** Where finished runs are kept, in the app's files dir */
+    private static final String SCORES_FILE = "scores.log";
+    /**
+     * Where the input of recent runs is logged, next to the frame stats;
+     * capped, with the runs before in the same name plus ".1"
+     */
+    private static final String INPUT_LOG_FILE = "input.log";
+    /**
+     * Int extra that lets AutoPlayer play, for automated performance runs:
+     * microseconds of search per step
+     */
+    public static final String EXTRA_AUTOPLAY_MICROS = "autoplay_us";
+    /**
+     * Int extra that replays the last run in the input log instead of
+     * playing: steps of the replay per step of real time, e.g. 1 to watch
+     * it as it was played
+     */
+    public static final String EXTRA_REPLAY_SPEED = "replay_speed";
+    /**
+     * String extra that forces the Canvas renderer, to compare it with
+     * OpenGL ES: RENDERER_CANVAS for full frames, RENDERER_CANVAS_DIRTY for
+     * dirty rect mode. Without it OpenGL ES is used where the device has it.
+     */
+    public static final String EXTRA_RENDERER = "renderer";
+    public static final String RENDERER_CANVAS = "canvas";
+    public static final String RENDERER_CANVAS_DIRTY = "canvas_dirty";
+
+    /**
+     * Scores of the whole process. Never closed: its thread is a daemon
+     * and every score is on disk once written.
+     */
+    private static ScoreStore sScores;
 
     /** A handle to the thread that's actually running the animation. */
     private GameSurface.GameThread mGameThread;
@@ -22,6 +64,10 @@ public class GameActivity extends AppCompatActivity {
         // get handles to the LunarView from XML, and its LunarThread
         mGameSurface = (GameSurface) findViewById(R.id.game);
         mGameSurface.setOnTouchListener(new OnSwipeTouchListener(this){
+            @Override
+            public void onSwipeLatency(long latencyMillis) {
+                mGameSurface.onSwipeLatency(latencyMillis);
+            }
             @Override
             public void onSwipeTop() {
                 mGameSurface.onSwipeTop();
@@ -37,9 +83,28 @@ public class GameActivity extends AppCompatActivity {
             }
         });
         mGameThread = mGameSurface.getThread();
-        if (savedInstanceState == null) {
-            // we were just launched: set up a new game
-            mGameThread.setState(mGameThread.STATE_READY);
+        String renderer = getIntent().getStringExtra(EXTRA_RENDERER);
+        if (RENDERER_CANVAS.equals(renderer) || RENDERER_CANVAS_DIRTY.equals(renderer)) {
+            mGameThread.setRenderer(new CanvasRenderer(mGameSurface.getHolder(),
+                    GameAssets.get(this), RENDERER_CANVAS_DIRTY.equals(renderer)));
+        }
+        mGameThread.setAutosaveFile(new File(getFilesDir(), AUTOSAVE_FILE));
+        // runs can be pulled off the device and replayed with InputLog
+        File dir = getExternalFilesDir(null);
+        if (dir == null) dir = getFilesDir();
+        File inputLog = new File(dir, INPUT_LOG_FILE);
+        // read before the log is opened for writing, which may rotate it
+        int replaySpeed = getIntent().getIntExtra(EXTRA_REPLAY_SPEED, 0);
+        InputLog replay = replaySpeed > 0 ? readLastRun(inputLog) : null;
+        mGameThread.setInputLogFile(inputLog);
+        mGameThread.setScoreStore(getScores(this));
+        mGameThread.setAutoPlay(getIntent().getIntExtra(EXTRA_AUTOPLAY_MICROS, 0) * 1000L);
+        if (replay != null) {
+            mGameThread.startReplay(replay, replaySpeed);
+        } else if (savedInstanceState == null) {
+            // we were just launched: pick up a run the process died in, or
+            // set up a new game
+            mGameThread.restoreAutosave();
             Log.w(this.getClass().getName(), "SIS is null");
         } else {
             // we are being restored: resume a previous game
@@ -48,12 +113,53 @@ public class GameActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * @return the last run recorded in the input log, or in the one before
+     *         it if a new one was just started; null if there is none or
+     *         it cannot be read
+     */
+    private static InputLog readLastRun(File file) {
+        File[] files = {file, new File(file.getPath() + ".1")};
+        for (File f : files) {
+            if (!f.exists()) continue;
+            try {
+                FileInputStream in = new FileInputStream(f);
+                try {
+                    List<InputLog> runs = InputLog.readAll(in);
+                    if (!runs.isEmpty()) return runs.get(runs.size() - 1);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                Log.w(GameActivity.class.getName(), "Could not read " + f, e);
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the store of finished runs, opened on first use. There is no
+     *         leaderboard server yet, so scores stay on the device; pass a
+     *         LeaderboardClient to upload them.
+     */
+    public static synchronized ScoreStore getScores(Context context) {
+        if (sScores == null) {
+            sScores = new ScoreStore(new File(context.getFilesDir(), SCORES_FILE), null);
+        }
+        return sScores;
+    }
+
     /**
      * Invoked when the Activity loses user focus.
      */
     @Override
     protected void onPause() {
         mGameSurface.getThread().pause(); // pause game when Activity pauses
+        // keep the frame timing of this session for offline analysis
+        File dir = getExternalFilesDir(null);
+        if (dir == null) dir = getFilesDir();
+        mGameThread.exportStats(new File(dir, STATS_FILE));
         super.onPause();
     }
 
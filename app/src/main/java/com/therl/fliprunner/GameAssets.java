@@ -0,0 +1,297 @@
+package com.therl.fliprunner;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads and keeps the game's assets: the background, the sprite atlas
+ * packed at build time by the packAtlas task, and the physics tuning.
+ *
+ * All decoding happens on one background thread, one image at a time, so
+ * MainActivity can start it with preload() while the menu is showing and
+ * whoever needs an image later just waits for that thread, which has
+ * usually finished by then. Decoded bitmaps live in a BitmapCache. There is
+ * one instance per process.
+ */
+public class GameAssets {
+    private static final String TAG = GameAssets.class.getName();
+    /** Index written by the packAtlas task, in the app's assets */
+    private static final String ATLAS_INDEX = "sprites.atlas";
+    /** Physics tuning, in the app's assets */
+    private static final String PHYSICS_TABLE = "physics.table";
+
+    private static GameAssets sInstance;
+
+    private final Resources mResources;
+    private final AssetManager mAssets;
+    private final BitmapCache mCache = new BitmapCache(BitmapCache.defaultMaxBytes());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "GameAssets");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /** Only touched on the executor thread */
+    private SpriteAtlas mAtlas;
+    private PhysicsTable mPhysics;
+
+    /** When the instance was created, taken as the start of the app */
+    private final long mStartNanos = System.nanoTime();
+    private volatile long mPreloadMillis = -1;
+    private volatile long mFirstFrameMillis = -1;
+
+    private GameAssets(Context context) {
+        mResources = context.getResources();
+        mAssets = context.getAssets();
+    }
+
+    public static synchronized GameAssets get(Context context) {
+        if (sInstance == null) sInstance = new GameAssets(context.getApplicationContext());
+        return sInstance;
+    }
+
+    /**
+     * Starts decoding everything the game needs, in the background.
+     *
+     * @param height expected height of the game surface, in pixels
+     */
+    public void preload(final int height) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                loadPhysics();
+                loadAtlas();
+                loadAtlasBitmap();
+                loadBackground(height);
+                mPreloadMillis = (System.nanoTime() - mStartNanos) / 1000000L;
+                Log.i(TAG, "Assets preloaded " + mPreloadMillis + " ms after start");
+            }
+        });
+    }
+
+    /**
+     * @param height surface height to scale to, in pixels
+     * @return the background scaled to the height, or null if it could not
+     *         be decoded; blocks until it is ready
+     */
+    public Bitmap getBackground(final int height) {
+        return await(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                return loadBackground(height);
+            }
+        });
+    }
+
+    /**
+     * @return where each sprite is in getAtlasBitmap(), or null if the index
+     *         could not be read; blocks until it is ready
+     */
+    public SpriteAtlas getAtlas() {
+        return await(new Callable<SpriteAtlas>() {
+            @Override
+            public SpriteAtlas call() {
+                return loadAtlas();
+            }
+        });
+    }
+
+    /**
+     * @return the physics tuning, or PhysicsTable.DEFAULT if it could not be
+     *         read; blocks until it is ready
+     */
+    public PhysicsTable getPhysics() {
+        PhysicsTable physics = await(new Callable<PhysicsTable>() {
+            @Override
+            public PhysicsTable call() {
+                return loadPhysics();
+            }
+        });
+        return physics != null ? physics : PhysicsTable.DEFAULT;
+    }
+
+    /**
+     * @return the packed sprites, or null if they could not be decoded;
+     *         blocks until they are ready
+     */
+    public Bitmap getAtlasBitmap() {
+        return await(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                return loadAtlasBitmap();
+            }
+        });
+    }
+
+    /**
+     * Records that the game drew its first frame and logs how long startup
+     * took. Only the first call counts.
+     */
+    public void reportFirstFrame() {
+        if (mFirstFrameMillis >= 0) return;
+        mFirstFrameMillis = (System.nanoTime() - mStartNanos) / 1000000L;
+        Log.i(TAG, "Startup: assets ready " + mPreloadMillis + " ms, first frame "
+                + mFirstFrameMillis + " ms after start");
+    }
+
+    /**
+     * @return ms from start until preload() finished, or -1 if it has not
+     */
+    public long getPreloadMillis() {
+        return mPreloadMillis;
+    }
+
+    /**
+     * @return ms from start until the first game frame, or -1 if none yet
+     */
+    public long getFirstFrameMillis() {
+        return mFirstFrameMillis;
+    }
+
+    public BitmapCache getCache() {
+        return mCache;
+    }
+
+    /**
+     * Runs a load on the executor thread and waits for it.
+     */
+    private <T> T await(Callable<T> load) {
+        Future<T> future = mExecutor.submit(load);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    // finish waiting; the caller still needs the image
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Log.w(TAG, "Asset load failed", e.getCause());
+                    return null;
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Loads, on the executor thread only
+     */
+
+    private SpriteAtlas loadAtlas() {
+        if (mAtlas != null) return mAtlas;
+        InputStream in = null;
+        try {
+            in = mAssets.open(ATLAS_INDEX);
+            mAtlas = SpriteAtlas.read(new InputStreamReader(in, "UTF-8"));
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read " + ATLAS_INDEX, e);
+        } finally {
+            close(in);
+        }
+        return mAtlas;
+    }
+
+    private PhysicsTable loadPhysics() {
+        if (mPhysics != null) return mPhysics;
+        InputStream in = null;
+        try {
+            in = mAssets.open(PHYSICS_TABLE);
+            mPhysics = PhysicsTable.read(new InputStreamReader(in, "UTF-8"));
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read " + PHYSICS_TABLE + ", using the defaults", e);
+            mPhysics = PhysicsTable.DEFAULT;
+        } finally {
+            close(in);
+        }
+        return mPhysics;
+    }
+
+    private Bitmap loadAtlasBitmap() {
+        SpriteAtlas atlas = loadAtlas();
+        if (atlas == null) return null;
+        String key = "atlas/" + atlas.getImageName();
+        Bitmap bitmap = mCache.get(key);
+        if (bitmap != null) return bitmap;
+        InputStream in = null;
+        try {
+            in = mAssets.open(atlas.getImageName());
+            bitmap = BitmapFactory.decodeStream(in);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read " + atlas.getImageName(), e);
+        } finally {
+            close(in);
+        }
+        if (bitmap != null) mCache.put(key, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Decodes the background straight from the resource, never from an
+     * earlier scaled copy, so quality does not degrade on repeated surface
+     * changes. It is decoded at the smallest power of two subsample that
+     * still covers the height, in RGB_565 since it has no alpha, and scaled
+     * once to the height. The subsampled decode is cached too, so a surface
+     * a few pixels off the preloaded height only costs a rescale.
+     */
+    private Bitmap loadBackground(int height) {
+        if (height <= 0) return null;
+        String key = "background/" + height;
+        Bitmap scaled = mCache.get(key);
+        if (scaled != null) return scaled;
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        // Read pixels as they are stored; density scaling from drawable/
+        // would multiply the size by up to 4x on high-dpi screens.
+        options.inScaled = false;
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(mResources, R.drawable.background, options);
+        int sample = 1;
+        while (options.outHeight / (sample * 2) >= height) sample *= 2;
+
+        String sourceKey = "background/source/" + sample;
+        Bitmap decoded = mCache.get(sourceKey);
+        if (decoded == null) {
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = sample;
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            decoded = BitmapFactory.decodeResource(mResources, R.drawable.background, options);
+            if (decoded == null) return null;
+            mCache.put(sourceKey, decoded);
+        }
+
+        int width = Math.max(1, decoded.getWidth() * height / decoded.getHeight());
+        scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+        mCache.put(key, scaled);
+        return scaled;
+    }
+
+    private static void close(InputStream in) {
+        if (in == null) return;
+        try {
+            in.close();
+        } catch (IOException e) {
+        }
+    }
+}
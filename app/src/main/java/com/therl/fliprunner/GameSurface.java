@@ -2,14 +2,12 @@ package com.therl.fliprunner;
 
 import android.content.Context;
 import android.content.res.Resources;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.Paint;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.view.KeyEvent;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
@@ -17,8 +15,14 @@ import android.view.SurfaceView;
 import android.view.View;
 import android.widget.TextView;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Created by Limmy on 12/27/2016.
@@ -29,7 +33,13 @@ public class GameSurface extends SurfaceView implements SurfaceHolder.Callback {
         /*
          * Physics constants
          */
-        public static final int PHYS_DOWN_ACCEL_SEC = 10000;
+        public static final int PHYS_DOWN_ACCEL_SEC = World.PHYS_DOWN_ACCEL_SEC;
+        public static final long PHYS_STEP_NANOS = World.PHYS_STEP_NANOS;
+        public static final double PHYS_STEP_SEC = World.PHYS_STEP_SEC;
+        /** Most physics steps run per frame before we give up catching up */
+        public static final int PHYS_MAX_STEPS_PER_FRAME = 5;
+        /** Delay between starting/unpausing and the physics kicking in */
+        public static final long PHYS_START_DELAY_NANOS = 100000000L;
         /*
          * State-tracking constants
          */
@@ -37,43 +47,139 @@ public class GameSurface extends SurfaceView implements SurfaceHolder.Callback {
         public static final int STATE_PAUSE = 2;
         public static final int STATE_READY = 3;
         public static final int STATE_RUNNING = 4;
+        /*
+         * Handler message codes
+         */
+        /** Status text update; arg1 is the visibility, obj the text */
+        public static final int MSG_STATUS = 1;
+        /*
+         * Input commands on top of the World.COMMAND_* ones
+         */
+        /** A finger came down: start, restart or unpause */
+        public static final int COMMAND_TAP = 100;
+        /** Show or hide the frame timing overlay */
+        public static final int COMMAND_TOGGLE_STATS = 101;
+        /** Most input commands waiting for the game thread at once */
+        private static final int INPUT_QUEUE_SIZE = 64;
+        /** How often a running game is saved to the autosave file */
+        private static final long AUTOSAVE_INTERVAL_NANOS = 5000000000L;
+        /**
+         * Size at which the input log is moved aside to a ".1" file and a
+         * new one started, so at most twice this is kept
+         */
+        private static final long INPUT_LOG_MAX_BYTES = 1024 * 1024;
+        /*
+         * Particle effects
+         */
+        /** Most particles there is room for; the budget may be lower */
+        private static final int PARTICLE_CAPACITY = 4096;
+        private static final int FLIP_PARTICLES = 24;
+        private static final float FLIP_PARTICLE_SPEED = 400;
+        private static final float FLIP_PARTICLE_LIFE = 0.35f;
+        private static final int CRASH_PARTICLES = 160;
+        private static final float CRASH_PARTICLE_SPEED = 1200;
+        private static final float CRASH_PARTICLE_LIFE = 0.8f;
+        /** How often the lose screen is redrawn while debris still flies */
+        private static final long PARTICLE_FRAME_NANOS = 16000000L;
 
         /** Handle to the surface manager object we interact with */
         private SurfaceHolder mSurfaceHolder;
+        /** Images and tuning, loaded in the background */
+        private final GameAssets mAssets;
+        /*
+         * Saved state keys
+         */
+        /** The whole world and mode, as written by SaveState */
+        private static final String KEY_STATE = "state";
+
         /** Message handler used by thread to interact with TextView */
         private Handler mHandler;
         /** Indicate whether the surface has been created & is ready to draw */
-        private boolean mRun = false;
-
-        private final Object mRunLock = new Object();
+        private volatile boolean mRun = false;
 
         /*
          * Member (state) fields
          */
-        /** The drawable to use as the background of the animation canvas */
-        private Bitmap mBackgroundImage;
+        /**
+         * The state of the game. One of READY, RUNNING, PAUSE, LOSE, or WIN.
+         * Volatile so the UI thread can peek at it without the lock.
+         */
+        private volatile int mMode;
 
+        /** The simulation: player, obstacles, level and collisions */
+        private final World mWorld = new World();
         /**
-         * Current height of the surface/canvas.
-         *
-         * @see #setSurfaceSize
+         * Copies of mWorld handed to mRenderThread, so it can draw one while
+         * this thread steps the world on
          */
-        private int mCanvasHeight = 1;
+        private final TripleBuffer<WorldSnapshot> mSnapshots = new TripleBuffer<WorldSnapshot>(
+                new WorldSnapshot(), new WorldSnapshot(), new WorldSnapshot());
+        /** Draws the latest of mSnapshots onto the surface */
+        private final RenderThread mRenderThread;
+        /** Seed of the current level */
+        private long mSeed;
+        /** Whether doStart() should reuse mSeed instead of picking a new one */
+        private boolean mFixedSeed;
+
+        /** Turns elapsed real time into fixed-length physics steps */
+        private final FixedTimestep mTimestep =
+                new FixedTimestep(PHYS_STEP_NANOS, PHYS_MAX_STEPS_PER_FRAME);
         /**
-         * Current width of the surface/canvas.
-         *
-         * @see #setSurfaceSize
+         * Whether something visible changed since the last snapshot. Only
+         * STATE_RUNNING publishes every step; the other states publish once
+         * per change and otherwise sleep.
          */
-        private int mCanvasWidth = 1;
+        private boolean mDirty = true;
 
-        /** The state of the game. One of READY, RUNNING, PAUSE, LOSE, or WIN */
-        private int mMode;
+        /** Timing of every running frame; see FrameStats for who records what */
+        private final FrameStats mStats = new FrameStats(FramePacer.DEFAULT_TARGET_FPS);
+        /** Whether the frame timing overlay is shown */
+        private boolean mShowStats;
 
-        private Player mPlayer;
-        private List<Obstacle> mObstacles = new ArrayList<Obstacle>();
+        /**
+         * Input from the UI thread, drained by this thread at the start of
+         * each frame, so touch handlers never wait on mSurfaceHolder
+         */
+        private final InputQueue mInput = new InputQueue(INPUT_QUEUE_SIZE);
+        /** Scratch buffer SaveState writes into for saveState() */
+        private final ByteBuffer mSaveBuffer = ByteBuffer.allocate(SaveState.maxSize(mWorld));
+        /** Survives the process being killed; null if it could not be opened */
+        private SaveFile mAutosave;
+        /** When mAutosave was last written, 0 to write it on the next step */
+        private long mLastAutosave;
 
-        /** Used to figure out elapsed time between frames */
-        private long mLastTime;
+        /** Logs the input of every run; null if not recording */
+        private InputRecorder mRecorder;
+        /** Where mRecorder's records go, written on a thread of its own */
+        private InputLogWriter mInputLog;
+        /** Plays a recorded run instead of taking input; null if not replaying */
+        private Replayer mReplayer;
+        /** Steps of the replay taken per step of real time */
+        private int mReplaySpeed = 1;
+        /**
+         * Size of the surface, which a replay replaces with the one it was
+         * recorded at until it ends
+         */
+        private int mSurfaceWidth = World.DEFAULT_VIEW_WIDTH;
+        private int mSurfaceHeight = World.DEFAULT_VIEW_HEIGHT;
+        /** Plays alongside the user when set, e.g. for automated runs */
+        private AutoPlayer mAutoPlayer;
+        /** Keeps the score of every run lost; null if not keeping scores */
+        private ScoreStore mScores;
+        /** Sparks on flips and debris on crashes; drawn, never simulated */
+        private final ParticleSystem mParticles = new ParticleSystem(PARTICLE_CAPACITY);
+        /** The player's jumping after the last step, to see flips start */
+        private int mLastJumping = Player.JUMPING_NONE;
+        /** When mParticles was last moved */
+        private long mLastParticleUpdate;
+
+        /** Applies drained input; only ever runs on this thread */
+        private final InputQueue.Consumer mInputConsumer = new InputQueue.Consumer() {
+            @Override
+            public void onCommand(int command, long timeNanos) {
+                applyCommand(command, timeNanos);
+            }
+        };
 
         public GameThread(SurfaceHolder surfaceHolder, Context context,
                            Handler handler) {
@@ -81,32 +187,188 @@ public class GameSurface extends SurfaceView implements SurfaceHolder.Callback {
             mSurfaceHolder = surfaceHolder;
             mHandler = handler;
             mContext = context;
+            // the GPU fills the pixels where it can
+            final GameAssets assets = GameAssets.get(context);
+            mAssets = assets;
+            SurfaceRenderer canvas = new CanvasRenderer(surfaceHolder, assets);
+            if (GlRenderer.isSupported(context)) {
+                mRenderThread = new RenderThread(new GlRenderer(surfaceHolder, assets),
+                        mSnapshots, mStats);
+                // reqGlEsVersion can promise more than EGL delivers
+                mRenderThread.setFallbackRenderer(canvas);
+            } else {
+                mRenderThread = new RenderThread(canvas, mSnapshots, mStats);
+            }
+            mRenderThread.setFirstFrameListener(new Runnable() {
+                @Override
+                public void run() {
+                    assets.reportFirstFrame();
+                }
+            });
+        }
 
-            Resources res = context.getResources();
-            // load background image as a Bitmap instead of a Drawable b/c
-            // we don't need to transform it and it's faster to draw this way
-            mBackgroundImage = BitmapFactory.decodeResource(res,
-                    R.drawable.background);
-            mPlayer = new Player();
+        /**
+         * Changes what frames are drawn with, e.g. to force the Canvas
+         * fallback. Only before the surface is created.
+         */
+        public void setRenderer(SurfaceRenderer renderer) {
+            mRenderThread.setRenderer(renderer);
         }
 
         public void doStart() {
             synchronized (mSurfaceHolder) {
 
-                mPlayer.reset();
-                mObstacles.add(new Obstacle());
+                if (!mFixedSeed) mSeed = System.nanoTime();
+                if (mReplayer != null) endReplay();
+                mWorld.reset(mSeed);
+                if (mRecorder != null) {
+                    try {
+                        mRecorder.startRun(mSeed, mWorld.getViewWidth(), mWorld.getViewHeight());
+                        // the run before is queued and this one's RUN is
+                        // still buffered, so the file can change between them
+                        mInputLog.rotateIfFull();
+                    } catch (IOException e) {
+                        stopRecording(e);
+                    }
+                }
+
+                mTimestep.reset(System.nanoTime() + PHYS_START_DELAY_NANOS);
+                setState(STATE_RUNNING);
+            }
+        }
+
+        /**
+         * Makes every following run use the same level, e.g. for replays
+         * and benchmarks.
+         *
+         * @param seed seed for the level generator
+         */
+        public void setSeed(long seed) {
+            synchronized (mSurfaceHolder) {
+                mSeed = seed;
+                mFixedSeed = true;
+            }
+        }
+
+        /**
+         * Appends the input of every following run to the given file, to be
+         * read back with InputLog and replayed. Runs restored from a saved
+         * state are not recorded, since they did not start from the seed.
+         * Once the file reaches INPUT_LOG_MAX_BYTES it replaces the one
+         * before it, with ".1" added to its name, and a new one is started.
+         * The file is written by an InputLogWriter, so this thread never
+         * waits on it. Call before the thread starts.
+         */
+        public void setInputLogFile(File file) {
+            synchronized (mSurfaceHolder) {
+                mInputLog = new InputLogWriter(file, INPUT_LOG_MAX_BYTES);
+                mRecorder = new InputRecorder(mInputLog);
+            }
+        }
+
+        /**
+         * Gives up on recording after a write failed; the game goes on.
+         */
+        private void stopRecording(IOException e) {
+            Log.w(GameThread.class.getName(), "Could not write input log", e);
+            try {
+                mRecorder.close();
+            } catch (IOException ignored) {
+            }
+            mRecorder = null;
+        }
 
-                mLastTime = System.currentTimeMillis() + 100;
+        /**
+         * Shows a recorded run instead of playing. Input is ignored until
+         * the replay is over, which ends the game like a crash. The world
+         * takes the view size the run was recorded at until then.
+         *
+         * @param speed steps of the replay per step of real time, e.g. 4
+         *              to watch it at four times the speed
+         */
+        public void startReplay(InputLog log, int speed) {
+            synchronized (mSurfaceHolder) {
+                // the run being played ends here, not when the next one starts
+                if (mRecorder != null) {
+                    try {
+                        mRecorder.endRun(mWorld.getTick());
+                    } catch (IOException e) {
+                        stopRecording(e);
+                    }
+                }
+                mReplayer = new Replayer(mWorld);
+                mReplayer.start(log);
+                mReplaySpeed = Math.max(1, speed);
+                mTimestep.reset(System.nanoTime() + PHYS_START_DELAY_NANOS);
                 setState(STATE_RUNNING);
             }
         }
 
+        /**
+         * Gives the world back the surface's size after a replay.
+         */
+        private void endReplay() {
+            mReplayer = null;
+            mWorld.setViewSize(mSurfaceWidth, mSurfaceHeight);
+        }
+
+        /**
+         * Sets the most particles alive at once, e.g. lower on slow devices.
+         * Defaults to ParticleSystem.DEFAULT_BUDGET.
+         */
+        public void setParticleBudget(int budget) {
+            synchronized (mSurfaceHolder) {
+                mParticles.setBudget(budget);
+            }
+        }
+
+        /**
+         * Keeps the score of every following run the user plays to the
+         * end. The store writes on its own thread.
+         */
+        public void setScoreStore(ScoreStore scores) {
+            synchronized (mSurfaceHolder) {
+                mScores = scores;
+            }
+        }
+
+        /**
+         * Lets a bot play: before every step it searches for the best flip
+         * and applies it like a swipe, so its runs are recorded as usual.
+         * A lost run starts the next one at once, so it plays until told
+         * otherwise.
+         *
+         * @param budgetNanos how long the bot may search per step, or 0
+         *                    to stop it
+         */
+        public void setAutoPlay(long budgetNanos) {
+            synchronized (mSurfaceHolder) {
+                if (budgetNanos <= 0) {
+                    mAutoPlayer = null;
+                    return;
+                }
+                if (mAutoPlayer == null) {
+                    mAutoPlayer = new AutoPlayer(mWorld.getObstacles().capacity());
+                }
+                mAutoPlayer.setBudgetNanos(budgetNanos);
+            }
+        }
+
         /**
          * Pauses the physics update & animation.
          */
         public void pause() {
             synchronized (mSurfaceHolder) {
                 if (mMode == STATE_RUNNING) setState(STATE_PAUSE);
+                if (mRecorder != null) {
+                    // keep what we have in case the process is killed; only
+                    // queues it
+                    try {
+                        mRecorder.flush();
+                    } catch (IOException e) {
+                        stopRecording(e);
+                    }
+                }
             }
         }
 
@@ -116,40 +378,248 @@ public class GameSurface extends SurfaceView implements SurfaceHolder.Callback {
          * destroyed.
          *
          * @param savedState Bundle containing the game state
+         * @return false if the Bundle held no usable state, in which case
+         *         the game is left ready to start
+         */
+        public synchronized boolean restoreState(Bundle savedState) {
+            synchronized (mSurfaceHolder) {
+                byte[] state = savedState.getByteArray(KEY_STATE);
+                int mode = -1;
+                if (state != null) {
+                    try {
+                        mode = SaveState.read(mWorld, ByteBuffer.wrap(state));
+                    } catch (IllegalArgumentException e) {
+                        Log.w(GameThread.class.getName(), "Could not restore state", e);
+                    }
+                }
+                return restoreMode(mode);
+            }
+        }
+
+        /**
+         * Gets back the run that was going when the process was last killed,
+         * if there was one.
+         *
+         * @return false if there was nothing to restore, in which case the
+         *         game is left ready to start
+         */
+        public boolean restoreAutosave() {
+            synchronized (mSurfaceHolder) {
+                return restoreMode(mAutosave != null ? mAutosave.load(mWorld) : -1);
+            }
+        }
+
+        /**
+         * Finishes a restore: a run comes back paused, and a failed restore
+         * (mode -1) leaves a fresh world ready to start.
+         */
+        private boolean restoreMode(int mode) {
+            if (mode == -1) {
+                mWorld.reset(mSeed);
+                setState(STATE_READY);
+                return false;
+            }
+            mSeed = mWorld.getSeed();
+            setState(mode == STATE_RUNNING ? STATE_PAUSE : mode);
+            return true;
+        }
+
+        /**
+         * Keeps a copy of every running game in the given file, at most
+         * AUTOSAVE_INTERVAL_NANOS old, for restoreAutosave(). Call before
+         * restoring or starting the thread.
          */
-        public synchronized void restoreState(Bundle savedState) {
+        public void setAutosaveFile(File file) {
             synchronized (mSurfaceHolder) {
-                setState(STATE_PAUSE);
-                mPlayer.restoreState(savedState);
+                try {
+                    mAutosave = new SaveFile(file, mSaveBuffer.capacity());
+                } catch (IOException e) {
+                    Log.w(GameThread.class.getName(), "Could not open autosave", e);
+                }
             }
         }
+
+        /**
+         * Writes mAutosave if a running game has not been saved for a
+         * while. Called with mSurfaceHolder held; costs a copy of a couple
+         * of kilobytes into the page cache, so it never holds up a frame.
+         */
+        private void autosave(long now) {
+            if (mAutosave == null || now - mLastAutosave < AUTOSAVE_INTERVAL_NANOS) return;
+            mAutosave.save(mWorld, mMode);
+            mLastAutosave = now;
+        }
         
         @Override
         public void run() {
+            // usually preloaded by now; a replay needs the tuning it was
+            // recorded with, which is this one unless the app was updated
+            PhysicsTable physics = mAssets.getPhysics();
+            synchronized (mSurfaceHolder) {
+                mWorld.setPhysics(physics);
+            }
+            mRenderThread.start();
             while (mRun) {
-                Canvas c = null;
                 try {
-                    c = mSurfaceHolder.lockCanvas(null);
-                    synchronized (mSurfaceHolder) {
-                        if (mMode == STATE_RUNNING) updatePhysics();
-                        // Critical section. Do not allow mRun to be set false until
-                        // we are sure all canvas draw operations are complete.
-                        //
-                        // If mRun has been toggled false, inhibit canvas operations.
-                        synchronized (mRunLock) {
-                            if (mRun) doDraw(c);
+                    waitForWork();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (!mRun) break;
+                long start = System.nanoTime();
+                boolean running;
+                synchronized (mSurfaceHolder) {
+                    mInput.drain(mInputConsumer);
+                    running = mMode == STATE_RUNNING;
+                    if (running) {
+                        int steps = mTimestep.advance(start);
+                        if (mReplayer != null) steps *= mReplaySpeed;
+                        // stop stepping as soon as a step ends the run, even
+                        // if the bot started the next one
+                        for (int i = 0; i < steps; i++) {
+                            if (!updatePhysics()) break;
                         }
+                        // a replay is not a game worth coming back to
+                        if (mMode == STATE_RUNNING && mReplayer == null) autosave(start);
+                    } else if (isFading()) {
+                        // debris of the crash settles on the lose screen
+                        mParticles.update(Math.min(start - mLastParticleUpdate,
+                                PHYS_MAX_STEPS_PER_FRAME * PHYS_STEP_NANOS) / 1e9);
                     }
-                } finally {
-                    // do this in a finally so that if an exception is thrown
-                    // during the above, we don't leave the Surface in an
-                    // inconsistent state
-                    if (c != null) {
-                        mSurfaceHolder.unlockCanvasAndPost(c);
+                    mLastParticleUpdate = start;
+                    mDirty = false;
+                    publishSnapshot();
+                }
+                if (running) {
+                    long updated = System.nanoTime();
+                    mStats.record(FrameStats.METRIC_UPDATE, updated - start);
+                    // Sleep until the next step is due; drawing happens on
+                    // mRenderThread meanwhile.
+                    LockSupport.parkNanos(this, mTimestep.getNanosUntilNextStep(updated));
+                } else if (isFading()) {
+                    LockSupport.parkNanos(this, PARTICLE_FRAME_NANOS);
+                }
+            }
+            // A run still going reads back without an END, as if the
+            // process had died; closing only queues it.
+            synchronized (mSurfaceHolder) {
+                if (mRecorder != null) {
+                    try {
+                        mRecorder.close();
+                    } catch (IOException e) {
+                        Log.w(GameThread.class.getName(), "Could not close input log", e);
+                    }
+                    mRecorder = null;
+                }
+            }
+            // The render thread must be done with the surface before we
+            // return, since surfaceDestroyed() only waits for us.
+            mRenderThread.setRunning(false);
+            boolean retry = true;
+            while (retry) {
+                try {
+                    mRenderThread.join();
+                    retry = false;
+                } catch (InterruptedException e) {
+                }
+            }
+        }
+
+        /**
+         * Copies the world into the back snapshot and hands it to the render
+         * thread. Called with mSurfaceHolder held.
+         */
+        private void publishSnapshot() {
+            mSnapshots.getBack().copyFrom(mWorld, mTimestep.getLastStepTime(),
+                    mMode == STATE_RUNNING);
+            mSnapshots.getBack().copyParticles(mParticles);
+            mSnapshots.publish();
+            mRenderThread.wake();
+        }
+
+        /**
+         * Shows or hides the frame timing overlay.
+         */
+        public void toggleStatsOverlay() {
+            synchronized (mSurfaceHolder) {
+                mShowStats = !mShowStats;
+                mRenderThread.setShowStats(mShowStats);
+                requestRedraw();
+            }
+        }
+
+        /**
+         * Writes the frame timing collected so far to a CSV file. The write
+         * happens on a background thread.
+         *
+         * @param file where to write; overwritten if it exists
+         */
+        public void exportStats(final File file) {
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Writer out = null;
+                    try {
+                        out = new BufferedWriter(new FileWriter(file));
+                        mStats.writeCsv(out);
+                    } catch (IOException e) {
+                        Log.w(GameThread.class.getName(), "Could not export frame stats", e);
+                    } finally {
+                        if (out != null) {
+                            try {
+                                out.close();
+                            } catch (IOException e) {
+                            }
+                        }
                     }
                 }
+            });
+        }
+
+        /**
+         * Blocks while there is nothing new to publish, i.e. we are not
+         * running and nothing has called requestRedraw(). The render thread
+         * parks too once it has drawn the last snapshot, so an idle game
+         * costs no CPU at all.
+         */
+        private void waitForWork() throws InterruptedException {
+            synchronized (mSurfaceHolder) {
+                while (mRun && mMode != STATE_RUNNING && !mDirty && mInput.isEmpty()
+                        && !isFading()) {
+                    mSurfaceHolder.wait();
+                }
+            }
+        }
+
+        /**
+         * @return whether particles of a lost run are still moving, which
+         *         keeps the thread publishing frames. Called with
+         *         mSurfaceHolder held.
+         */
+        private boolean isFading() {
+            return mMode == STATE_LOSE && mParticles.size() > 0;
+        }
+
+        /**
+         * Asks for one more snapshot to be published and drawn, waking the
+         * thread if it is idle. Needed whenever the picture changes outside of updatePhysics().
+         */
+        public void requestRedraw() {
+            synchronized (mSurfaceHolder) {
+                mDirty = true;
+                mSurfaceHolder.notifyAll();
             }
         }
+
+        /**
+         * Sets the frame rate the game should aim for.
+         *
+         * @param fps frames per second
+         */
+        public void setTargetFps(int fps) {
+            mRenderThread.setTargetFps(fps);
+            mStats.setTargetFps(fps);
+        }
         /**
          * Dump game state to the provided Bundle. Typically called when the
          * Activity is being suspended.
@@ -159,7 +629,15 @@ public class GameSurface extends SurfaceView implements SurfaceHolder.Callback {
         public Bundle saveState(Bundle map) {
             synchronized (mSurfaceHolder) {
                 if (map != null) {
-                    mPlayer.saveState(map);
+                    mSaveBuffer.clear();
+                    int size = SaveState.write(mWorld, mMode, mSaveBuffer);
+                    // the Bundle keeps the array, so it needs its own
+                    map.putByteArray(KEY_STATE, Arrays.copyOf(mSaveBuffer.array(), size));
+                }
+                if (mAutosave != null && mMode != STATE_LOSE && mMode != STATE_READY) {
+                    // the process may be killed any time from here on
+                    mAutosave.save(mWorld, mMode);
+                    mAutosave.flush();
                 }
             }
             return map;
@@ -173,10 +651,14 @@ public class GameSurface extends SurfaceView implements SurfaceHolder.Callback {
          * @param b true to run, false to shut down
          */
         public void setRunning(boolean b) {
-            // Do not allow mRun to be modified while any canvas operations
-            // are potentially in-flight. See doDraw().
-            synchronized (mRunLock) {
-                mRun = b;
+            mRun = b;
+            mRenderThread.setRunning(b);
+            if (!b) {
+                // Release the thread if it is sleeping between steps or
+                // waiting for work. run() stops the render thread on its way
+                // out.
+                LockSupport.unpark(this);
+                requestRedraw();
             }
         }
 
@@ -209,14 +691,25 @@ public class GameSurface extends SurfaceView implements SurfaceHolder.Callback {
              * thread, which updates the user-text View.
              */
             synchronized (mSurfaceHolder) {
+                if (mode == STATE_LOSE && mMode == STATE_RUNNING) {
+                    Player player = mWorld.getPlayer();
+                    mParticles.emit(ParticleSystem.KIND_STREAK, (float) player.getCenterX(),
+                            (float) player.getCenterY(), CRASH_PARTICLES, CRASH_PARTICLE_SPEED,
+                            CRASH_PARTICLE_LIFE);
+                }
                 mMode = mode;
+                requestRedraw();
+                if (mAutosave != null) {
+                    // a lost run is not worth coming back to; a new one is
+                    // saved as soon as it steps
+                    if (mode == STATE_LOSE) mAutosave.clear();
+                    mLastAutosave = 0;
+                }
+                // Messages come from the Handler's pool and carry their
+                // payload in arg1/obj, so changing state allocates nothing.
                 if (mMode == STATE_RUNNING) {
-                    Message msg = mHandler.obtainMessage();
-                    Bundle b = new Bundle();
-                    b.putString("text", "");
-                    b.putInt("viz", View.INVISIBLE);
-                    msg.setData(b);
-                    mHandler.sendMessage(msg);
+                    mHandler.obtainMessage(MSG_STATUS, View.INVISIBLE, 0, "")
+                            .sendToTarget();
                 } else {
                     Resources res = mContext.getResources();
                     CharSequence str = "";
@@ -229,12 +722,8 @@ public class GameSurface extends SurfaceView implements SurfaceHolder.Callback {
 //                    if (message != null) {
 //                        str = message + "\n" + str;
 //                    }
-                    Message msg = mHandler.obtainMessage();
-                    Bundle b = new Bundle();
-                    b.putString("text", str.toString());
-                    b.putInt("viz", View.VISIBLE);
-                    msg.setData(b);
-                    mHandler.sendMessage(msg);
+                    mHandler.obtainMessage(MSG_STATUS, View.VISIBLE, 0, str)
+                            .sendToTarget();
                 }
             }
         }
@@ -242,11 +731,12 @@ public class GameSurface extends SurfaceView implements SurfaceHolder.Callback {
         public void setSurfaceSize(int width, int height) {
             // synchronized to make sure these all change atomically
             synchronized (mSurfaceHolder) {
-                mCanvasWidth = width;
-                mCanvasHeight = height;
-                // don't forget to resize the background image
-                mBackgroundImage = Bitmap.createScaledBitmap(
-                        mBackgroundImage, width, height, true);
+                mSurfaceWidth = width;
+                mSurfaceHeight = height;
+                // a replay keeps the size it was recorded at until it ends;
+                // the render thread sizes its background from the snapshot
+                if (mReplayer == null) mWorld.setViewSize(width, height);
+                requestRedraw();
             }
         }
         /**
@@ -255,87 +745,170 @@ public class GameSurface extends SurfaceView implements SurfaceHolder.Callback {
         public void unpause() {
             // Move the real time clock up to now
             synchronized (mSurfaceHolder) {
-                mLastTime = System.currentTimeMillis() + 100;
+                mTimestep.reset(System.nanoTime() + PHYS_START_DELAY_NANOS);
             }
             setState(STATE_RUNNING);
         }
         /**
-         * Handles a touch event.
+         * Handles a touch event. Called on the UI thread; only queues the
+         * input for the game thread.
          *
          * @param event the event object
-         * @return true
+         * @return true if the event was queued
          */
         boolean onTouch(MotionEvent event) {
-            synchronized (mSurfaceHolder) {
-                boolean okStart = false;
-                if (event.getAction() == MotionEvent.ACTION_DOWN) okStart = true;
-                if (okStart && mMode == STATE_READY) {
-                    // ready-to-start -> start
-                    doStart();
-                    return true;
-                } else if (mMode == STATE_PAUSE && okStart) {
-                    // paused -> running
-                    unpause();
-                    return true;
-                }
-                return false;
+            long now = System.nanoTime();
+            // a second finger coming down toggles the timing overlay
+            if (event.getActionMasked() == MotionEvent.ACTION_POINTER_DOWN
+                    && event.getPointerCount() == 2) {
+                return queueCommand(COMMAND_TOGGLE_STATS, now);
+            }
+            if (event.getAction() == MotionEvent.ACTION_DOWN && mMode != STATE_RUNNING) {
+                return queueCommand(COMMAND_TAP, now);
             }
+            return false;
         }
         /**
-         * Handles a swipe-top.
-         * @return true
+         * Handles a swipe-top. Called on the UI thread; only queues the
+         * flip for the game thread.
+         * @return true if the flip was queued
          */
         public boolean onSwipeTop() {
-            boolean handled = false;
-            synchronized (mSurfaceHolder) {
-                if (mMode == STATE_RUNNING)
-                    handled = mPlayer.setJumping(Player.JUMPING_UP);
-            }
-            return handled;
+            return mMode == STATE_RUNNING
+                    && mInput.offer(World.COMMAND_FLIP_UP, System.nanoTime());
         }
 
         /**
-         * Handles a swipe-bottom.
-         * @return true
+         * Handles a swipe-bottom. Called on the UI thread; only queues the
+         * flip for the game thread.
+         * @return true if the flip was queued
          */
         public boolean onSwipeBottom() {
-            boolean handled = false;
-            synchronized (mSurfaceHolder) {
-                if (mMode == STATE_RUNNING)
-                    handled = mPlayer.setJumping(Player.JUMPING_DOWN);
+            return mMode == STATE_RUNNING
+                    && mInput.offer(World.COMMAND_FLIP_DOWN, System.nanoTime());
+        }
+
+        /**
+         * Records how long a swipe took to recognize. Called on the UI
+         * thread, just before onSwipeTop() or onSwipeBottom().
+         */
+        public void onSwipeLatency(long latencyMillis) {
+            mStats.record(FrameStats.METRIC_GESTURE_LATENCY, latencyMillis * 1000000L);
+        }
+
+        /**
+         * Queues a command that changes the game state and wakes the thread
+         * in case it is idle. These are rare, so taking the lock is fine.
+         */
+        private boolean queueCommand(int command, long timeNanos) {
+            if (!mInput.offer(command, timeNanos)) return false;
+            requestRedraw();
+            return true;
+        }
+
+        /**
+         * Applies one command drained from mInput. Game thread only, with
+         * mSurfaceHolder held.
+         */
+        private void applyCommand(int command, long timeNanos) {
+            switch (command) {
+                case COMMAND_TAP:
+                    if (mMode == STATE_READY || mMode == STATE_LOSE) {
+                        // ready-to-start or lost -> start
+                        doStart();
+                    } else if (mMode == STATE_PAUSE) {
+                        // paused -> running
+                        unpause();
+                    }
+                    break;
+                case COMMAND_TOGGLE_STATS:
+                    toggleStatsOverlay();
+                    break;
+                default:
+                    if (applyFlip(command)) {
+                        mStats.record(FrameStats.METRIC_INPUT_LATENCY,
+                                System.nanoTime() - timeNanos);
+                    }
+                    break;
+            }
+        }
+
+        /**
+         * Records a flip and applies it to the world, for the user and the
+         * bot alike. Only the user's flips count towards the input latency,
+         * which the bot would otherwise flood with zeros.
+         *
+         * @return whether the flip was applied
+         */
+        private boolean applyFlip(int command) {
+            if (mMode != STATE_RUNNING || mReplayer != null) return false;
+            if (mRecorder != null) {
+                try {
+                    mRecorder.record(mWorld.getTick(), command);
+                } catch (IOException e) {
+                    stopRecording(e);
+                }
             }
-            return handled;
+            mWorld.applyCommand(command);
+            return true;
         }
         /**
-         * Draws the ship, fuel/speed bars, and background to the provided
-         * Canvas.
+         * Advances the world by a single fixed step of PHYS_STEP_SEC. Does
+         * not invalidate(). Called from run() as many times as mTimestep
+         * says the real time that passed is worth. Detects the end-of-game
+         * and sets the UI to the next state.
+         *
+         * @return false if the run ended, so no more steps should be taken
+         *         this frame
          */
-        private void doDraw(Canvas canvas) {
-            // Draw the background image. Operations on the Canvas accumulate
-            // so this is like clearing the screen.
-            canvas.drawBitmap(mBackgroundImage, 0, 0, null);
-            mPlayer.doDraw(canvas,mCanvasWidth,mCanvasHeight);
-            for(Obstacle obstacle:mObstacles){
-                obstacle.doDraw(canvas,mCanvasWidth,mCanvasHeight);
+        private boolean updatePhysics() {
+            mParticles.update(PHYS_STEP_SEC);
+            boolean going = stepWorld();
+            // a flip from any source, the user, a replay or the bot
+            Player player = mWorld.getPlayer();
+            int jumping = player.getJumping();
+            if (jumping != Player.JUMPING_NONE && mLastJumping == Player.JUMPING_NONE) {
+                mParticles.emit(ParticleSystem.KIND_SPARK, (float) player.getCenterX(),
+                        (float) player.getCenterY(), FLIP_PARTICLES, FLIP_PARTICLE_SPEED,
+                        FLIP_PARTICLE_LIFE);
             }
+            mLastJumping = jumping;
+            return going;
         }
+
         /**
-         * Figures the lander state (x, y, fuel, ...) based on the passage of
-         * realtime. Does not invalidate(). Called at the start of draw().
-         * Detects the end-of-game and sets the UI to the next state.
+         * Takes the step itself, and ends the run if it crashed.
+         *
+         * @return false if the run ended
          */
-        private void updatePhysics() {
-            long now = System.currentTimeMillis();
-            // Do nothing if mLastTime is in the future.
-            // This allows the game-start to delay the start of the physics
-            // by 100ms or whatever.
-            if (mLastTime > now) return;
-            double elapsed = (now - mLastTime) / 1000.0;
-            mPlayer.updatePhysics(elapsed);
-            for(Obstacle obstacle:mObstacles){
-                obstacle.updatePhysics(elapsed);
+        private boolean stepWorld() {
+            if (mReplayer != null) {
+                if (mReplayer.step()) return true;
+                endReplay();
+                setState(STATE_LOSE);
+                return false;
+            }
+            if (mAutoPlayer != null) {
+                int command = mAutoPlayer.decide(mWorld);
+                if (command != World.COMMAND_NONE) applyFlip(command);
             }
-            mLastTime = now;
+            if (mWorld.step()) return true;
+            // queued for mInputLog's thread to write
+            if (mRecorder != null) {
+                try {
+                    mRecorder.endRun(mWorld.getTick());
+                } catch (IOException e) {
+                    stopRecording(e);
+                }
+            }
+            // only queues it
+            if (mScores != null && mAutoPlayer == null) {
+                mScores.submit(mWorld.getSeed(), mWorld.getTick(), mWorld.getDistance());
+            }
+            setState(STATE_LOSE);
+            // the new run waits out PHYS_START_DELAY_NANOS like any other
+            if (mAutoPlayer != null) doStart();
+            return false;
         }
     }
 
@@ -356,8 +929,9 @@ public class GameSurface extends SurfaceView implements SurfaceHolder.Callback {
         thread = new GameThread(holder, context, new Handler() {
             @Override
             public void handleMessage(Message m) {
-//                mStatusText.setVisibility(m.getData().getInt("viz"));
-//                mStatusText.setText(m.getData().getString("text"));
+//                if (m.what != GameThread.MSG_STATUS) return;
+//                mStatusText.setVisibility(m.arg1);
+//                mStatusText.setText((CharSequence) m.obj);
             }
         });
         setFocusable(true); // make sure we get key events
@@ -383,6 +957,12 @@ public class GameSurface extends SurfaceView implements SurfaceHolder.Callback {
     public boolean onSwipeBottom() {
         return thread.onSwipeBottom();
     }
+    /**
+     * Get swipe recognition latency.
+     */
+    public void onSwipeLatency(long latencyMillis) {
+        thread.onSwipeLatency(latencyMillis);
+    }
     /**
      * Get touch event.
      */
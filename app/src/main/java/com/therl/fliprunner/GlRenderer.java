@@ -0,0 +1,570 @@
+package com.therl.fliprunner;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+import android.util.Log;
+import android.view.SurfaceHolder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGL11;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+import javax.microedition.khronos.egl.EGLSurface;
+
+/**
+ * Draws with OpenGL ES 2.0 on the SurfaceHolder's surface, so the GPU does
+ * the filling and the CPU only describes quads.
+ *
+ * Every sprite lives in the atlas texture packed at build time, and quads are collected into a
+ * pre-allocated vertex array that is drawn with a single glDrawElements()
+ * per texture change, so a frame is a handful of draw calls however many
+ * obstacles are on screen. Points and lines are quads too, on a plain
+ * white texture tinted by a color uniform. EGL is set up lazily on the render thread by the
+ * first beginFrame(), and again after the context is lost.
+ *
+ * If the device cannot do what we need, e.g. no ES 2 config or a shader
+ * that won't compile, hasFailed() turns true and RenderThread falls back to
+ * a CanvasRenderer. A window surface that can't be created or made current
+ * is retried on the next frames first, since that may be the surface
+ * still settling.
+ *
+ * EGL10 is used rather than EGL14 so this works from API 15 like the rest
+ * of the app.
+ */
+public class GlRenderer implements SurfaceRenderer {
+    private static final String TAG = GlRenderer.class.getName();
+
+    private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+    private static final int EGL_OPENGL_ES2_BIT = 4;
+
+    /** Failed setups in a row, about a second of frames, before we give up */
+    private static final int MAX_INIT_RETRIES = 60;
+
+    /** Most quads drawn by one glDrawElements(); indices must fit a short */
+    private static final int MAX_QUADS = 1024;
+    /** x, y, u, v */
+    private static final int FLOATS_PER_VERTEX = 4;
+    private static final int FLOATS_PER_QUAD = 4 * FLOATS_PER_VERTEX;
+    private static final int VERTEX_STRIDE = FLOATS_PER_VERTEX * 4;
+    /** Atlas names of the Renderer.SPRITE_* sprites, by id */
+    private static final String[] SPRITE_NAMES = {"player", "obstacle"};
+
+    /*
+     * Textures
+     */
+    private static final int TEXTURE_ATLAS = 0;
+    private static final int TEXTURE_BACKGROUND = 1;
+    private static final int TEXTURE_OVERLAY = 2;
+    /** One white texel, for points and lines */
+    private static final int TEXTURE_WHITE = 3;
+    private static final int TEXTURE_COUNT = 4;
+
+    /** Color that leaves textures as they are */
+    private static final int WHITE = 0xFFFFFFFF;
+
+    private static final String VERTEX_SHADER =
+            "uniform vec2 uScreen;\n"
+            + "attribute vec2 aPosition;\n"
+            + "attribute vec2 aTexCoord;\n"
+            + "varying vec2 vTexCoord;\n"
+            + "void main() {\n"
+            + "  gl_Position = vec4(aPosition.x * 2.0 / uScreen.x - 1.0,\n"
+            + "      1.0 - aPosition.y * 2.0 / uScreen.y, 0.0, 1.0);\n"
+            + "  vTexCoord = aTexCoord;\n"
+            + "}\n";
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n"
+            + "uniform sampler2D uTexture;\n"
+            + "uniform vec4 uColor;\n"
+            + "varying vec2 vTexCoord;\n"
+            + "void main() {\n"
+            + "  gl_FragColor = texture2D(uTexture, vTexCoord) * uColor;\n"
+            + "}\n";
+
+    private final SurfaceHolder mSurfaceHolder;
+    private final GameAssets mAssets;
+    /** Fetches the scaled background; we only upload its tile */
+    private final Background mBackground;
+
+    /*
+     * EGL state, all null until initGl()
+     */
+    private EGL10 mEgl;
+    private EGLDisplay mEglDisplay;
+    private EGLContext mEglContext;
+    private EGLSurface mEglSurface;
+    /** Set when EGL could not be set up at all; we stop retrying */
+    private boolean mFailed;
+    /** Setups in a row that failed on something that may pass on a retry */
+    private int mRetries;
+
+    /*
+     * GL objects, valid while mEglSurface is
+     */
+    private int mProgram;
+    private int mScreenLocation;
+    private int mColorLocation;
+    private int mPositionLocation;
+    private int mTexCoordLocation;
+    /** Texture names, indexed by the TEXTURE_* constants */
+    private final int[] mTextures = new int[TEXTURE_COUNT];
+
+    /** u0, v0, u1, v1 of each sprite in the atlas */
+    private final float[] mSpriteUvs = new float[SPRITE_COUNT * 4];
+
+    /** The background tile last uploaded, to notice when it changes */
+    private Bitmap mUploadedTile;
+    private int mTileWidth;
+
+    /** The overlay is drawn with a Canvas into this, then uploaded */
+    private Bitmap mOverlayBitmap;
+    private Canvas mOverlayCanvas;
+    private boolean mOverlayUploaded;
+
+    /*
+     * The batch
+     */
+    private final float[] mBatch = new float[MAX_QUADS * FLOATS_PER_QUAD];
+    private final FloatBuffer mVertices;
+    /** Same memory as mVertices, positioned at the first texture coordinate */
+    private final FloatBuffer mTexCoords;
+    private final ShortBuffer mIndices;
+    private int mQuadCount;
+    /** Texture the quads in the batch use */
+    private int mBatchTexture = -1;
+    /** Color the quads in the batch are tinted with, premultiplied as set */
+    private int mBatchColor = WHITE;
+
+    private int mWidth;
+    private int mHeight;
+
+    public GlRenderer(SurfaceHolder surfaceHolder, GameAssets assets) {
+        mSurfaceHolder = surfaceHolder;
+        mAssets = assets;
+        mBackground = new Background(assets);
+
+        mVertices = ByteBuffer.allocateDirect(mBatch.length * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        mVertices.position(2);
+        mTexCoords = mVertices.slice();
+        mVertices.position(0);
+
+        // Two triangles per quad, over vertices in the order top left, top
+        // right, bottom right, bottom left.
+        short[] indices = new short[MAX_QUADS * 6];
+        for (int q = 0; q < MAX_QUADS; q++) {
+            int v = q * 4;
+            int i = q * 6;
+            indices[i] = (short) v;
+            indices[i + 1] = (short) (v + 1);
+            indices[i + 2] = (short) (v + 2);
+            indices[i + 3] = (short) v;
+            indices[i + 4] = (short) (v + 2);
+            indices[i + 5] = (short) (v + 3);
+        }
+        mIndices = ByteBuffer.allocateDirect(indices.length * 2)
+                .order(ByteOrder.nativeOrder()).asShortBuffer();
+        mIndices.put(indices).position(0);
+    }
+
+    /**
+     * @return whether the device claims OpenGL ES 2.0
+     */
+    public static boolean isSupported(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        return am != null && am.getDeviceConfigurationInfo().reqGlEsVersion >= 0x20000;
+    }
+
+    @Override
+    public boolean beginFrame(int width, int height) {
+        if (mEglSurface == null && !initGl()) return false;
+        if (width != mWidth || height != mHeight) {
+            GLES20.glViewport(0, 0, width, height);
+            mWidth = width;
+            mHeight = height;
+        }
+        GLES20.glUniform2f(mScreenLocation, width, height);
+
+        // Decodes only when the height changed; upload only when it did.
+        mBackground.setSurfaceSize(width, height);
+        Bitmap tile = mBackground.getTile();
+        if (tile != null && tile != mUploadedTile) {
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextures[TEXTURE_BACKGROUND]);
+            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, tile, 0);
+            mUploadedTile = tile;
+            mTileWidth = tile.getWidth();
+        }
+
+        // Cheap on the GPU, and lets tiled GPUs skip loading the old frame.
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        return true;
+    }
+
+    @Override
+    public void drawBackground(double scroll) {
+        if (mUploadedTile == null) return;
+        setColor(WHITE);
+        float x = -(float) ((scroll * Background.PARALLAX) % mTileWidth);
+        for (; x < mWidth; x += mTileWidth) {
+            addQuad(TEXTURE_BACKGROUND, x, 0, x + mTileWidth, mHeight, 0, 0, 1, 1);
+        }
+    }
+
+    @Override
+    public void drawSprite(int sprite, float left, float top, float right, float bottom) {
+        setColor(WHITE);
+        int uv = sprite * 4;
+        addQuad(TEXTURE_ATLAS, left, top, right, bottom, mSpriteUvs[uv], mSpriteUvs[uv + 1],
+                mSpriteUvs[uv + 2], mSpriteUvs[uv + 3]);
+    }
+
+    @Override
+    public void drawPoints(float[] points, int count, float size, int color) {
+        setColor(color);
+        float half = size / 2;
+        for (int i = 0; i < count * 2; i += 2) {
+            float x = points[i];
+            float y = points[i + 1];
+            addQuad(TEXTURE_WHITE, x - half, y - half, x + half, y + half, 0, 0, 1, 1);
+        }
+    }
+
+    @Override
+    public void drawLines(float[] lines, int count, float width, int color) {
+        setColor(color);
+        float half = width / 2;
+        for (int i = 0; i < count * 4; i += 4) {
+            float x0 = lines[i];
+            float y0 = lines[i + 1];
+            float x1 = lines[i + 2];
+            float y1 = lines[i + 3];
+            float length = (float) Math.sqrt((x1 - x0) * (x1 - x0) + (y1 - y0) * (y1 - y0));
+            if (length == 0) continue;
+            // half the width across the segment
+            float nx = (y0 - y1) / length * half;
+            float ny = (x1 - x0) / length * half;
+            int v = reserveQuad(TEXTURE_WHITE);
+            setVertex(v, x0 + nx, y0 + ny, 0, 0);
+            setVertex(v + FLOATS_PER_VERTEX, x1 + nx, y1 + ny, 1, 0);
+            setVertex(v + 2 * FLOATS_PER_VERTEX, x1 - nx, y1 - ny, 1, 1);
+            setVertex(v + 3 * FLOATS_PER_VERTEX, x0 - nx, y0 - ny, 0, 1);
+        }
+    }
+
+    @Override
+    public void drawOverlay(StatsOverlay overlay) {
+        setColor(WHITE);
+        if (mOverlayBitmap == null) {
+            mOverlayBitmap = Bitmap.createBitmap(overlay.getWidth(), overlay.getHeight(),
+                    Bitmap.Config.ARGB_8888);
+            mOverlayCanvas = new Canvas(mOverlayBitmap);
+        }
+        // The text changes twice a second; upload only then.
+        if (overlay.update(System.nanoTime()) || !mOverlayUploaded) {
+            mOverlayBitmap.eraseColor(0);
+            overlay.doDraw(mOverlayCanvas);
+            flush();
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextures[TEXTURE_OVERLAY]);
+            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, mOverlayBitmap, 0);
+            mOverlayUploaded = true;
+        }
+        addQuad(TEXTURE_OVERLAY, 0, 0, mOverlayBitmap.getWidth(), mOverlayBitmap.getHeight(),
+                0, 0, 1, 1);
+    }
+
+    @Override
+    public void endFrame() {
+        flush();
+        if (!mEgl.eglSwapBuffers(mEglDisplay, mEglSurface)) {
+            int error = mEgl.eglGetError();
+            Log.w(TAG, "eglSwapBuffers failed: 0x" + Integer.toHexString(error));
+            // Everything has to be set up again with a fresh context.
+            if (error == EGL11.EGL_CONTEXT_LOST) release();
+        }
+    }
+
+    /**
+     * Adds one upright quad to the batch.
+     */
+    private void addQuad(int texture, float left, float top, float right, float bottom,
+                         float u0, float v0, float u1, float v1) {
+        float[] b = mBatch;
+        int i = reserveQuad(texture);
+        b[i] = left;
+        b[i + 1] = top;
+        b[i + 2] = u0;
+        b[i + 3] = v0;
+        b[i + 4] = right;
+        b[i + 5] = top;
+        b[i + 6] = u1;
+        b[i + 7] = v0;
+        b[i + 8] = right;
+        b[i + 9] = bottom;
+        b[i + 10] = u1;
+        b[i + 11] = v1;
+        b[i + 12] = left;
+        b[i + 13] = bottom;
+        b[i + 14] = u0;
+        b[i + 15] = v1;
+    }
+
+    /**
+     * Makes room for one more quad in the batch, drawing the batch first if
+     * it is full or uses another texture.
+     *
+     * @return index in mBatch of the quad's first vertex
+     */
+    private int reserveQuad(int texture) {
+        if (texture != mBatchTexture || mQuadCount == MAX_QUADS) {
+            flush();
+            mBatchTexture = texture;
+        }
+        return mQuadCount++ * FLOATS_PER_QUAD;
+    }
+
+    private void setVertex(int i, float x, float y, float u, float v) {
+        mBatch[i] = x;
+        mBatch[i + 1] = y;
+        mBatch[i + 2] = u;
+        mBatch[i + 3] = v;
+    }
+
+    /**
+     * Tints everything drawn from now on, drawing the batch first if the
+     * color changes.
+     *
+     * @param color ARGB
+     */
+    private void setColor(int color) {
+        if (color == mBatchColor) return;
+        flush();
+        mBatchColor = color;
+        // premultiplied, like the bitmaps
+        float a = (color >>> 24) / 255f;
+        GLES20.glUniform4f(mColorLocation, ((color >> 16) & 0xFF) / 255f * a,
+                ((color >> 8) & 0xFF) / 255f * a, (color & 0xFF) / 255f * a, a);
+    }
+
+    /**
+     * Draws everything in the batch with one call and empties it.
+     */
+    private void flush() {
+        if (mQuadCount == 0) return;
+        mVertices.put(mBatch, 0, mQuadCount * FLOATS_PER_QUAD).position(0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextures[mBatchTexture]);
+        GLES20.glVertexAttribPointer(mPositionLocation, 2, GLES20.GL_FLOAT, false,
+                VERTEX_STRIDE, mVertices);
+        GLES20.glVertexAttribPointer(mTexCoordLocation, 2, GLES20.GL_FLOAT, false,
+                VERTEX_STRIDE, mTexCoords);
+        GLES20.glDrawElements(GLES20.GL_TRIANGLES, mQuadCount * 6,
+                GLES20.GL_UNSIGNED_SHORT, mIndices);
+        mQuadCount = 0;
+    }
+
+    /**
+     * Sets up EGL on the surface and creates the GL objects.
+     *
+     * @return false if that failed; the reason is logged
+     */
+    private boolean initGl() {
+        if (mFailed) return false;
+        mEgl = (EGL10) EGLContext.getEGL();
+        mEglDisplay = mEgl.eglGetDisplay(EGL10.EGL_DEFAULT_DISPLAY);
+        if (!mEgl.eglInitialize(mEglDisplay, null)) return fail("eglInitialize", true);
+
+        int[] configAttribs = {
+                EGL10.EGL_RED_SIZE, 5,
+                EGL10.EGL_GREEN_SIZE, 6,
+                EGL10.EGL_BLUE_SIZE, 5,
+                EGL10.EGL_RENDERABLE_TYPE, EGL_OPENGL_ES2_BIT,
+                EGL10.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] configCount = new int[1];
+        if (!mEgl.eglChooseConfig(mEglDisplay, configAttribs, configs, 1, configCount)
+                || configCount[0] == 0) {
+            return fail("eglChooseConfig", true);
+        }
+        int[] contextAttribs = {EGL_CONTEXT_CLIENT_VERSION, 2, EGL10.EGL_NONE};
+        mEglContext = mEgl.eglCreateContext(mEglDisplay, configs[0], EGL10.EGL_NO_CONTEXT,
+                contextAttribs);
+        if (mEglContext == null || mEglContext == EGL10.EGL_NO_CONTEXT) {
+            mEglContext = null;
+            return fail("eglCreateContext", true);
+        }
+        mEglSurface = mEgl.eglCreateWindowSurface(mEglDisplay, configs[0], mSurfaceHolder, null);
+        if (mEglSurface == null || mEglSurface == EGL10.EGL_NO_SURFACE) {
+            mEglSurface = null;
+            return fail("eglCreateWindowSurface", false);
+        }
+        if (!mEgl.eglMakeCurrent(mEglDisplay, mEglSurface, mEglSurface, mEglContext)) {
+            return fail("eglMakeCurrent", false);
+        }
+
+        mProgram = createProgram();
+        if (mProgram == 0) return fail("shader compilation", true);
+        GLES20.glUseProgram(mProgram);
+        mScreenLocation = GLES20.glGetUniformLocation(mProgram, "uScreen");
+        mColorLocation = GLES20.glGetUniformLocation(mProgram, "uColor");
+        mPositionLocation = GLES20.glGetAttribLocation(mProgram, "aPosition");
+        mTexCoordLocation = GLES20.glGetAttribLocation(mProgram, "aTexCoord");
+        GLES20.glEnableVertexAttribArray(mPositionLocation);
+        GLES20.glEnableVertexAttribArray(mTexCoordLocation);
+        GLES20.glUniform1i(GLES20.glGetUniformLocation(mProgram, "uTexture"), 0);
+
+        GLES20.glGenTextures(mTextures.length, mTextures, 0);
+        for (int texture : mTextures) {
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+            // No mipmaps and no wrapping, so sizes need not be powers of two.
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER,
+                    GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER,
+                    GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S,
+                    GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T,
+                    GLES20.GL_CLAMP_TO_EDGE);
+        }
+        if (!uploadAtlas()) return fail("sprite atlas", true);
+        Bitmap white = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+        white.eraseColor(WHITE);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextures[TEXTURE_WHITE]);
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, white, 0);
+        white.recycle();
+        GLES20.glUniform4f(mColorLocation, 1, 1, 1, 1);
+
+        // Bitmaps are uploaded premultiplied.
+        GLES20.glEnable(GLES20.GL_BLEND);
+        GLES20.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        GLES20.glClearColor(0, 0, 0, 1);
+        mWidth = 0;
+        mHeight = 0;
+        mBatchTexture = -1;
+        mBatchColor = WHITE;
+        mRetries = 0;
+        return true;
+    }
+
+    /**
+     * Uploads the sprite atlas and works out where each sprite is in it.
+     *
+     * @return false if the atlas is missing a sprite or could not be loaded
+     */
+    private boolean uploadAtlas() {
+        SpriteAtlas atlas = mAssets.getAtlas();
+        Bitmap bitmap = mAssets.getAtlasBitmap();
+        if (atlas == null || bitmap == null) return false;
+        float width = atlas.getPageWidth();
+        float height = atlas.getPageHeight();
+        for (int s = 0; s < SPRITE_COUNT; s++) {
+            int index = atlas.indexOf(SPRITE_NAMES[s]);
+            if (index < 0) {
+                Log.w(TAG, "No sprite " + SPRITE_NAMES[s] + " in the atlas");
+                return false;
+            }
+            // half a texel in so linear filtering never reads the padding
+            mSpriteUvs[s * 4] = (atlas.getX(index) + 0.5f) / width;
+            mSpriteUvs[s * 4 + 1] = (atlas.getY(index) + 0.5f) / height;
+            mSpriteUvs[s * 4 + 2] = (atlas.getX(index) + atlas.getWidth(index) - 0.5f) / width;
+            mSpriteUvs[s * 4 + 3] = (atlas.getY(index) + atlas.getHeight(index) - 0.5f) / height;
+        }
+        // The bitmap stays in the cache; GL keeps its own copy.
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextures[TEXTURE_ATLAS]);
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+        return true;
+    }
+
+    private static int createProgram() {
+        int vertex = compileShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
+        int fragment = compileShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
+        if (vertex == 0 || fragment == 0) return 0;
+        int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vertex);
+        GLES20.glAttachShader(program, fragment);
+        GLES20.glLinkProgram(program);
+        // the program keeps them alive as long as it needs them
+        GLES20.glDeleteShader(vertex);
+        GLES20.glDeleteShader(fragment);
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] == 0) {
+            Log.w(TAG, "Could not link program: " + GLES20.glGetProgramInfoLog(program));
+            GLES20.glDeleteProgram(program);
+            return 0;
+        }
+        return program;
+    }
+
+    private static int compileShader(int type, String source) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0) {
+            Log.w(TAG, "Could not compile shader: " + GLES20.glGetShaderInfoLog(shader));
+            GLES20.glDeleteShader(shader);
+            return 0;
+        }
+        return shader;
+    }
+
+    /**
+     * Logs a failed setup step and tears down what was set up.
+     *
+     * @param permanent whether retrying cannot help, e.g. the device has no
+     *                  ES 2 config; anything else is given up on after
+     *                  MAX_INIT_RETRIES setups in a row have failed
+     * @return false, for initGl() to return
+     */
+    private boolean fail(String what, boolean permanent) {
+        Log.w(TAG, what + " failed: 0x" + Integer.toHexString(mEgl.eglGetError()));
+        if (permanent || ++mRetries >= MAX_INIT_RETRIES) mFailed = true;
+        release();
+        return false;
+    }
+
+    @Override
+    public boolean hasFailed() {
+        return mFailed;
+    }
+
+    @Override
+    public void release() {
+        if (mEgl == null) return;
+        if (mEglSurface != null && mEglContext != null
+                && mEgl.eglGetCurrentContext() == mEglContext) {
+            // GL objects die with the context, but be tidy while it lives.
+            GLES20.glDeleteTextures(mTextures.length, mTextures, 0);
+            if (mProgram != 0) GLES20.glDeleteProgram(mProgram);
+        }
+        mEgl.eglMakeCurrent(mEglDisplay, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE,
+                EGL10.EGL_NO_CONTEXT);
+        if (mEglSurface != null) mEgl.eglDestroySurface(mEglDisplay, mEglSurface);
+        if (mEglContext != null) mEgl.eglDestroyContext(mEglDisplay, mEglContext);
+        mEgl.eglTerminate(mEglDisplay);
+        mEgl = null;
+        mEglDisplay = null;
+        mEglContext = null;
+        mEglSurface = null;
+        mProgram = 0;
+        mQuadCount = 0;
+        mUploadedTile = null;
+        mOverlayUploaded = false;
+        if (mOverlayBitmap != null) {
+            mOverlayBitmap.recycle();
+            mOverlayBitmap = null;
+            mOverlayCanvas = null;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.therl.fliprunner;
 import android.content.Intent;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.util.DisplayMetrics;
 import android.widget.Button;
 import android.view.View;
 import android.view.View.OnClickListener;
@@ -16,6 +17,10 @@ public class MainActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        // decode the game's images while the menu is up; the game surface
+        // will be about as tall as the short side of the screen
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        GameAssets.get(this).preload(Math.min(metrics.widthPixels, metrics.heightPixels));
 
         Button b1 = (Button) findViewById(R.id.button1);
         b1.setOnClickListener(new View.OnClickListener() {
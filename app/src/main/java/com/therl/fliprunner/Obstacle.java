@@ -1,29 +0,0 @@
-package com.therl.fliprunner;
-
-import android.graphics.Canvas;
-
-/**
- * Created by Limmy on 1/3/2017.
- */
-
-public class Obstacle {
-    /*
-     * Obstacle Constants
-     */
-    public static final int HORIZONTAL_SPEED = 1000;
-
-    /** X of obstacle. */
-    private double mX;
-    /** Y of obstacle. */
-    private double mY;
-
-    public Obstacle(){
-        // TODO: 1/3/2017  
-    }
-    public void doDraw(Canvas canvas, int canvasWidth, int canvasHeight) {
-        // TODO: 1/3/2017  
-    }
-        public void updatePhysics(double elapsed) {
-        // TODO: 1/3/2017  
-    }
-}
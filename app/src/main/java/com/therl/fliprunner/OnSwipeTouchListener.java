@@ -1,67 +1,88 @@
 package com.therl.fliprunner;
 
 import android.content.Context;
-import android.view.GestureDetector;
-import android.view.GestureDetector.SimpleOnGestureListener;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.View.OnTouchListener;
 /**
  * Created by rachel on 12/30/16.
+ *
+ * Reports swipes while the finger is still moving, as soon as a
+ * SwipeRecognizer has seen enough of them, rather than waiting for a fling
+ * on ACTION_UP. Every sample is used, including the historical ones batched
+ * into each ACTION_MOVE, so a swipe is decided at the first sample that
+ * crosses the threshold rather than at the next delivered event.
  */
 
 public class OnSwipeTouchListener implements OnTouchListener {
 
-    private final GestureDetector gestureDetector;
+    /** Distance that makes a swipe, in density-independent pixels. */
+    private static final float SWIPE_THRESHOLD_DP = 24;
+
+    private final SwipeRecognizer mRecognizer;
 
     public OnSwipeTouchListener (Context ctx){
-        gestureDetector = new GestureDetector(ctx, new GestureListener());
+        float density = ctx.getResources().getDisplayMetrics().density;
+        mRecognizer = new SwipeRecognizer(SWIPE_THRESHOLD_DP * density);
     }
 
     @Override
     public boolean onTouch(View v, MotionEvent event) {
-        return gestureDetector.onTouchEvent(event);
-    }
-
-    private final class GestureListener extends SimpleOnGestureListener {
-
-        private static final int SWIPE_THRESHOLD = 100;
-        private static final int SWIPE_VELOCITY_THRESHOLD = 100;
-
-        @Override
-        public boolean onDown(MotionEvent e) {
-            return true;
-        }
-
-        @Override
-        public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
-            boolean result = false;
-            try {
-                float diffY = e2.getY() - e1.getY();
-                float diffX = e2.getX() - e1.getX();
-                if (Math.abs(diffX) > Math.abs(diffY)) {
-                    if (Math.abs(diffX) > SWIPE_THRESHOLD && Math.abs(velocityX) > SWIPE_VELOCITY_THRESHOLD) {
-                        if (diffX > 0) {
-                            onSwipeRight();
-                        } else {
-                            onSwipeLeft();
-                        }
-                    }
-                    result = true;
-                } else if (Math.abs(diffY) > SWIPE_THRESHOLD && Math.abs(velocityY) > SWIPE_VELOCITY_THRESHOLD) {
-                    if (diffY > 0) {
-                        onSwipeBottom();
-                    } else {
-                        onSwipeTop();
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mRecognizer.onDown(event.getX(), event.getY(), event.getEventTime());
+                break;
+            case MotionEvent.ACTION_MOVE:
+                for (int h = 0; h < event.getHistorySize(); h++) {
+                    if (dispatch(mRecognizer.onMove(event.getHistoricalX(h),
+                            event.getHistoricalY(h), event.getHistoricalEventTime(h)))) {
+                        return true;
                     }
                 }
-                result = true;
+                dispatch(mRecognizer.onMove(event.getX(), event.getY(), event.getEventTime()));
+                break;
+            case MotionEvent.ACTION_UP:
+                dispatch(mRecognizer.onUp(event.getX(), event.getY(), event.getEventTime()));
+                break;
+            case MotionEvent.ACTION_POINTER_DOWN:
+            case MotionEvent.ACTION_CANCEL:
+                // a second finger or a stolen gesture is not a swipe
+                mRecognizer.cancel();
+                break;
+        }
+        return true;
+    }
 
-            } catch (Exception exception) {
-                exception.printStackTrace();
-            }
-            return result;
+    /**
+     * Calls the callbacks for a recognized direction.
+     *
+     * @return false if there was nothing to report
+     */
+    private boolean dispatch(int direction) {
+        if (direction == SwipeRecognizer.DIRECTION_NONE) return false;
+        onSwipeLatency(mRecognizer.getLatency());
+        switch (direction) {
+            case SwipeRecognizer.DIRECTION_UP:
+                onSwipeTop();
+                break;
+            case SwipeRecognizer.DIRECTION_DOWN:
+                onSwipeBottom();
+                break;
+            case SwipeRecognizer.DIRECTION_LEFT:
+                onSwipeLeft();
+                break;
+            case SwipeRecognizer.DIRECTION_RIGHT:
+                onSwipeRight();
+                break;
         }
+        return true;
+    }
+
+    /**
+     * Called just before a swipe callback with how long the swipe took to
+     * recognize, from the finger going down to the deciding sample.
+     */
+    public void onSwipeLatency(long latencyMillis) {
     }
 
     public void onSwipeRight() {
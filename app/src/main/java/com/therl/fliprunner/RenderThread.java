@@ -0,0 +1,204 @@
+package com.therl.fliprunner;
+
+import android.util.Log;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Draws the latest WorldSnapshot published by the game thread, paced to
+ * the display refresh, so a slow frame never holds up the simulation and a
+ * slow simulation step never holds up a frame.
+ *
+ * The two threads only share a TripleBuffer and a few volatile flags. While
+ * the world is running this thread draws every frame, interpolating between
+ * the snapshot's last two steps by how much time has passed since it was
+ * taken; otherwise it parks until the next snapshot is published.
+ *
+ * What the frames are drawn with is up to the SurfaceRenderer: OpenGL ES
+ * where the device has it, a software Canvas otherwise, or once OpenGL ES
+ * turns out not to work after all.
+ */
+public class RenderThread extends Thread {
+    private static final String TAG = RenderThread.class.getName();
+
+    private final TripleBuffer<WorldSnapshot> mSnapshots;
+    private final FrameStats mStats;
+
+    /** Puts frames on the surface; only touched on this thread once started */
+    private SurfaceRenderer mRenderer;
+    /** Takes over if mRenderer fails for good, or null */
+    private SurfaceRenderer mFallback;
+    /** Lays the snapshots out as sprites for mRenderer */
+    private final WorldRenderer mWorldRenderer = new WorldRenderer();
+    /** Shows mStats on screen when mShowStats is set */
+    private final StatsOverlay mStatsOverlay;
+    /** Ties drawing to the display refresh at the target frame rate */
+    private final FramePacer mPacer =
+            FramePacer.create(FramePacer.DEFAULT_TARGET_FPS);
+
+    private volatile boolean mRun;
+    private volatile boolean mShowStats;
+    /** Start of the previous running frame, or 0 if there was none */
+    private long mLastFrameStart;
+    /** Called after the first frame is shown, then dropped */
+    private Runnable mFirstFrameListener;
+
+    public RenderThread(SurfaceRenderer renderer, TripleBuffer<WorldSnapshot> snapshots,
+                        FrameStats stats) {
+        super("RenderThread");
+        mRenderer = renderer;
+        mSnapshots = snapshots;
+        mStats = stats;
+        mStatsOverlay = new StatsOverlay(stats);
+    }
+
+    /**
+     * Changes what frames are drawn with. Only before start().
+     */
+    public void setRenderer(SurfaceRenderer renderer) {
+        mRenderer = renderer;
+    }
+
+    /**
+     * Sets what frames are drawn with if the renderer fails for good, e.g.
+     * a Canvas behind OpenGL ES. Only before start().
+     */
+    public void setFallbackRenderer(SurfaceRenderer fallback) {
+        mFallback = fallback;
+    }
+
+    /**
+     * Sets something to run on this thread once the first frame is shown,
+     * e.g. to measure startup. Only before start().
+     */
+    public void setFirstFrameListener(Runnable listener) {
+        mFirstFrameListener = listener;
+    }
+
+    @Override
+    public void run() {
+        while (mRun) {
+            WorldSnapshot latest = mSnapshots.acquire();
+            if (!latest.isRunning() && !mSnapshots.hasUpdate()) {
+                // Nothing moves until the next publish, which unparks us.
+                // Spurious wakeups just go round the loop again.
+                mPacer.stop();
+                mLastFrameStart = 0;
+                LockSupport.park(this);
+                continue;
+            }
+            mPacer.start();
+            try {
+                mPacer.awaitFrame();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (!mRun) break;
+            drawFrame(mSnapshots.acquire());
+        }
+        mPacer.stop();
+        mRenderer.release();
+    }
+
+    private void drawFrame(WorldSnapshot snapshot) {
+        long frameStart = System.nanoTime();
+        int width = snapshot.getViewWidth();
+        int height = snapshot.getViewHeight();
+        if (!mRenderer.beginFrame(width, height)) {
+            if (mRenderer.hasFailed() && mFallback != null) {
+                Log.w(TAG, "Falling back to " + mFallback.getClass().getSimpleName());
+                mRenderer.release();
+                mRenderer = mFallback;
+                mFallback = null;
+            }
+            return;
+        }
+        long locked = System.nanoTime();
+        try {
+            doDraw(snapshot, width, height, locked);
+        } finally {
+            // do this in a finally so that if an exception is thrown
+            // during the above, we don't leave the Surface in an
+            // inconsistent state
+            mRenderer.endFrame();
+        }
+        if (mFirstFrameListener != null) {
+            mFirstFrameListener.run();
+            mFirstFrameListener = null;
+        }
+        if (snapshot.isRunning()) {
+            recordFrame(frameStart, locked, System.nanoTime());
+        } else {
+            mLastFrameStart = 0;
+        }
+    }
+
+    /**
+     * Adds the timing of one running frame to mStats. Draw time includes
+     * endFrame(), which is where a software canvas pays for its pixels and
+     * GL waits for the swap.
+     */
+    private void recordFrame(long start, long locked, long posted) {
+        mStats.record(FrameStats.METRIC_LOCK_WAIT, locked - start);
+        mStats.record(FrameStats.METRIC_DRAW, posted - locked);
+        if (mLastFrameStart != 0) {
+            mStats.record(FrameStats.METRIC_FRAME_INTERVAL, start - mLastFrameStart);
+        }
+        mLastFrameStart = start;
+    }
+
+    /**
+     * Draws the world and the overlay.
+     *
+     * @param now time of the frame, to interpolate against
+     */
+    private void doDraw(WorldSnapshot snapshot, int width, int height, long now) {
+        // Entities are drawn part way between the snapshot's last two
+        // physics steps, by however much time has passed since the later
+        // one. A world that is not moving is drawn as it is.
+        double alpha = 1;
+        if (snapshot.isRunning()) {
+            alpha = (double) (now - snapshot.getTimeNanos()) / World.PHYS_STEP_NANOS;
+            alpha = Math.max(0, Math.min(1, alpha));
+        }
+        mWorldRenderer.doDraw(mRenderer, snapshot, width, height, alpha);
+        if (mShowStats) mRenderer.drawOverlay(mStatsOverlay);
+    }
+
+    /**
+     * Wakes the thread after a snapshot was published. Safe to call from
+     * any thread, and cheap enough to call after every publish.
+     */
+    public void wake() {
+        LockSupport.unpark(this);
+    }
+
+    /**
+     * Shows or hides the frame timing overlay from the next frame on.
+     */
+    public void setShowStats(boolean show) {
+        mShowStats = show;
+    }
+
+    /**
+     * Sets the frame rate to aim for.
+     *
+     * @param fps frames per second
+     */
+    public void setTargetFps(int fps) {
+        mPacer.setTargetFps(fps);
+    }
+
+    /**
+     * Lets the thread run, or tells it to finish its current frame and
+     * exit. Join the thread before letting go of the surface.
+     */
+    public void setRunning(boolean b) {
+        mRun = b;
+        if (!b) {
+            // Release the thread if it is waiting for vsync or parked.
+            mPacer.stop();
+            wake();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.therl.fliprunner;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+/**
+ * On-screen readout of FrameStats: p50/p95/p99 of each metric and the
+ * dropped frame count.
+ *
+ * The text is rebuilt into a fixed char buffer at most every REFRESH_NANOS
+ * and drawn straight from it, so showing the overlay allocates nothing.
+ */
+public class StatsOverlay {
+    /** How often the numbers change; any faster and they can't be read. */
+    private static final long REFRESH_NANOS = 500000000L;
+    private static final int LINE_LENGTH = 64;
+    private static final float TEXT_SIZE = 28;
+    private static final float MARGIN = 16;
+    private static final float LINE_HEIGHT = TEXT_SIZE * 1.25f;
+
+    private static final double[] PERCENTILES = {0.50, 0.95, 0.99};
+    private static final char[][] PERCENTILE_LABELS = {
+            " p50 ".toCharArray(), " p95 ".toCharArray(), " p99 ".toCharArray()
+    };
+    private static final char[] DROPPED_LABEL = "dropped ".toCharArray();
+    private static final char[] MS = " ms".toCharArray();
+
+    private final FrameStats mStats;
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mBackgroundPaint = new Paint();
+
+    /** One line per metric plus the dropped frame line. */
+    private final char[][] mLines = new char[FrameStats.METRIC_COUNT + 1][LINE_LENGTH];
+    private final int[] mLineLengths = new int[FrameStats.METRIC_COUNT + 1];
+    private long mLastRefresh;
+
+    public StatsOverlay(FrameStats stats) {
+        mStats = stats;
+        mTextPaint.setColor(Color.WHITE);
+        mTextPaint.setTextSize(TEXT_SIZE);
+        mBackgroundPaint.setColor(0x99000000);
+        mBackgroundPaint.setStyle(Paint.Style.FILL);
+        mLastRefresh = -REFRESH_NANOS;
+    }
+
+    /**
+     * Rebuilds the text if it is due.
+     *
+     * @param now current time, in System.nanoTime() units
+     * @return whether the text changed
+     */
+    public boolean update(long now) {
+        if (now - mLastRefresh < REFRESH_NANOS) return false;
+        refresh();
+        mLastRefresh = now;
+        return true;
+    }
+
+    /**
+     * Draws the overlay in the top left corner, within getWidth() by
+     * getHeight() pixels.
+     */
+    public void doDraw(Canvas canvas) {
+        update(System.nanoTime());
+        canvas.drawRect(0, 0, getWidth(), getHeight(), mBackgroundPaint);
+        for (int i = 0; i < mLines.length; i++) {
+            canvas.drawText(mLines[i], 0, mLineLengths[i], MARGIN,
+                    MARGIN + LINE_HEIGHT * (i + 1), mTextPaint);
+        }
+    }
+
+    public int getWidth() {
+        return (int) (TEXT_SIZE * LINE_LENGTH / 2);
+    }
+
+    public int getHeight() {
+        return (int) Math.ceil(MARGIN * 2 + LINE_HEIGHT * mLines.length);
+    }
+
+    private void refresh() {
+        for (int m = 0; m < FrameStats.METRIC_COUNT; m++) {
+            char[] line = mLines[m];
+            FrameHistogram h = mStats.getHistogram(m);
+            int pos = append(line, 0, FrameStats.getMetricName(m));
+            for (int p = 0; p < PERCENTILES.length; p++) {
+                pos = append(line, pos, PERCENTILE_LABELS[p]);
+                pos = appendMillis(line, pos, h.percentile(PERCENTILES[p]));
+            }
+            mLineLengths[m] = append(line, pos, MS);
+        }
+        char[] line = mLines[FrameStats.METRIC_COUNT];
+        int pos = append(line, 0, DROPPED_LABEL);
+        mLineLengths[FrameStats.METRIC_COUNT] = appendLong(line, pos, mStats.getDroppedFrames());
+    }
+
+    private static int append(char[] line, int pos, String s) {
+        int n = Math.min(s.length(), line.length - pos);
+        s.getChars(0, n, line, pos);
+        return pos + n;
+    }
+
+    private static int append(char[] line, int pos, char[] s) {
+        int n = Math.min(s.length, line.length - pos);
+        System.arraycopy(s, 0, line, pos, n);
+        return pos + n;
+    }
+
+    /** Appends microseconds as milliseconds with one decimal, e.g. 16.6 */
+    private static int appendMillis(char[] line, int pos, long micros) {
+        long tenths = micros / 100;
+        pos = appendLong(line, pos, tenths / 10);
+        if (pos + 2 > line.length) return pos;
+        line[pos++] = '.';
+        line[pos++] = (char) ('0' + tenths % 10);
+        return pos;
+    }
+
+    private static int appendLong(char[] line, int pos, long value) {
+        // Digits come out backwards; write them then reverse in place.
+        int start = pos;
+        do {
+            if (pos == line.length) break;
+            line[pos++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            char c = line[i];
+            line[i] = line[j];
+            line[j] = c;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,27 @@
+package com.therl.fliprunner;
+
+/**
+ * A Renderer that puts frames on the game's surface. Beyond the world it
+ * can show the frame timing overlay, and it owns whatever it connected to
+ * the surface until release().
+ *
+ * All calls, release() included, come from the render thread.
+ */
+public interface SurfaceRenderer extends Renderer {
+    /**
+     * Draws the frame timing overlay on top of everything else.
+     */
+    void drawOverlay(StatsOverlay overlay);
+
+    /**
+     * @return true once beginFrame() can never succeed on this device, so
+     *         another renderer has to take over
+     */
+    boolean hasFailed();
+
+    /**
+     * Lets go of the surface and everything allocated for it. The renderer
+     * sets itself up again on the next beginFrame().
+     */
+    void release();
+}
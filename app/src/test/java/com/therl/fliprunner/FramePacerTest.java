@@ -0,0 +1,148 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FramePacerTest {
+    private static final long PERIOD_60HZ = 1000000000L / 60;
+    private static final long PERIOD_59_94HZ = 16683350L;
+
+    @Test
+    public void targetFps_snapsToWholeVsyncPeriods() throws Exception {
+        assertEquals(120, frames(60, PERIOD_60HZ, 0));
+        assertEquals(120, frames(61, PERIOD_60HZ, 0));
+        // 55 fits no whole number of 60Hz periods, so it rounds down to 30
+        assertEquals(60, frames(55, PERIOD_60HZ, 0));
+        assertEquals(60, frames(30, PERIOD_60HZ, 0));
+        assertEquals(40, frames(20, PERIOD_60HZ, 0));
+        // a panel a little slower than the target still gets every vsync
+        assertEquals(120, frames(60, PERIOD_59_94HZ, 0));
+        assertEquals(60, frames(30, PERIOD_59_94HZ, 0));
+    }
+
+    @Test
+    public void targetFps_holdsThroughJitteryVsync() throws Exception {
+        assertEquals(120, frames(60, PERIOD_60HZ, 1500000L));
+        assertEquals(60, frames(55, PERIOD_60HZ, 1500000L));
+        assertEquals(40, frames(20, PERIOD_60HZ, 1500000L));
+    }
+
+    @Test
+    public void missedVsync_isLeftOutOfThePeriod() throws Exception {
+        FakeVsync source = new FakeVsync();
+        FramePacer pacer = new FramePacer(source, 60);
+        pacer.start();
+        long time = 0;
+        for (int i = 0; i < 100; i++) {
+            // every tenth vsync never arrives, as when the UI thread is busy
+            time += i % 10 == 0 ? 2 * PERIOD_60HZ : PERIOD_60HZ;
+            source.vsync(time);
+            assertTrue("vsync " + i, pacer.isFrameDue());
+            assertEquals(time, pacer.awaitFrame());
+        }
+    }
+
+    @Test
+    public void stop_releasesWaitingThreadAndStartResumes() throws Exception {
+        FakeVsync source = new FakeVsync();
+        final FramePacer pacer = new FramePacer(source, 55);
+        pacer.start();
+        pacer.start();
+        assertEquals(1, source.mStarts);
+        source.vsync(PERIOD_60HZ);
+        pacer.awaitFrame();
+        source.vsync(2 * PERIOD_60HZ);
+        assertFalse(pacer.isFrameDue());
+
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pacer.awaitFrame();
+                } catch (InterruptedException e) {
+                    // ends the thread either way
+                }
+            }
+        });
+        waiter.start();
+        pacer.stop();
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+        assertNull(source.mCallback);
+
+        // the first vsync after a restart is a frame, and the period is kept
+        pacer.start();
+        assertEquals(2, source.mStarts);
+        long time = 1000000000000L;
+        source.vsync(time);
+        assertTrue(pacer.isFrameDue());
+        assertEquals(time, pacer.awaitFrame());
+        source.vsync(time + PERIOD_60HZ);
+        assertFalse(pacer.isFrameDue());
+        source.vsync(time + 2 * PERIOD_60HZ);
+        assertTrue(pacer.isFrameDue());
+    }
+
+    @Test
+    public void noVsync_sleepsToTargetIntervalWithoutCatchingUp() throws Exception {
+        FramePacer pacer = new FramePacer(null, 100);
+        long interval = 1000000000L / 100;
+        pacer.start();
+        long start = System.nanoTime();
+        long last = pacer.awaitFrame();
+        for (int i = 0; i < 10; i++) {
+            long frame = pacer.awaitFrame();
+            assertTrue(frame - last >= interval);
+            last = frame;
+        }
+        assertTrue(System.nanoTime() - start >= 10 * interval);
+
+        // five frames late: carry on from now rather than rush them out
+        Thread.sleep(50);
+        last = pacer.awaitFrame();
+        assertTrue(pacer.awaitFrame() - last >= interval);
+    }
+
+    /**
+     * Counts the frames handed out over 120 vsyncs of the given period,
+     * each moved by up to the given jitter either way.
+     */
+    private static int frames(int targetFps, long period, long jitter) throws Exception {
+        FakeVsync source = new FakeVsync();
+        FramePacer pacer = new FramePacer(source, targetFps);
+        pacer.start();
+        SeededRandom random = new SeededRandom(targetFps);
+        int frames = 0;
+        for (int i = 1; i <= 120; i++) {
+            long time = i * period + (long) ((random.nextFloat() * 2 - 1) * jitter);
+            source.vsync(time);
+            if (pacer.isFrameDue()) {
+                assertEquals(time, pacer.awaitFrame());
+                frames++;
+            }
+        }
+        return frames;
+    }
+
+    /** Vsync delivered by the test instead of the display. */
+    private static class FakeVsync implements FramePacer.VsyncSource {
+        FramePacer.Callback mCallback;
+        int mStarts;
+
+        @Override
+        public void start(FramePacer.Callback callback) {
+            mCallback = callback;
+            mStarts++;
+        }
+
+        @Override
+        public void stop() {
+            mCallback = null;
+        }
+
+        void vsync(long frameTimeNanos) {
+            mCallback.onVsync(frameTimeNanos);
+        }
+    }
+}
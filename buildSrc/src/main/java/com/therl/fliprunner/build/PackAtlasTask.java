@@ -0,0 +1,157 @@
+package com.therl.fliprunner.build;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Packs every PNG in a directory into one texture atlas, so the game loads
+ * a single image at startup and the GL renderer draws every sprite from one
+ * texture.
+ *
+ * Writes ATLAS_IMAGE and an ATLAS_INDEX text file next to it, in the format
+ * SpriteAtlas reads: a "page" line with the image name and size, then one
+ * "name x y width height" line per sprite, named after its file. Sprites
+ * are placed on shelves, tallest first, with PADDING transparent pixels
+ * around each so filtering never bleeds one into another. The page is a
+ * power of two on both sides.
+ */
+public class PackAtlasTask extends DefaultTask {
+    public static final String ATLAS_IMAGE = "sprites.png";
+    public static final String ATLAS_INDEX = "sprites.atlas";
+    private static final int PADDING = 2;
+
+    private File mSpriteDir;
+    private File mOutputDir;
+
+    @InputDirectory
+    public File getSpriteDir() {
+        return mSpriteDir;
+    }
+
+    public void setSpriteDir(File dir) {
+        mSpriteDir = dir;
+    }
+
+    @OutputDirectory
+    public File getOutputDir() {
+        return mOutputDir;
+    }
+
+    public void setOutputDir(File dir) {
+        mOutputDir = dir;
+    }
+
+    @TaskAction
+    public void pack() throws IOException {
+        File[] files = mSpriteDir.listFiles();
+        List<Sprite> sprites = new ArrayList<Sprite>();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                if (!file.getName().endsWith(".png")) continue;
+                BufferedImage image = ImageIO.read(file);
+                if (image == null) throw new GradleException("Not an image: " + file);
+                String name = file.getName().substring(0, file.getName().length() - 4);
+                sprites.add(new Sprite(name, image));
+            }
+        }
+        if (sprites.isEmpty()) throw new GradleException("No sprites in " + mSpriteDir);
+
+        // Tallest first keeps the shelves full. Ties by name so the output
+        // does not depend on the file system.
+        List<Sprite> order = new ArrayList<Sprite>(sprites);
+        Collections.sort(order, new Comparator<Sprite>() {
+            @Override
+            public int compare(Sprite a, Sprite b) {
+                if (a.image.getHeight() != b.image.getHeight()) {
+                    return b.image.getHeight() - a.image.getHeight();
+                }
+                return a.name.compareTo(b.name);
+            }
+        });
+
+        long area = 0;
+        int widest = 0;
+        for (Sprite s : order) {
+            int w = s.image.getWidth() + 2 * PADDING;
+            area += (long) w * (s.image.getHeight() + 2 * PADDING);
+            widest = Math.max(widest, w);
+        }
+        int pageWidth = powerOfTwo(Math.max(widest, (int) Math.ceil(Math.sqrt(area))));
+
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        for (Sprite s : order) {
+            int w = s.image.getWidth() + 2 * PADDING;
+            int h = s.image.getHeight() + 2 * PADDING;
+            if (x + w > pageWidth) {
+                x = 0;
+                y += shelfHeight;
+                shelfHeight = 0;
+            }
+            s.x = x + PADDING;
+            s.y = y + PADDING;
+            x += w;
+            shelfHeight = Math.max(shelfHeight, h);
+        }
+        int pageHeight = powerOfTwo(y + shelfHeight);
+
+        BufferedImage page = new BufferedImage(pageWidth, pageHeight, BufferedImage.TYPE_INT_ARGB);
+        for (Sprite s : order) {
+            int w = s.image.getWidth();
+            int h = s.image.getHeight();
+            page.setRGB(s.x, s.y, w, h, s.image.getRGB(0, 0, w, h, null, 0, w), 0, w);
+        }
+
+        mOutputDir.mkdirs();
+        if (!ImageIO.write(page, "png", new File(mOutputDir, ATLAS_IMAGE))) {
+            throw new GradleException("No PNG writer");
+        }
+        Writer out = new OutputStreamWriter(
+                new FileOutputStream(new File(mOutputDir, ATLAS_INDEX)), "UTF-8");
+        try {
+            out.write("# generated by " + getPath() + "; name x y width height\n");
+            out.write("page " + ATLAS_IMAGE + " " + pageWidth + " " + pageHeight + "\n");
+            for (Sprite s : sprites) {
+                out.write(s.name + " " + s.x + " " + s.y + " " + s.image.getWidth()
+                        + " " + s.image.getHeight() + "\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static int powerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    private static class Sprite {
+        final String name;
+        final BufferedImage image;
+        int x;
+        int y;
+
+        Sprite(String name, BufferedImage image) {
+            this.name = name;
+            this.image = image;
+        }
+    }
+}
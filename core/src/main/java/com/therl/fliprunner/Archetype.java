@@ -0,0 +1,412 @@
+package com.therl.fliprunner;
+
+/**
+ * Storage for every entity of one kind: the entities that have the same set
+ * of components, each component kept as parallel primitive columns.
+ *
+ * Live entities are packed into rows 0 to size() - 1 of every column, so a
+ * system goes over an archetype with a straight loop over arrays and
+ * touches only the columns it needs. Entities are named by an id that
+ * stays the same while they live, whichever row they are moved to; rowOf()
+ * finds the row. Nothing is allocated after construction: create() takes
+ * an id off a free stack, and destroy() moves the last row into the hole
+ * and pushes the id back.
+ *
+ * Columns of components the archetype does not have are null. Coordinates
+ * (position and collider) are doubles, or floats for kinds that are
+ * simulated in float precision, like obstacles: half the memory for a loop
+ * over them, and no casts to keep them bit for bit what they always were.
+ * The columns of the other precision are null. Velocity comes in doubles
+ * only, since nothing simulated in floats moves on its own.
+ */
+public class Archetype {
+    /*
+     * Components
+     */
+    /** x, y, prevX, prevY: where the entity is and was a step ago */
+    public static final int POSITION = 1;
+    /** dx, dy, in pixels per second */
+    public static final int VELOCITY = 1 << 1;
+    /** width, height of the box the entity collides with */
+    public static final int COLLIDER = 1 << 2;
+    /** sprite: one of the Renderer.SPRITE_* constants */
+    public static final int SPRITE = 1 << 3;
+    /** jumping: one of the Player.JUMPING_* constants */
+    public static final int JUMP = 1 << 4;
+
+    /*
+     * Precision of the coordinate columns
+     */
+    public static final int PRECISION_DOUBLE = 0;
+    public static final int PRECISION_FLOAT = 1;
+
+    private final int mComponents;
+    private final int mPrecision;
+
+    /*
+     * Columns, indexed by row
+     */
+    private final double[] mX;
+    private final double[] mY;
+    private final double[] mPrevX;
+    private final double[] mPrevY;
+    private final double[] mDX;
+    private final double[] mDY;
+    private final double[] mWidth;
+    private final double[] mHeight;
+    private final float[] mFloatX;
+    private final float[] mFloatY;
+    private final float[] mFloatPrevX;
+    private final float[] mFloatPrevY;
+    private final float[] mFloatWidth;
+    private final float[] mFloatHeight;
+    private final int[] mSprite;
+    private final int[] mJumping;
+
+    /** Id of the entity in each row. */
+    private final int[] mIds;
+    /** Row of each id, or -1 if the id is free. */
+    private final int[] mRows;
+    private int mSize;
+
+    /** Ids not in use, as a stack. */
+    private final int[] mFree;
+    private int mFreeCount;
+
+    /**
+     * Makes an archetype with double coordinates.
+     *
+     * @param components the component bits every entity of this kind has
+     * @param capacity most entities alive at once
+     */
+    public Archetype(int components, int capacity) {
+        this(components, capacity, PRECISION_DOUBLE);
+    }
+
+    /**
+     * @param components the component bits every entity of this kind has
+     * @param capacity most entities alive at once
+     * @param precision one of the PRECISION_* constants
+     * @throws IllegalArgumentException for VELOCITY in float precision
+     */
+    public Archetype(int components, int capacity, int precision) {
+        boolean doubles = precision == PRECISION_DOUBLE;
+        if (!doubles && (components & VELOCITY) != 0) {
+            throw new IllegalArgumentException("No float velocity columns");
+        }
+        mComponents = components;
+        mPrecision = precision;
+        boolean position = has(POSITION);
+        mX = position && doubles ? new double[capacity] : null;
+        mY = position && doubles ? new double[capacity] : null;
+        mPrevX = position && doubles ? new double[capacity] : null;
+        mPrevY = position && doubles ? new double[capacity] : null;
+        mFloatX = position && !doubles ? new float[capacity] : null;
+        mFloatY = position && !doubles ? new float[capacity] : null;
+        mFloatPrevX = position && !doubles ? new float[capacity] : null;
+        mFloatPrevY = position && !doubles ? new float[capacity] : null;
+        mDX = has(VELOCITY) ? new double[capacity] : null;
+        mDY = has(VELOCITY) ? new double[capacity] : null;
+        boolean collider = has(COLLIDER);
+        mWidth = collider && doubles ? new double[capacity] : null;
+        mHeight = collider && doubles ? new double[capacity] : null;
+        mFloatWidth = collider && !doubles ? new float[capacity] : null;
+        mFloatHeight = collider && !doubles ? new float[capacity] : null;
+        mSprite = has(SPRITE) ? new int[capacity] : null;
+        mJumping = has(JUMP) ? new int[capacity] : null;
+        mIds = new int[capacity];
+        mRows = new int[capacity];
+        mFree = new int[capacity];
+        clear();
+    }
+
+    /**
+     * @return whether every entity of this kind has all the given components
+     */
+    public boolean has(int components) {
+        return (mComponents & components) == components;
+    }
+
+    /**
+     * @return one of the PRECISION_* constants
+     */
+    public int getPrecision() {
+        return mPrecision;
+    }
+
+    /**
+     * Destroys every entity.
+     */
+    public void clear() {
+        for (int i = 0; i < mRows.length; i++) {
+            mRows[i] = -1;
+            // Push in reverse so that id 0 is handed out first.
+            mFree[i] = mRows.length - 1 - i;
+        }
+        mFreeCount = mRows.length;
+        mSize = 0;
+    }
+
+    /**
+     * Adds an entity in the last row. Its columns hold whatever the row
+     * held before; the caller sets them.
+     *
+     * @return the new entity's id, or -1 if the archetype is full
+     */
+    public int create() {
+        if (mFreeCount == 0) return -1;
+        int id = mFree[--mFreeCount];
+        mRows[id] = mSize;
+        mIds[mSize++] = id;
+        return id;
+    }
+
+    /**
+     * Removes an entity. The entity in the last row takes its row, so row
+     * order is not stable across destroys.
+     *
+     * @param id an id returned by create() and not yet destroyed
+     */
+    public void destroy(int id) {
+        int row = mRows[id];
+        if (row < 0) return;
+        int last = --mSize;
+        if (row != last) {
+            copyRow(last, row);
+            int moved = mIds[last];
+            mIds[row] = moved;
+            mRows[moved] = row;
+        }
+        mRows[id] = -1;
+        mFree[mFreeCount++] = id;
+    }
+
+    private void copyRow(int from, int to) {
+        if (mX != null) {
+            mX[to] = mX[from];
+            mY[to] = mY[from];
+            mPrevX[to] = mPrevX[from];
+            mPrevY[to] = mPrevY[from];
+        }
+        if (mDX != null) {
+            mDX[to] = mDX[from];
+            mDY[to] = mDY[from];
+        }
+        if (mWidth != null) {
+            mWidth[to] = mWidth[from];
+            mHeight[to] = mHeight[from];
+        }
+        if (mFloatX != null) {
+            mFloatX[to] = mFloatX[from];
+            mFloatY[to] = mFloatY[from];
+            mFloatPrevX[to] = mFloatPrevX[from];
+            mFloatPrevY[to] = mFloatPrevY[from];
+        }
+        if (mFloatWidth != null) {
+            mFloatWidth[to] = mFloatWidth[from];
+            mFloatHeight[to] = mFloatHeight[from];
+        }
+        if (mSprite != null) mSprite[to] = mSprite[from];
+        if (mJumping != null) mJumping[to] = mJumping[from];
+    }
+
+    /**
+     * Makes this archetype hold the same entities as another, with the same
+     * ids in the same rows. Copies only the live rows, so it is cheap
+     * enough to do thousands of times a frame.
+     *
+     * @throws IllegalArgumentException if the other has other components,
+     *         precision or capacity
+     */
+    public void copyFrom(Archetype other) {
+        if (other.mComponents != mComponents || other.mPrecision != mPrecision
+                || other.capacity() != capacity()) {
+            throw new IllegalArgumentException("Archetypes differ");
+        }
+        int size = other.mSize;
+        if (mX != null) {
+            System.arraycopy(other.mX, 0, mX, 0, size);
+            System.arraycopy(other.mY, 0, mY, 0, size);
+            System.arraycopy(other.mPrevX, 0, mPrevX, 0, size);
+            System.arraycopy(other.mPrevY, 0, mPrevY, 0, size);
+        }
+        if (mDX != null) {
+            System.arraycopy(other.mDX, 0, mDX, 0, size);
+            System.arraycopy(other.mDY, 0, mDY, 0, size);
+        }
+        if (mWidth != null) {
+            System.arraycopy(other.mWidth, 0, mWidth, 0, size);
+            System.arraycopy(other.mHeight, 0, mHeight, 0, size);
+        }
+        if (mFloatX != null) {
+            System.arraycopy(other.mFloatX, 0, mFloatX, 0, size);
+            System.arraycopy(other.mFloatY, 0, mFloatY, 0, size);
+            System.arraycopy(other.mFloatPrevX, 0, mFloatPrevX, 0, size);
+            System.arraycopy(other.mFloatPrevY, 0, mFloatPrevY, 0, size);
+        }
+        if (mFloatWidth != null) {
+            System.arraycopy(other.mFloatWidth, 0, mFloatWidth, 0, size);
+            System.arraycopy(other.mFloatHeight, 0, mFloatHeight, 0, size);
+        }
+        if (mSprite != null) System.arraycopy(other.mSprite, 0, mSprite, 0, size);
+        if (mJumping != null) System.arraycopy(other.mJumping, 0, mJumping, 0, size);
+        System.arraycopy(other.mIds, 0, mIds, 0, size);
+        System.arraycopy(other.mRows, 0, mRows, 0, mRows.length);
+        System.arraycopy(other.mFree, 0, mFree, 0, other.mFreeCount);
+        mSize = size;
+        mFreeCount = other.mFreeCount;
+    }
+
+    /*
+     * Restoring a saved layout, for SaveState. Call clear(), then restore()
+     * every id in row order, then setFree() the free stack bottom up.
+     */
+
+    /**
+     * Puts an entity with the given id in the next row.
+     *
+     * @return the row
+     * @throws IllegalArgumentException if the id is out of range or taken
+     */
+    int restore(int id) {
+        if (id < 0 || id >= mRows.length || mRows[id] >= 0 || mSize == mRows.length) {
+            throw new IllegalArgumentException("Bad saved id " + id);
+        }
+        mRows[id] = mSize;
+        mIds[mSize] = id;
+        return mSize++;
+    }
+
+    /**
+     * Replaces the free stack.
+     *
+     * @throws IllegalArgumentException if it does not hold exactly the ids
+     *         not restored
+     */
+    void setFree(int[] ids, int count) {
+        if (count != mRows.length - mSize) {
+            throw new IllegalArgumentException("Saved " + count + " free ids, expected "
+                    + (mRows.length - mSize));
+        }
+        for (int i = 0; i < count; i++) {
+            int id = ids[i];
+            if (id < 0 || id >= mRows.length || mRows[id] >= 0) {
+                throw new IllegalArgumentException("Bad saved free id " + id);
+            }
+            mFree[i] = id;
+        }
+        mFreeCount = count;
+    }
+
+    /**
+     * @return the number of entities alive
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public int capacity() {
+        return mRows.length;
+    }
+
+    /**
+     * @return the row of a live entity, or -1 if the id is free
+     */
+    public int rowOf(int id) {
+        return mRows[id];
+    }
+
+    /**
+     * @param row between 0 and size() - 1
+     */
+    public int idAt(int row) {
+        return mIds[row];
+    }
+
+    public boolean isAlive(int id) {
+        return mRows[id] >= 0;
+    }
+
+    /**
+     * @return the number of free ids
+     */
+    int getFreeCount() {
+        return mFreeCount;
+    }
+
+    /**
+     * @param index from the bottom of the free stack
+     */
+    int getFree(int index) {
+        return mFree[index];
+    }
+
+    /*
+     * Columns. Systems fetch the ones they need once and loop over rows 0 to
+     * size() - 1. Coordinates come in the archetype's precision only.
+     */
+
+    public double[] getX() {
+        return mX;
+    }
+
+    public double[] getY() {
+        return mY;
+    }
+
+    public double[] getPrevX() {
+        return mPrevX;
+    }
+
+    public double[] getPrevY() {
+        return mPrevY;
+    }
+
+    public double[] getDX() {
+        return mDX;
+    }
+
+    public double[] getDY() {
+        return mDY;
+    }
+
+    public double[] getWidth() {
+        return mWidth;
+    }
+
+    public double[] getHeight() {
+        return mHeight;
+    }
+
+    public float[] getFloatX() {
+        return mFloatX;
+    }
+
+    public float[] getFloatY() {
+        return mFloatY;
+    }
+
+    public float[] getFloatPrevX() {
+        return mFloatPrevX;
+    }
+
+    public float[] getFloatPrevY() {
+        return mFloatPrevY;
+    }
+
+    public float[] getFloatWidth() {
+        return mFloatWidth;
+    }
+
+    public float[] getFloatHeight() {
+        return mFloatHeight;
+    }
+
+    public int[] getSprite() {
+        return mSprite;
+    }
+
+    public int[] getJumping() {
+        return mJumping;
+    }
+}
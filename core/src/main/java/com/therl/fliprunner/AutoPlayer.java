@@ -0,0 +1,145 @@
+package com.therl.fliprunner;
+
+/**
+ * A bot that plays by looking ahead: before each step it tries flipping up,
+ * flipping down and not flipping on copies of the world, and picks whatever
+ * keeps the player alive the longest.
+ *
+ * The search branches every DECISION_TICKS steps, only where a flip is
+ * possible, and deepens one decision at a time until it reaches MAX_DEPTH
+ * or runs out of its time budget; a search cut short uses the deepest one
+ * that finished. Branches are World.copyFrom() into worlds made up front,
+ * one per depth, so a search allocates nothing however many branches it
+ * looks at. While the player is off the line there is nothing to decide
+ * and decide() returns at once.
+ *
+ * The bot only chooses commands; the caller applies them the way it
+ * applies player input, so its runs are recorded and replayed like any
+ * other. Given the same world it decides the same unless the budget cuts
+ * the search short.
+ */
+public class AutoPlayer {
+    /** Steps between two decisions in the search */
+    public static final int DECISION_TICKS = 12;
+    /** Most decisions looked ahead */
+    public static final int MAX_DEPTH = 8;
+    /** Time budget used until setBudgetNanos() is called */
+    public static final long DEFAULT_BUDGET_NANOS = 2000000L;
+
+    /** Tried in this order, so ties go to not flipping */
+    private static final int[] COMMANDS = {
+            World.COMMAND_NONE, World.COMMAND_FLIP_UP, World.COMMAND_FLIP_DOWN
+    };
+
+    /** The branch being looked at on each depth */
+    private final World[] mBranches = new World[MAX_DEPTH];
+    private long mBudgetNanos = DEFAULT_BUDGET_NANOS;
+    private long mDeadline;
+    private boolean mOutOfTime;
+
+    /*
+     * What the last search did, for performance runs
+     */
+    private int mNodes;
+    private int mDepth;
+
+    /**
+     * @param obstacleCapacity the obstacle capacity of the worlds it will
+     *        play
+     */
+    public AutoPlayer(int obstacleCapacity) {
+        for (int i = 0; i < MAX_DEPTH; i++) mBranches[i] = new World(obstacleCapacity);
+    }
+
+    /**
+     * Sets how long one call to decide() may search. A search always
+     * finishes at least one decision deep, even over budget.
+     */
+    public void setBudgetNanos(long budgetNanos) {
+        mBudgetNanos = budgetNanos;
+    }
+
+    public long getBudgetNanos() {
+        return mBudgetNanos;
+    }
+
+    /**
+     * Picks the command to apply before the world's next step.
+     *
+     * @return one of the World.COMMAND_* constants
+     */
+    public int decide(World world) {
+        mNodes = 0;
+        mDepth = 0;
+        if (world.isCrashed() || world.getPlayer().getJumping() != Player.JUMPING_NONE) {
+            return World.COMMAND_NONE;
+        }
+        mDeadline = System.nanoTime() + mBudgetNanos;
+        mOutOfTime = false;
+        int best = World.COMMAND_NONE;
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            int command = World.COMMAND_NONE;
+            int bestScore = -1;
+            for (int c : COMMANDS) {
+                int score = branch(world, c, depth, 0);
+                if (score > bestScore) {
+                    bestScore = score;
+                    command = c;
+                }
+                if (bestScore == depth * DECISION_TICKS) break;
+            }
+            // the first depth always finishes, so there is an answer
+            if (mOutOfTime && depth > 1) break;
+            best = command;
+            mDepth = depth;
+            if (mOutOfTime) break;
+        }
+        return best;
+    }
+
+    /**
+     * Plays a command and then the best of what follows, to the given
+     * number of decisions.
+     *
+     * @return steps survived, at most depth * DECISION_TICKS; -1 if the
+     *         command would do nothing, so the branch is the same as not
+     *         flipping
+     */
+    private int branch(World from, int command, int depth, int level) {
+        if (command != World.COMMAND_NONE
+                && from.getPlayer().getJumping() != Player.JUMPING_NONE) {
+            return -1;
+        }
+        if (level > 0 && System.nanoTime() > mDeadline) mOutOfTime = true;
+        if (mOutOfTime) return 0;
+        mNodes++;
+        World world = mBranches[level];
+        world.copyFrom(from);
+        world.applyCommand(command);
+        for (int i = 0; i < DECISION_TICKS; i++) {
+            if (!world.step()) return i;
+        }
+        if (depth == 1) return DECISION_TICKS;
+        int best = 0;
+        for (int c : COMMANDS) {
+            best = Math.max(best, branch(world, c, depth - 1, level + 1));
+            if (best == (depth - 1) * DECISION_TICKS) break;
+        }
+        return DECISION_TICKS + best;
+    }
+
+    /**
+     * @return the number of branches the last decide() stepped
+     */
+    public int getNodes() {
+        return mNodes;
+    }
+
+    /**
+     * @return how many decisions deep the last decide() got, 0 if it did
+     *         not search
+     */
+    public int getDepth() {
+        return mDepth;
+    }
+}
@@ -0,0 +1,126 @@
+package com.therl.fliprunner;
+
+/**
+ * Finds the obstacle, if any, the player ran into during a physics step.
+ *
+ * The broad phase asks the ObstaclePool's grid for obstacles near the
+ * player's path; the narrow phase then tests the player's circle against
+ * each candidate box. The test is swept: in one step a flip moves the player
+ * JUMP_SPEED / 120 = 25px while the obstacles move the other way, so checking
+ * only the end position could let the player tunnel through a thin obstacle.
+ */
+public class CollisionDetector {
+    /** Scratch space for broad phase results. */
+    private final int[] mCandidates;
+
+    public CollisionDetector(int capacity) {
+        mCandidates = new int[capacity];
+    }
+
+    /**
+     * Tests the player's movement over the last physics step against every
+     * obstacle. Call after both have been stepped.
+     *
+     * @return the slot of an obstacle that was hit, or -1
+     */
+    public int findHit(Player player, ObstaclePool obstacles) {
+        float r = Player.RADIUS;
+        double endX = player.getCenterX();
+        double endY = player.getCenterY();
+        // Work in the frame where the obstacles stand still at their current
+        // position: there the player started the step further left by the
+        // distance the obstacles scrolled, and moved right into them.
+        double startX = player.getPrevCenterX() - obstacles.getStepDistance();
+        double startY = player.getPrevCenterY();
+
+        int count = obstacles.query(
+                (float) (Math.min(startX, endX) - r), (float) (Math.min(startY, endY) - r),
+                (float) (Math.max(startX, endX) + r), (float) (Math.max(startY, endY) + r),
+                mCandidates);
+        for (int i = 0; i < count; i++) {
+            int slot = mCandidates[i];
+            float left = obstacles.getX(slot);
+            float bottom = obstacles.getY(slot);
+            if (sweptCircleHitsBox(startX, startY, endX, endY, r, left, bottom,
+                    left + obstacles.getWidth(slot), bottom + obstacles.getHeight(slot))) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether a circle overlaps a box
+     */
+    public static boolean circleHitsBox(double cx, double cy, double r,
+                                        double left, double bottom, double right, double top) {
+        double dx = cx - Math.max(left, Math.min(cx, right));
+        double dy = cy - Math.max(bottom, Math.min(cy, top));
+        return dx * dx + dy * dy <= r * r;
+    }
+
+    /**
+     * Tests a circle moving in a straight line against a box. The set of
+     * centres that touch the box is the box grown by r with rounded corners,
+     * so the path is checked against the two grown rectangles that make up
+     * its straight edges and the four corner circles.
+     *
+     * @return whether the circle touches the box anywhere along its path
+     */
+    public static boolean sweptCircleHitsBox(double x0, double y0, double x1, double y1,
+                                             double r, double left, double bottom,
+                                             double right, double top) {
+        if (x0 == x1 && y0 == y1) {
+            return circleHitsBox(x1, y1, r, left, bottom, right, top);
+        }
+        if (segmentHitsBox(x0, y0, x1, y1, left - r, bottom, right + r, top)) return true;
+        if (segmentHitsBox(x0, y0, x1, y1, left, bottom - r, right, top + r)) return true;
+        double r2 = r * r;
+        return segmentDistanceSq(x0, y0, x1, y1, left, bottom) <= r2
+                || segmentDistanceSq(x0, y0, x1, y1, right, bottom) <= r2
+                || segmentDistanceSq(x0, y0, x1, y1, left, top) <= r2
+                || segmentDistanceSq(x0, y0, x1, y1, right, top) <= r2;
+    }
+
+    /**
+     * Slab test of the segment (x0, y0)-(x1, y1) against a box.
+     */
+    private static boolean segmentHitsBox(double x0, double y0, double x1, double y1,
+                                          double left, double bottom, double right, double top) {
+        double tMin = 0;
+        double tMax = 1;
+        double dx = x1 - x0;
+        if (dx == 0) {
+            if (x0 < left || x0 > right) return false;
+        } else {
+            double t0 = (left - x0) / dx;
+            double t1 = (right - x0) / dx;
+            tMin = Math.max(tMin, Math.min(t0, t1));
+            tMax = Math.min(tMax, Math.max(t0, t1));
+            if (tMin > tMax) return false;
+        }
+        double dy = y1 - y0;
+        if (dy == 0) {
+            return y0 >= bottom && y0 <= top;
+        }
+        double t0 = (bottom - y0) / dy;
+        double t1 = (top - y0) / dy;
+        tMin = Math.max(tMin, Math.min(t0, t1));
+        tMax = Math.min(tMax, Math.max(t0, t1));
+        return tMin <= tMax;
+    }
+
+    /**
+     * @return squared distance from (px, py) to the segment (x0, y0)-(x1, y1)
+     */
+    private static double segmentDistanceSq(double x0, double y0, double x1, double y1,
+                                            double px, double py) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double t = ((px - x0) * dx + (py - y0) * dy) / (dx * dx + dy * dy);
+        t = Math.max(0, Math.min(1, t));
+        double ex = x0 + t * dx - px;
+        double ey = y0 + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+}
@@ -0,0 +1,131 @@
+package com.therl.fliprunner;
+
+/**
+ * Uniform grid broad phase for the obstacles of an ObstaclePool.
+ *
+ * Obstacles all scroll at the same speed, so instead of moving them through
+ * the grid every step they are filed by track position (world x plus the
+ * distance scrolled when they were inserted), where they never move. Each
+ * obstacle sits in the one cell holding its bottom-left corner; queries widen
+ * their box by the largest obstacle seen so that nothing overlapping is
+ * missed. Columns wrap around, so the grid only has to cover the few screens
+ * of track that are alive at any time; stray hits from aliased columns are
+ * thrown out by the narrow phase.
+ *
+ * Cells are intrusive doubly linked lists threaded through per-slot int
+ * arrays, so insert and remove are O(1) and nothing is allocated.
+ */
+public class CollisionGrid {
+    /*
+     * Grid constants. COLUMNS must be a power of two.
+     */
+    public static final int CELL_SIZE = 128;
+    private static final int COLUMNS = 64;
+    private static final int ROWS = 16;
+    private static final int NONE = -1;
+
+    /** First slot in each cell, or NONE. */
+    private final int[] mHead = new int[COLUMNS * ROWS];
+    /** Next and previous slot in the same cell, or NONE. */
+    private final int[] mNext;
+    private final int[] mPrev;
+    /** Cell each slot is filed in, or NONE. */
+    private final int[] mCellOf;
+
+    /** Largest width and height inserted since the last clear(). */
+    private float mMaxWidth;
+    private float mMaxHeight;
+
+    public CollisionGrid(int capacity) {
+        mNext = new int[capacity];
+        mPrev = new int[capacity];
+        mCellOf = new int[capacity];
+        clear();
+    }
+
+    public void clear() {
+        for (int i = 0; i < mHead.length; i++) mHead[i] = NONE;
+        for (int i = 0; i < mCellOf.length; i++) mCellOf[i] = NONE;
+        mMaxWidth = 0;
+        mMaxHeight = 0;
+    }
+
+    /**
+     * Makes this grid file the same slots in the same order as another of
+     * the same capacity.
+     */
+    public void copyFrom(CollisionGrid other) {
+        System.arraycopy(other.mHead, 0, mHead, 0, mHead.length);
+        System.arraycopy(other.mNext, 0, mNext, 0, mNext.length);
+        System.arraycopy(other.mPrev, 0, mPrev, 0, mPrev.length);
+        System.arraycopy(other.mCellOf, 0, mCellOf, 0, mCellOf.length);
+        mMaxWidth = other.mMaxWidth;
+        mMaxHeight = other.mMaxHeight;
+    }
+
+    /**
+     * Files a slot under the cell holding (trackX, y).
+     */
+    public void insert(int slot, double trackX, float y, float width, float height) {
+        if (mCellOf[slot] != NONE) remove(slot);
+        int cell = column(trackX) * ROWS + row(y);
+        mCellOf[slot] = cell;
+        mPrev[slot] = NONE;
+        mNext[slot] = mHead[cell];
+        if (mHead[cell] != NONE) mPrev[mHead[cell]] = slot;
+        mHead[cell] = slot;
+        if (width > mMaxWidth) mMaxWidth = width;
+        if (height > mMaxHeight) mMaxHeight = height;
+    }
+
+    public void remove(int slot) {
+        int cell = mCellOf[slot];
+        if (cell == NONE) return;
+        int prev = mPrev[slot];
+        int next = mNext[slot];
+        if (prev != NONE) mNext[prev] = next;
+        else mHead[cell] = next;
+        if (next != NONE) mPrev[next] = prev;
+        mCellOf[slot] = NONE;
+    }
+
+    /**
+     * Collects every slot that may overlap the given box. May report slots
+     * that do not overlap it, but never misses one that does.
+     *
+     * @param out receives the slots; must be at least the grid capacity long
+     * @return how many slots were written to out
+     */
+    public int query(double minTrackX, float minY, double maxTrackX, float maxY, int[] out) {
+        // An item is filed by its bottom-left corner, which can be up to the
+        // largest item size below/left of the box and still reach into it.
+        long firstCol = cellIndex(minTrackX - mMaxWidth);
+        long lastCol = Math.min(cellIndex(maxTrackX), firstCol + COLUMNS - 1);
+        int firstRow = row(minY - mMaxHeight);
+        int lastRow = row(maxY);
+        int count = 0;
+        for (long col = firstCol; col <= lastCol; col++) {
+            int base = (int) (col & (COLUMNS - 1)) * ROWS;
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int slot = mHead[base + row]; slot != NONE; slot = mNext[slot]) {
+                    out[count++] = slot;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static long cellIndex(double v) {
+        return (long) Math.floor(v / CELL_SIZE);
+    }
+
+    private static int column(double trackX) {
+        return (int) (cellIndex(trackX) & (COLUMNS - 1));
+    }
+
+    /** Rows are centred on y = 0; anything further out shares the edge rows. */
+    private static int row(float y) {
+        long row = cellIndex(y) + ROWS / 2;
+        return (int) Math.max(0, Math.min(ROWS - 1, row));
+    }
+}
@@ -0,0 +1,221 @@
+package com.therl.fliprunner;
+
+/**
+ * The rects of whole pixels a frame has to repaint in dirty rect mode, one
+ * per sprite or particle batch rather than one box around them all: the
+ * obstacles are spread over the whole track, so their bounding box is most
+ * of the screen even when each moved a few pixels.
+ *
+ * Rects that overlap are merged when one rect over both is no more pixels
+ * than the two apart, so a sprite that moved a little costs one rect for
+ * where it was and where it is. The bounding box, as a DirtyRegion, is what
+ * to lock.
+ */
+public class DirtyRects {
+    /** Antialiasing and rounding may touch a pixel beyond a sprite's rect */
+    public static final float MARGIN = 1;
+
+    private int mCount;
+    /** left, top, right, bottom of each rect; only grows */
+    private int[] mRects = new int[16 * 4];
+
+    public void setEmpty() {
+        mCount = 0;
+    }
+
+    public void set(DirtyRects other) {
+        mCount = 0;
+        add(other);
+    }
+
+    /**
+     * Adds a rect, rounded outwards to whole pixels. Empty rects are left
+     * out.
+     */
+    public void add(float left, float top, float right, float bottom) {
+        if (left >= right || top >= bottom) return;
+        append((int) Math.floor(left), (int) Math.floor(top),
+                (int) Math.ceil(right), (int) Math.ceil(bottom));
+    }
+
+    /**
+     * Adds every rect of another list.
+     */
+    public void add(DirtyRects other) {
+        for (int i = 0; i < other.mCount; i++) {
+            int r = i * 4;
+            append(other.mRects[r], other.mRects[r + 1], other.mRects[r + 2],
+                    other.mRects[r + 3]);
+        }
+    }
+
+    /**
+     * Adds a sprite's rect, grown by MARGIN.
+     */
+    public void addSprite(float left, float top, float right, float bottom) {
+        add(left - MARGIN, top - MARGIN, right + MARGIN, bottom + MARGIN);
+    }
+
+    /**
+     * Adds one rect around a batch of points or lines, as handed to
+     * Renderer.drawPoints() or drawLines().
+     *
+     * @param coords x, y pairs
+     * @param floats number of floats in coords to cover
+     * @param size diameter of a point or width of a line
+     */
+    public void addBatch(float[] coords, int floats, float size) {
+        if (floats < 2) return;
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < floats; i += 2) {
+            minX = Math.min(minX, coords[i]);
+            maxX = Math.max(maxX, coords[i]);
+            minY = Math.min(minY, coords[i + 1]);
+            maxY = Math.max(maxY, coords[i + 1]);
+        }
+        float margin = size / 2 + MARGIN;
+        add(minX - margin, minY - margin, maxX + margin, maxY + margin);
+    }
+
+    /**
+     * Shrinks every rect to what lies within a screen of the given size, and
+     * drops those that are off it.
+     */
+    public void clip(int width, int height) {
+        int kept = 0;
+        for (int i = 0; i < mCount; i++) {
+            int r = i * 4;
+            int left = Math.max(mRects[r], 0);
+            int top = Math.max(mRects[r + 1], 0);
+            int right = Math.min(mRects[r + 2], width);
+            int bottom = Math.min(mRects[r + 3], height);
+            if (left >= right || top >= bottom) continue;
+            set(kept++, left, top, right, bottom);
+        }
+        mCount = kept;
+    }
+
+    /**
+     * Merges overlapping or touching rects, as long as the merged rect is
+     * no more pixels than the two apart, until no such pair is left.
+     */
+    public void merge() {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < mCount; i++) {
+                for (int j = i + 1; j < mCount; j++) {
+                    if (tryMerge(i, j)) {
+                        // j is gone; the last rect took its place
+                        mCount--;
+                        if (j < mCount) {
+                            int last = mCount * 4;
+                            set(j, mRects[last], mRects[last + 1], mRects[last + 2],
+                                    mRects[last + 3]);
+                        }
+                        j--;
+                        merged = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Grows rect i over rect j if they overlap and that costs no pixels.
+     */
+    private boolean tryMerge(int i, int j) {
+        int a = i * 4;
+        int b = j * 4;
+        int left = Math.min(mRects[a], mRects[b]);
+        int top = Math.min(mRects[a + 1], mRects[b + 1]);
+        int right = Math.max(mRects[a + 2], mRects[b + 2]);
+        int bottom = Math.max(mRects[a + 3], mRects[b + 3]);
+        if (mRects[a] > mRects[b + 2] || mRects[b] > mRects[a + 2]
+                || mRects[a + 1] > mRects[b + 3] || mRects[b + 1] > mRects[a + 3]) {
+            return false;
+        }
+        if ((long) (right - left) * (bottom - top) > area(i) + area(j)) return false;
+        set(i, left, top, right, bottom);
+        return true;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    public int getLeft(int i) {
+        return mRects[i * 4];
+    }
+
+    public int getTop(int i) {
+        return mRects[i * 4 + 1];
+    }
+
+    public int getRight(int i) {
+        return mRects[i * 4 + 2];
+    }
+
+    public int getBottom(int i) {
+        return mRects[i * 4 + 3];
+    }
+
+    /**
+     * @return whether rect i overlaps the given one
+     */
+    public boolean intersects(int i, float left, float top, float right, float bottom) {
+        int r = i * 4;
+        return left < mRects[r + 2] && right > mRects[r]
+                && top < mRects[r + 3] && bottom > mRects[r + 1];
+    }
+
+    /**
+     * @return pixels painted when every rect is painted once; pixels where
+     *         rects overlap count once per rect
+     */
+    public long getArea() {
+        long area = 0;
+        for (int i = 0; i < mCount; i++) area += area(i);
+        return area;
+    }
+
+    /**
+     * Sets a region to the bounding box of every rect.
+     */
+    public void getBounds(DirtyRegion bounds) {
+        bounds.setEmpty();
+        for (int i = 0; i < mCount; i++) {
+            int r = i * 4;
+            bounds.add(mRects[r], mRects[r + 1], mRects[r + 2], mRects[r + 3]);
+        }
+    }
+
+    private long area(int i) {
+        int r = i * 4;
+        return (long) (mRects[r + 2] - mRects[r]) * (mRects[r + 3] - mRects[r + 1]);
+    }
+
+    private void append(int left, int top, int right, int bottom) {
+        if (mCount * 4 == mRects.length) {
+            int[] rects = new int[mRects.length * 2];
+            System.arraycopy(mRects, 0, rects, 0, mRects.length);
+            mRects = rects;
+        }
+        set(mCount++, left, top, right, bottom);
+    }
+
+    private void set(int i, int left, int top, int right, int bottom) {
+        int r = i * 4;
+        mRects[r] = left;
+        mRects[r + 1] = top;
+        mRects[r + 2] = right;
+        mRects[r + 3] = bottom;
+    }
+}
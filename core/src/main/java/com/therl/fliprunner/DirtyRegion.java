@@ -0,0 +1,97 @@
+package com.therl.fliprunner;
+
+/**
+ * A rectangle of whole pixels that grows to cover everything added to it,
+ * used to work out how much of the screen a frame has to repaint.
+ *
+ * Plain ints rather than android.graphics.Rect so it runs, and can be
+ * tested, anywhere.
+ */
+public class DirtyRegion {
+    private int mLeft;
+    private int mTop;
+    private int mRight;
+    private int mBottom;
+
+    public DirtyRegion() {
+        setEmpty();
+    }
+
+    public void setEmpty() {
+        mLeft = Integer.MAX_VALUE;
+        mTop = Integer.MAX_VALUE;
+        mRight = Integer.MIN_VALUE;
+        mBottom = Integer.MIN_VALUE;
+    }
+
+    public void set(int left, int top, int right, int bottom) {
+        mLeft = left;
+        mTop = top;
+        mRight = right;
+        mBottom = bottom;
+    }
+
+    public void set(DirtyRegion other) {
+        set(other.mLeft, other.mTop, other.mRight, other.mBottom);
+    }
+
+    /**
+     * Grows to cover a rect, rounded outwards to whole pixels.
+     */
+    public void add(float left, float top, float right, float bottom) {
+        if (left >= right || top >= bottom) return;
+        mLeft = Math.min(mLeft, (int) Math.floor(left));
+        mTop = Math.min(mTop, (int) Math.floor(top));
+        mRight = Math.max(mRight, (int) Math.ceil(right));
+        mBottom = Math.max(mBottom, (int) Math.ceil(bottom));
+    }
+
+    /**
+     * Grows to cover another region.
+     */
+    public void add(DirtyRegion other) {
+        if (other.isEmpty()) return;
+        mLeft = Math.min(mLeft, other.mLeft);
+        mTop = Math.min(mTop, other.mTop);
+        mRight = Math.max(mRight, other.mRight);
+        mBottom = Math.max(mBottom, other.mBottom);
+    }
+
+    /**
+     * Shrinks to what lies within a screen of the given size.
+     */
+    public void clip(int width, int height) {
+        mLeft = Math.max(mLeft, 0);
+        mTop = Math.max(mTop, 0);
+        mRight = Math.min(mRight, width);
+        mBottom = Math.min(mBottom, height);
+        if (isEmpty()) setEmpty();
+    }
+
+    public boolean isEmpty() {
+        return mLeft >= mRight || mTop >= mBottom;
+    }
+
+    /**
+     * @return number of pixels covered
+     */
+    public long getArea() {
+        return isEmpty() ? 0 : (long) (mRight - mLeft) * (mBottom - mTop);
+    }
+
+    public int getLeft() {
+        return mLeft;
+    }
+
+    public int getTop() {
+        return mTop;
+    }
+
+    public int getRight() {
+        return mRight;
+    }
+
+    public int getBottom() {
+        return mBottom;
+    }
+}
@@ -0,0 +1,87 @@
+package com.therl.fliprunner;
+
+/**
+ * Turns wall-clock time into a whole number of fixed-length physics steps.
+ *
+ * Real time is fed in with {@link #advance(long)}, which adds it to an
+ * accumulator and hands back how many steps of {@link #getStepNanos()} should
+ * be simulated. Whatever is left over is exposed as {@link #getAlpha()} so the
+ * renderer can interpolate between the previous and the current step.
+ */
+public class FixedTimestep {
+
+    /** Length of a single step, in nanoseconds. */
+    private final long mStepNanos;
+    /** Most steps handed out by a single call to advance(). */
+    private final int mMaxSteps;
+
+    /** Time of the last call to advance(), or the start time after reset(). */
+    private long mLastTime;
+    /** Real time that has passed but not yet been simulated. */
+    private long mAccumulator;
+
+    public FixedTimestep(long stepNanos, int maxSteps) {
+        mStepNanos = stepNanos;
+        mMaxSteps = maxSteps;
+    }
+
+    /**
+     * Restarts the clock. Nothing is simulated until now reaches the given
+     * start time, which lets the game delay the start of the physics.
+     *
+     * @param startTime time in nanoseconds at which stepping should begin
+     */
+    public void reset(long startTime) {
+        mLastTime = startTime;
+        mAccumulator = 0;
+    }
+
+    /**
+     * Accounts for the time passed since the previous call.
+     *
+     * @param now current time in nanoseconds, from System.nanoTime()
+     * @return the number of steps to simulate, never more than the cap
+     */
+    public int advance(long now) {
+        // Do nothing if the start time is still in the future.
+        if (mLastTime > now) return 0;
+        mAccumulator += now - mLastTime;
+        mLastTime = now;
+
+        int steps = (int) Math.min(mAccumulator / mStepNanos, mMaxSteps);
+        mAccumulator -= steps * mStepNanos;
+        // We fell too far behind (slow device, debugger, GC...). Drop the
+        // backlog instead of trying to catch up, which would only make the
+        // next frame slower still.
+        if (mAccumulator >= mStepNanos) mAccumulator %= mStepNanos;
+        return steps;
+    }
+
+    /**
+     * @return how far real time is into the next step, between 0 and 1
+     */
+    public double getAlpha() {
+        return (double) mAccumulator / mStepNanos;
+    }
+
+    /**
+     * @return the time the most recent step stands for, i.e. the time of
+     *         the last advance() less what is left in the accumulator
+     */
+    public long getLastStepTime() {
+        return mLastTime - mAccumulator;
+    }
+
+    /**
+     * @param now current time in nanoseconds, from System.nanoTime()
+     * @return how long until advance() will hand out another step, or 0 if
+     *         one is already due
+     */
+    public long getNanosUntilNextStep(long now) {
+        return Math.max(0, getLastStepTime() + mStepNanos - now);
+    }
+
+    public long getStepNanos() {
+        return mStepNanos;
+    }
+}
@@ -0,0 +1,78 @@
+package com.therl.fliprunner;
+
+/**
+ * The runner physics: entities with POSITION, VELOCITY and JUMP run along
+ * the line, flip off it upwards or downwards, and are pulled back by the
+ * gravity of the side they flipped to until they land.
+ *
+ * Gravity and impulses come from a PhysicsTable, by lane and zone.
+ */
+public final class FlipSystem {
+    /** Components an archetype needs for this system */
+    public static final int COMPONENTS = Archetype.POSITION | Archetype.VELOCITY
+            | Archetype.JUMP;
+
+    private FlipSystem() {
+    }
+
+    /**
+     * Starts a flip, or lands one.
+     *
+     * @param jumping one of the Player.JUMPING_* constants
+     * @return false if the entity is already off the line and was asked to
+     *         flip again
+     */
+    public static boolean flip(Archetype entities, int row, int jumping, PhysicsTable physics,
+                               int zone) {
+        int[] current = entities.getJumping();
+        if (current[row] != Player.JUMPING_NONE && jumping != Player.JUMPING_NONE) return false;
+        current[row] = jumping;
+        // the impulse towards the line is 0
+        entities.getDY()[row] += physics.getImpulse(zone, jumping + 1);
+        return true;
+    }
+
+    /**
+     * Advances every entity of the archetype by one physics step.
+     *
+     * @param elapsed length of the step in seconds, normally PHYS_STEP_SEC
+     */
+    public static void update(Archetype entities, PhysicsTable physics, int zone,
+                              double elapsed) {
+        double[] x = entities.getX();
+        double[] y = entities.getY();
+        double[] prevX = entities.getPrevX();
+        double[] prevY = entities.getPrevY();
+        double[] dx = entities.getDX();
+        double[] dy = entities.getDY();
+        int[] jumping = entities.getJumping();
+        for (int i = 0; i < entities.size(); i++) {
+            prevX[i] = x[i];
+            prevY[i] = y[i];
+
+            // Base accelerations -- 0 for x, gravity for y. Gravity pulls
+            // only once the entity is off the line on the side it flipped
+            // to; the sign of jumping is that side, so one product tells
+            // both.
+            int side = jumping[i];
+            double ddx = 0.0;
+            double ddy = y[i] * side > 0 ? physics.getGravity(zone, side + 1) * elapsed : 0.0;
+
+            double dxOld = dx[i];
+            double dyOld = dy[i];
+            // figure speeds for the end of the period
+            dx[i] += ddx;
+            dy[i] += ddy;
+            // figure position based on average speed during the period
+            x[i] += elapsed * (dx[i] + dxOld) / 2;
+            y[i] += elapsed * (dy[i] + dyOld) / 2;
+
+            // back on or past the line
+            if (side != Player.JUMPING_NONE && y[i] * side <= 0) {
+                y[i] = 0;
+                dy[i] = 0;
+                flip(entities, i, Player.JUMPING_NONE, physics, zone);
+            }
+        }
+    }
+}
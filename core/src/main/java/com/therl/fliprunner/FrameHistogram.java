@@ -0,0 +1,104 @@
+package com.therl.fliprunner;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size histogram of durations, safe to record into from one thread
+ * while others read it, with no locks and no allocation per sample.
+ *
+ * Durations are kept in microseconds in log-linear buckets: exact below
+ * 32us, then 16 buckets per power of two, so every bucket is within about
+ * 6% of the values it holds. Anything over MAX_MICROS lands in the last
+ * bucket.
+ */
+public class FrameHistogram {
+    /** log2 of the number of buckets per power of two. */
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    /** Longest duration told apart from longer ones: about 16 seconds. */
+    public static final long MAX_MICROS = (1L << 24) - 1;
+    public static final int BUCKET_COUNT = bucketOf(MAX_MICROS) + 1;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mTotal = new AtomicLong();
+    private final AtomicLong mMaxMicros = new AtomicLong();
+
+    /**
+     * Adds one sample.
+     *
+     * @param nanos duration in nanoseconds; negative values count as zero
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        mCounts.incrementAndGet(bucketOf(Math.min(micros, MAX_MICROS)));
+        mTotal.incrementAndGet();
+        long max;
+        while (micros > (max = mMaxMicros.get())) {
+            if (mMaxMicros.compareAndSet(max, micros)) break;
+        }
+    }
+
+    /**
+     * Forgets every sample. Samples recorded concurrently may be kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) mCounts.set(i, 0);
+        mTotal.set(0);
+        mMaxMicros.set(0);
+    }
+
+    /**
+     * @param fraction between 0 and 1, e.g. 0.99 for the 99th percentile
+     * @return upper bound of the bucket holding that percentile, in
+     *         microseconds, or 0 if nothing was recorded
+     */
+    public long percentile(double fraction) {
+        long total = mTotal.get();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mCounts.get(i);
+            if (seen >= rank) return Math.min(bucketUpperMicros(i), getMaxMicros());
+        }
+        return getMaxMicros();
+    }
+
+    public long getCount() {
+        return mTotal.get();
+    }
+
+    public long getMaxMicros() {
+        return mMaxMicros.get();
+    }
+
+    /**
+     * @return number of samples in a bucket
+     */
+    public long getBucketCount(int bucket) {
+        return mCounts.get(bucket);
+    }
+
+    /**
+     * @return smallest duration a bucket holds, in microseconds
+     */
+    public static long bucketLowerMicros(int bucket) {
+        if (bucket < 2 * SUB_COUNT) return bucket;
+        int shift = bucket / SUB_COUNT - 1;
+        return (long) (bucket - shift * SUB_COUNT) << shift;
+    }
+
+    /**
+     * @return largest duration a bucket holds, in microseconds
+     */
+    public static long bucketUpperMicros(int bucket) {
+        return bucketLowerMicros(bucket + 1) - 1;
+    }
+
+    private static int bucketOf(long micros) {
+        int highBit = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = Math.max(0, highBit - SUB_BITS);
+        return shift * SUB_COUNT + (int) (micros >>> shift);
+    }
+}
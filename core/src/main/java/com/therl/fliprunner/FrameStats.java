@@ -0,0 +1,113 @@
+package com.therl.fliprunner;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timing of the game loop, one FrameHistogram per phase of a frame plus a
+ * count of dropped frames. Three threads record: the game thread update
+ * and input latency, the render thread draw, lock wait and frame interval,
+ * and the UI thread gesture latency. The overlay and the exporter read at
+ * any time.
+ */
+public class FrameStats {
+    /*
+     * Metrics
+     */
+    /** Time spent stepping the simulation. */
+    public static final int METRIC_UPDATE = 0;
+    /** Time spent drawing. */
+    public static final int METRIC_DRAW = 1;
+    /** Time spent waiting for a buffer to draw into, e.g. in lockCanvas(). */
+    public static final int METRIC_LOCK_WAIT = 2;
+    /** Time from the start of one frame to the start of the next. */
+    public static final int METRIC_FRAME_INTERVAL = 3;
+    /** Time from an input command being queued to the frame applying it. */
+    public static final int METRIC_INPUT_LATENCY = 4;
+    /** Time from a finger going down to its swipe being recognized. */
+    public static final int METRIC_GESTURE_LATENCY = 5;
+    public static final int METRIC_COUNT = 6;
+
+    private static final String[] METRIC_NAMES = {
+            "update", "draw", "lock_wait", "frame_interval", "input_latency",
+            "gesture_latency"
+    };
+
+    /** A frame counts as dropped when it took this many target intervals. */
+    private static final double DROPPED_FRAME_FACTOR = 1.5;
+
+    private final FrameHistogram[] mHistograms = new FrameHistogram[METRIC_COUNT];
+    private final AtomicLong mDroppedFrames = new AtomicLong();
+    private volatile long mDroppedThresholdNanos;
+
+    public FrameStats(int targetFps) {
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            mHistograms[i] = new FrameHistogram();
+        }
+        setTargetFps(targetFps);
+    }
+
+    /**
+     * Sets the frame rate that frame intervals are judged against.
+     */
+    public void setTargetFps(int fps) {
+        mDroppedThresholdNanos = (long) (DROPPED_FRAME_FACTOR * 1000000000L / Math.max(1, fps));
+    }
+
+    /**
+     * Adds one sample of a metric.
+     *
+     * @param metric one of the METRIC_* constants
+     * @param nanos the duration
+     */
+    public void record(int metric, long nanos) {
+        mHistograms[metric].record(nanos);
+        if (metric == METRIC_FRAME_INTERVAL && nanos > mDroppedThresholdNanos) {
+            mDroppedFrames.incrementAndGet();
+        }
+    }
+
+    public FrameHistogram getHistogram(int metric) {
+        return mHistograms[metric];
+    }
+
+    public static String getMetricName(int metric) {
+        return METRIC_NAMES[metric];
+    }
+
+    public long getDroppedFrames() {
+        return mDroppedFrames.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < METRIC_COUNT; i++) mHistograms[i].reset();
+        mDroppedFrames.set(0);
+    }
+
+    /**
+     * Writes a summary and every non-empty bucket as CSV, for offline
+     * analysis. All durations are in microseconds.
+     */
+    public void writeCsv(Writer out) throws IOException {
+        out.write("metric,count,p50_us,p95_us,p99_us,max_us\n");
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            FrameHistogram h = mHistograms[i];
+            out.write(METRIC_NAMES[i] + "," + h.getCount() + "," + h.percentile(0.50)
+                    + "," + h.percentile(0.95) + "," + h.percentile(0.99)
+                    + "," + h.getMaxMicros() + "\n");
+        }
+        out.write("dropped_frames," + getDroppedFrames() + "\n");
+        out.write("\nmetric,bucket_from_us,bucket_to_us,count\n");
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            FrameHistogram h = mHistograms[i];
+            for (int b = 0; b < FrameHistogram.BUCKET_COUNT; b++) {
+                long count = h.getBucketCount(b);
+                if (count == 0) continue;
+                out.write(METRIC_NAMES[i] + "," + FrameHistogram.bucketLowerMicros(b)
+                        + "," + FrameHistogram.bucketUpperMicros(b) + "," + count + "\n");
+            }
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,149 @@
+package com.therl.fliprunner;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One recorded run read back from an InputRecorder file: the seed, the view
+ * size, and every command with the tick it was applied at.
+ */
+public class InputLog {
+    private final long mSeed;
+    private final int mViewWidth;
+    private final int mViewHeight;
+
+    private long[] mTicks = new long[64];
+    private int[] mCommands = new int[64];
+    private int mCount;
+    /** Tick the run ended on, or -1 if it was cut short */
+    private long mEndTick = -1;
+
+    public InputLog(long seed, int viewWidth, int viewHeight) {
+        mSeed = seed;
+        mViewWidth = viewWidth;
+        mViewHeight = viewHeight;
+    }
+
+    /**
+     * Reads every run in a file written by InputRecorder. A record cut off
+     * at the end of the file, e.g. by the process dying, is dropped.
+     *
+     * @throws IOException if the file cannot be read or was written by
+     *         another version
+     */
+    public static List<InputLog> readAll(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        List<InputLog> runs = new ArrayList<InputLog>();
+        InputLog run = null;
+        long tick = 0;
+        try {
+            while (true) {
+                int tag = data.read();
+                if (tag < 0) break;
+                switch (tag) {
+                    case InputRecorder.TAG_RUN:
+                        int version = data.readUnsignedByte();
+                        if (version != InputRecorder.VERSION) {
+                            throw new IOException("Unsupported input log version " + version);
+                        }
+                        long seed = data.readLong();
+                        int width = data.readInt();
+                        int height = data.readInt();
+                        run = new InputLog(seed, width, height);
+                        runs.add(run);
+                        tick = 0;
+                        break;
+                    case InputRecorder.TAG_INPUT:
+                        tick += readVarint(data);
+                        int command = data.readUnsignedByte();
+                        if (run == null) throw new IOException("Input outside a run");
+                        run.add(tick, command);
+                        break;
+                    case InputRecorder.TAG_END:
+                        tick += readVarint(data);
+                        if (run == null) throw new IOException("End outside a run");
+                        run.mEndTick = tick;
+                        run = null;
+                        break;
+                    default:
+                        throw new IOException("Bad input log tag " + tag);
+                }
+            }
+        } catch (EOFException e) {
+            // the last record was cut short; keep everything before it
+        }
+        return runs;
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Bad varint");
+    }
+
+    /**
+     * Adds a command applied at the given tick, e.g. to build a log in
+     * memory. Ticks must not go down.
+     */
+    public void add(long tick, int command) {
+        if (mCount == mTicks.length) {
+            long[] ticks = new long[mCount * 2];
+            System.arraycopy(mTicks, 0, ticks, 0, mCount);
+            mTicks = ticks;
+            int[] commands = new int[mCount * 2];
+            System.arraycopy(mCommands, 0, commands, 0, mCount);
+            mCommands = commands;
+        }
+        mTicks[mCount] = tick;
+        mCommands[mCount] = command;
+        mCount++;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    public int getViewWidth() {
+        return mViewWidth;
+    }
+
+    public int getViewHeight() {
+        return mViewHeight;
+    }
+
+    /**
+     * @return the number of commands
+     */
+    public int size() {
+        return mCount;
+    }
+
+    public long getTick(int index) {
+        return mTicks[index];
+    }
+
+    public int getCommand(int index) {
+        return mCommands[index];
+    }
+
+    /**
+     * @return the tick the run ended on, or -1 if the recording stops
+     *         before the run did
+     */
+    public long getEndTick() {
+        return mEndTick;
+    }
+
+    public void setEndTick(long tick) {
+        mEndTick = tick;
+    }
+}
@@ -0,0 +1,180 @@
+package com.therl.fliprunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The file an InputRecorder appends to, written on a background thread of
+ * its own so the game thread never waits on the disk.
+ *
+ * write() copies the bytes and queues them; opening the file, appending and
+ * checking its size all happen on the writer's thread. Once the file
+ * reaches the size given, rotateIfFull() moves it aside to the same name
+ * plus ".1", replacing the one there, and starts a new one, so at most
+ * twice that size is kept. A file that cannot be opened, written or
+ * rotated is given up on with a warning; the game goes on unrecorded.
+ */
+public class InputLogWriter extends OutputStream {
+    private static final Logger LOG = Logger.getLogger(InputLogWriter.class.getName());
+
+    private final File mFile;
+    private final long mMaxBytes;
+    private final ExecutorService mExecutor;
+
+    /*
+     * Owned by the executor thread
+     */
+    /** Null before the file is opened and after giving up on it */
+    private FileOutputStream mOut;
+    /** Bytes in mFile */
+    private long mSize;
+
+    /**
+     * Starts opening the file for appending in the background.
+     *
+     * @param maxBytes size at which rotateIfFull() starts a new file
+     */
+    public InputLogWriter(File file, long maxBytes) {
+        mFile = file;
+        mMaxBytes = maxBytes;
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "InputLogWriter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                open();
+            }
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    /**
+     * Queues a copy of the bytes to be appended. Returns at once.
+     *
+     * @throws IOException if the writer has been closed
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return;
+        final byte[] bytes = new byte[len];
+        System.arraycopy(b, off, bytes, 0, len);
+        queue(new Runnable() {
+            @Override
+            public void run() {
+                append(bytes);
+            }
+        });
+    }
+
+    /**
+     * Starts a new file if this one has reached its size, once the bytes
+     * queued so far are written. Call between runs, so a run is never split
+     * across two files.
+     */
+    public void rotateIfFull() throws IOException {
+        queue(new Runnable() {
+            @Override
+            public void run() {
+                if (mOut != null && mSize >= mMaxBytes) {
+                    closeFile();
+                    open();
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes the file once the bytes queued so far are written, and stops
+     * the thread. Returns at once.
+     */
+    @Override
+    public void close() {
+        try {
+            queue(new Runnable() {
+                @Override
+                public void run() {
+                    closeFile();
+                }
+            });
+        } catch (IOException e) {
+            // closed already
+        }
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Waits for close() to finish, e.g. in tests before reading the file.
+     *
+     * @return false if it timed out
+     */
+    boolean awaitClosed(long timeoutMillis) throws InterruptedException {
+        return mExecutor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void queue(Runnable task) throws IOException {
+        try {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            throw new IOException("Input log closed");
+        }
+    }
+
+    /**
+     * Opens mFile for appending, moving it aside first if it is full.
+     */
+    private void open() {
+        if (mFile.length() >= mMaxBytes) {
+            File old = new File(mFile.getPath() + ".1");
+            if ((old.exists() && !old.delete()) || !mFile.renameTo(old)) {
+                LOG.warning("Could not rotate " + mFile);
+                return;
+            }
+        }
+        try {
+            mOut = new FileOutputStream(mFile, true);
+            mSize = mFile.length();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not open " + mFile, e);
+        }
+    }
+
+    private void append(byte[] bytes) {
+        if (mOut == null) return;
+        try {
+            mOut.write(bytes);
+            mSize += bytes.length;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not write " + mFile, e);
+            closeFile();
+        }
+    }
+
+    private void closeFile() {
+        if (mOut == null) return;
+        try {
+            mOut.close();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not close " + mFile, e);
+        }
+        mOut = null;
+    }
+}
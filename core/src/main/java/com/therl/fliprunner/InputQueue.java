@@ -0,0 +1,83 @@
+package com.therl.fliprunner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer, single-consumer ring buffer of timestamped input
+ * commands.
+ *
+ * The UI thread offers commands as touches come in and the game thread
+ * drains them at the start of each frame. Neither side ever blocks or takes
+ * a lock: each owns one counter and only reads the other's, and a slot is
+ * published by a lazySet of the tail after it has been written.
+ */
+public class InputQueue {
+    /** Receives drained commands, on the consumer thread. */
+    public interface Consumer {
+        /**
+         * @param command the command, as passed to offer()
+         * @param timeNanos its timestamp, as passed to offer()
+         */
+        void onCommand(int command, long timeNanos);
+    }
+
+    private final int[] mCommands;
+    private final long[] mTimes;
+    private final int mMask;
+
+    /** Next sequence number to read; written by the consumer only. */
+    private final AtomicLong mHead = new AtomicLong();
+    /** Next sequence number to write; written by the producer only. */
+    private final AtomicLong mTail = new AtomicLong();
+
+    /**
+     * @param capacity most commands waiting at once; rounded up to a power
+     *                 of two
+     */
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        mCommands = new int[size];
+        mTimes = new long[size];
+        mMask = size - 1;
+    }
+
+    /**
+     * Queues a command. Producer thread only.
+     *
+     * @param timeNanos when the input happened, in System.nanoTime() units
+     * @return false if the queue was full and the command was dropped
+     */
+    public boolean offer(int command, long timeNanos) {
+        long tail = mTail.get();
+        if (tail - mHead.get() > mMask) return false;
+        int index = (int) tail & mMask;
+        mCommands[index] = command;
+        mTimes[index] = timeNanos;
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Hands every queued command to the consumer, oldest first. Consumer
+     * thread only.
+     *
+     * @return how many commands were drained
+     */
+    public int drain(Consumer consumer) {
+        long head = mHead.get();
+        long tail = mTail.get();
+        for (long i = head; i < tail; i++) {
+            int index = (int) i & mMask;
+            consumer.onCommand(mCommands[index], mTimes[index]);
+        }
+        mHead.lazySet(tail);
+        return (int) (tail - head);
+    }
+
+    /**
+     * @return whether nothing is queued; exact only on the consumer thread
+     */
+    public boolean isEmpty() {
+        return mHead.get() == mTail.get();
+    }
+}
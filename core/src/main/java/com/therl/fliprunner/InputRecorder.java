@@ -0,0 +1,152 @@
+package com.therl.fliprunner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Logs the input of each run, so that it can be replayed exactly.
+ *
+ * With a fixed timestep a run is fully decided by the seed, the view size
+ * and which command was applied before which step, so that is all that is
+ * kept: a RUN record with the seed and view size, an INPUT record per
+ * command with the tick it was applied at, and an END record with the tick
+ * the run ended on. Ticks are stored as varint deltas from the previous
+ * record, which makes a typical input three bytes.
+ *
+ * Records are only ever appended; a file can hold any number of runs, and a
+ * run cut short by the process dying reads back as a run without an END.
+ * They are collected in a fixed buffer and written out when it fills up,
+ * when a run ends, or on flush(), so recording a command costs a few array
+ * stores. InputLog reads the records back.
+ *
+ * Not thread safe; the game thread owns it.
+ */
+public class InputRecorder {
+    /*
+     * Record tags
+     */
+    static final int TAG_RUN = 1;
+    static final int TAG_INPUT = 2;
+    static final int TAG_END = 3;
+    /** Bump whenever the record layout changes. */
+    static final int VERSION = 1;
+
+    /** Longest record: RUN with tag, version, seed and view size. */
+    private static final int MAX_RECORD_SIZE = 1 + 1 + 8 + 4 + 4;
+    private static final int BUFFER_SIZE = 4096;
+
+    private final OutputStream mOut;
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
+    private int mCount;
+    /** Tick of the last record of the current run */
+    private long mLastTick;
+    /** Whether a RUN has been written and its END not yet */
+    private boolean mRecording;
+
+    /**
+     * @param out where the records go, e.g. an InputLogWriter
+     */
+    public InputRecorder(OutputStream out) {
+        mOut = out;
+    }
+
+    /**
+     * Starts a new run, ending the current one if there is one. Call right
+     * after World.reset().
+     */
+    public void startRun(long seed, int viewWidth, int viewHeight) throws IOException {
+        if (mRecording) endRun(mLastTick);
+        reserve(MAX_RECORD_SIZE);
+        mBuffer[mCount++] = TAG_RUN;
+        mBuffer[mCount++] = VERSION;
+        putLong(seed);
+        putInt(viewWidth);
+        putInt(viewHeight);
+        mLastTick = 0;
+        mRecording = true;
+    }
+
+    /**
+     * Logs a command applied to the world. Does nothing outside a run.
+     *
+     * @param tick World.getTick() when the command was applied
+     * @param command the command passed to World.applyCommand()
+     */
+    public void record(long tick, int command) throws IOException {
+        if (!mRecording) return;
+        reserve(MAX_RECORD_SIZE);
+        mBuffer[mCount++] = TAG_INPUT;
+        putVarint(tick - mLastTick);
+        mBuffer[mCount++] = (byte) command;
+        mLastTick = tick;
+    }
+
+    /**
+     * Ends the current run and writes it out. Does nothing outside a run.
+     *
+     * @param tick World.getTick() at the end of the run
+     */
+    public void endRun(long tick) throws IOException {
+        if (!mRecording) return;
+        reserve(MAX_RECORD_SIZE);
+        mBuffer[mCount++] = TAG_END;
+        putVarint(tick - mLastTick);
+        mRecording = false;
+        flush();
+    }
+
+    /**
+     * @return whether a run is being recorded
+     */
+    public boolean isRecording() {
+        return mRecording;
+    }
+
+    /**
+     * Writes out whatever is buffered.
+     */
+    public void flush() throws IOException {
+        if (mCount > 0) {
+            mOut.write(mBuffer, 0, mCount);
+            mCount = 0;
+        }
+        mOut.flush();
+    }
+
+    /**
+     * Flushes and closes the stream. A run still open reads back without
+     * an END.
+     */
+    public void close() throws IOException {
+        flush();
+        mOut.close();
+    }
+
+    private void reserve(int size) throws IOException {
+        if (mCount + size > mBuffer.length) {
+            mOut.write(mBuffer, 0, mCount);
+            mCount = 0;
+        }
+    }
+
+    private void putVarint(long value) {
+        // 7 bits at a time, low first; ticks only go up, so never negative
+        while ((value & ~0x7FL) != 0) {
+            mBuffer[mCount++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mBuffer[mCount++] = (byte) value;
+    }
+
+    private void putInt(int value) {
+        mBuffer[mCount++] = (byte) (value >>> 24);
+        mBuffer[mCount++] = (byte) (value >>> 16);
+        mBuffer[mCount++] = (byte) (value >>> 8);
+        mBuffer[mCount++] = (byte) value;
+    }
+
+    private void putLong(long value) {
+        putInt((int) (value >>> 32));
+        putInt((int) value);
+    }
+}
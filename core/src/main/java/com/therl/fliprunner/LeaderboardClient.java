@@ -0,0 +1,21 @@
+package com.therl.fliprunner;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where ScoreStore uploads finished runs. Implementations talk to a real
+ * server; LocalLeaderboard stands in for one in tests and offline builds.
+ *
+ * Calls come from ScoreStore's background thread, one at a time, so they
+ * may block on the network.
+ */
+public interface LeaderboardClient {
+    /**
+     * Uploads a batch of scores in id order. A batch whose upload failed is
+     * sent again, so the server should ignore ids it already has.
+     *
+     * @throws IOException if the upload failed and should be retried
+     */
+    void upload(List<Score> scores) throws IOException;
+}
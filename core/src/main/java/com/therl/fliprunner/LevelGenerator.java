@@ -0,0 +1,231 @@
+package com.therl.fliprunner;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streams obstacles into an ObstaclePool ahead of the player.
+ *
+ * The level is a sequence of chunks laid out along the track, each one a
+ * small pattern of obstacles picked from the seeded random generator, so a
+ * given seed always produces the same level. Work is spread over ticks: a
+ * chunk is planned into a short pending list, and at most
+ * MAX_SPAWNS_PER_TICK of its obstacles are placed per call to update().
+ */
+public class LevelGenerator {
+    /*
+     * Chunk types
+     */
+    /** Nothing; a breather. */
+    public static final int CHUNK_GAP = 0;
+    /** A block on the running line; flip either way. */
+    public static final int CHUNK_BLOCK = 1;
+    /** A block on the line with a roof over it; flip down. */
+    public static final int CHUNK_ROOF = 2;
+    /** A block on the line with a pit under it; flip up. */
+    public static final int CHUNK_PIT = 3;
+    private static final int CHUNK_TYPES = 4;
+
+    /*
+     * Layout constants, in world pixels
+     */
+    /** Most obstacles in a single chunk. */
+    private static final int MAX_CHUNK_OBSTACLES = 2;
+    /** Most obstacles placed by one call to update(). */
+    public static final int MAX_SPAWNS_PER_TICK = 2;
+    /** Gap between chunks at the start of a run... */
+    private static final float START_GAP = 900;
+    /** ...shrinking to this as the run goes on... */
+    private static final float MIN_GAP = 450;
+    /** ...by this much per pixel travelled. */
+    private static final float GAP_SHRINK_PER_PX = 0.005f;
+    /** Random extra gap added to each chunk, up to this much. */
+    private static final float GAP_JITTER = 300;
+    /** Height of the roof and pit blocks above and below the line. */
+    private static final float SIDE_OFFSET = 200;
+
+    private final ObstaclePool mPool;
+    private final SeededRandom mRandom = new SeededRandom(0);
+
+    /** Distance the track has scrolled since reset(). */
+    private double mDistance;
+    /** Track position at which the next chunk starts. */
+    private double mNextChunkX;
+    /** How far ahead of the player to have obstacles placed. */
+    private float mLookahead = 2000;
+
+    /*
+     * Obstacles of the current chunk that have not been placed yet, in
+     * track coordinates.
+     */
+    private final double[] mPendingX = new double[MAX_CHUNK_OBSTACLES];
+    private final float[] mPendingY = new float[MAX_CHUNK_OBSTACLES];
+    private final float[] mPendingHeight = new float[MAX_CHUNK_OBSTACLES];
+    private int mPendingCount;
+    private int mPendingNext;
+
+    public LevelGenerator(ObstaclePool pool) {
+        mPool = pool;
+    }
+
+    /**
+     * Starts a new level. The same seed always gives the same level.
+     */
+    public void reset(long seed) {
+        mRandom.setSeed(seed);
+        mDistance = 0;
+        mNextChunkX = START_GAP;
+        mPendingCount = 0;
+        mPendingNext = 0;
+    }
+
+    /**
+     * Sets how far ahead of the player obstacles should already exist,
+     * normally the visible width of the world plus a margin.
+     */
+    public void setLookahead(float lookahead) {
+        mLookahead = lookahead;
+    }
+
+    /**
+     * Moves the track on by one physics step at Obstacle.HORIZONTAL_SPEED.
+     *
+     * @param elapsed length of the step in seconds
+     */
+    public void update(double elapsed) {
+        update(elapsed, Obstacle.HORIZONTAL_SPEED);
+    }
+
+    /**
+     * Moves the track on by one physics step and places at most
+     * MAX_SPAWNS_PER_TICK obstacles that have come within the lookahead.
+     *
+     * @param elapsed length of the step in seconds
+     * @param speed how fast the track scrolls, in pixels per second
+     */
+    public void update(double elapsed, double speed) {
+        mDistance += speed * elapsed;
+        int spawned = 0;
+        while (spawned < MAX_SPAWNS_PER_TICK) {
+            if (mPendingNext == mPendingCount) {
+                // Plan the next chunk only once it is about to be needed.
+                if (mNextChunkX - mDistance > mLookahead) break;
+                planChunk();
+                continue;
+            }
+            float x = (float) (mPendingX[mPendingNext] - mDistance);
+            if (x > mLookahead) break;
+            int slot = mPool.spawn(x, mPendingY[mPendingNext],
+                    Obstacle.DEFAULT_WIDTH, mPendingHeight[mPendingNext]);
+            // Pool is full; try again next tick.
+            if (slot < 0) break;
+            mPendingNext++;
+            spawned++;
+        }
+    }
+
+    private void planChunk() {
+        mPendingCount = 0;
+        mPendingNext = 0;
+        double x = mNextChunkX;
+        int type = mRandom.nextInt(CHUNK_TYPES);
+        float half = Obstacle.DEFAULT_HEIGHT / 2f;
+        switch (type) {
+            case CHUNK_BLOCK:
+                addPending(x, -half, Obstacle.DEFAULT_HEIGHT);
+                break;
+            case CHUNK_ROOF:
+                addPending(x, -half, Obstacle.DEFAULT_HEIGHT);
+                addPending(x, SIDE_OFFSET, Obstacle.DEFAULT_HEIGHT);
+                break;
+            case CHUNK_PIT:
+                addPending(x, -half, Obstacle.DEFAULT_HEIGHT);
+                addPending(x, -SIDE_OFFSET - Obstacle.DEFAULT_HEIGHT,
+                        Obstacle.DEFAULT_HEIGHT);
+                break;
+            default:
+                break;
+        }
+        double gap = Math.max(MIN_GAP, START_GAP - x * GAP_SHRINK_PER_PX);
+        mNextChunkX = x + Obstacle.DEFAULT_WIDTH + gap
+                + mRandom.nextFloat() * GAP_JITTER;
+    }
+
+    private void addPending(double x, float y, float height) {
+        mPendingX[mPendingCount] = x;
+        mPendingY[mPendingCount] = y;
+        mPendingHeight[mPendingCount] = height;
+        mPendingCount++;
+    }
+
+    /**
+     * Makes this generator continue the same track as another. Only the
+     * generator's own state is copied; the pools stay as they are.
+     */
+    public void copyFrom(LevelGenerator other) {
+        mRandom.setState(other.mRandom.getState());
+        mDistance = other.mDistance;
+        mNextChunkX = other.mNextChunkX;
+        mLookahead = other.mLookahead;
+        System.arraycopy(other.mPendingX, 0, mPendingX, 0, MAX_CHUNK_OBSTACLES);
+        System.arraycopy(other.mPendingY, 0, mPendingY, 0, MAX_CHUNK_OBSTACLES);
+        System.arraycopy(other.mPendingHeight, 0, mPendingHeight, 0, MAX_CHUNK_OBSTACLES);
+        mPendingCount = other.mPendingCount;
+        mPendingNext = other.mPendingNext;
+    }
+
+    /**
+     * Writes the position on the track, the random generator and the part
+     * of the current chunk still to be placed, for SaveState. The lookahead
+     * comes from the view size and is not saved.
+     */
+    void writeState(ByteBuffer out) {
+        out.putLong(mRandom.getState());
+        out.putDouble(mDistance);
+        out.putDouble(mNextChunkX);
+        out.put((byte) mPendingCount);
+        out.put((byte) mPendingNext);
+        for (int i = 0; i < mPendingCount; i++) {
+            out.putDouble(mPendingX[i]);
+            out.putFloat(mPendingY[i]);
+            out.putFloat(mPendingHeight[i]);
+        }
+    }
+
+    /**
+     * Reads back what writeState() wrote.
+     *
+     * @throws IllegalArgumentException if the random state is zero or the
+     *         pending chunk is malformed
+     */
+    void readState(ByteBuffer in) {
+        mRandom.setState(in.getLong());
+        mDistance = in.getDouble();
+        mNextChunkX = in.getDouble();
+        int count = in.get();
+        int next = in.get();
+        if (count < 0 || count > MAX_CHUNK_OBSTACLES || next < 0 || next > count) {
+            throw new IllegalArgumentException("Bad saved chunk " + next + "/" + count);
+        }
+        for (int i = 0; i < count; i++) {
+            mPendingX[i] = in.getDouble();
+            mPendingY[i] = in.getFloat();
+            mPendingHeight[i] = in.getFloat();
+        }
+        mPendingCount = count;
+        mPendingNext = next;
+    }
+
+    /**
+     * @return most bytes writeState() writes
+     */
+    static int maxStateSize() {
+        return 8 + 8 + 8 + 2 + MAX_CHUNK_OBSTACLES * (8 + 4 + 4);
+    }
+
+    /**
+     * @return distance the track has scrolled since reset(), in pixels
+     */
+    public double getDistance() {
+        return mDistance;
+    }
+}
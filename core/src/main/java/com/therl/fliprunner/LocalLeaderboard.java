@@ -0,0 +1,72 @@
+package com.therl.fliprunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A leaderboard server living in the process, so the whole score pipeline
+ * can be run offline. Keeps every score it is sent once, and can be told
+ * to fail uploads to act like a flaky network.
+ */
+public class LocalLeaderboard implements LeaderboardClient {
+    private final ScoreIndex mIndex;
+    /** Id of the last score received; they come in id order */
+    private long mLastId = -1;
+    private int mCount;
+    private int mFailures;
+    private int mBatches;
+
+    /**
+     * @param capacity most scores top() can return
+     */
+    public LocalLeaderboard(int capacity) {
+        mIndex = new ScoreIndex(capacity);
+    }
+
+    @Override
+    public synchronized void upload(List<Score> scores) throws IOException {
+        if (mFailures > 0) {
+            mFailures--;
+            throw new IOException("Leaderboard unavailable");
+        }
+        mBatches++;
+        for (Score score : scores) {
+            // a retried batch can hold scores that made it the first time
+            if (score.getId() <= mLastId) continue;
+            mLastId = score.getId();
+            mCount++;
+            mIndex.add(score);
+        }
+    }
+
+    /**
+     * Makes the next uploads throw, as if the server could not be reached.
+     */
+    public synchronized void failNext(int uploads) {
+        mFailures = uploads;
+    }
+
+    /**
+     * @return the number of scores received
+     */
+    public synchronized int size() {
+        return mCount;
+    }
+
+    /**
+     * @return the number of uploads that got through
+     */
+    public synchronized int getBatches() {
+        return mBatches;
+    }
+
+    /**
+     * @return the best scores received, best first
+     */
+    public synchronized List<Score> top(int count) {
+        List<Score> top = new ArrayList<Score>();
+        mIndex.top(count, top);
+        return top;
+    }
+}
@@ -0,0 +1,19 @@
+package com.therl.fliprunner;
+
+/**
+ * Created by Limmy on 1/3/2017.
+ *
+ * Obstacle constants. The obstacles themselves live in an ObstaclePool.
+ */
+
+public class Obstacle {
+    /*
+     * Obstacle Constants
+     */
+    public static final int HORIZONTAL_SPEED = 1000;
+    public static final int DEFAULT_WIDTH = 40;
+    public static final int DEFAULT_HEIGHT = 80;
+
+    private Obstacle() {
+    }
+}
@@ -0,0 +1,291 @@
+package com.therl.fliprunner;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-capacity storage for every obstacle in the game.
+ *
+ * Obstacles are the entities of an Archetype with a position, a collider
+ * and a sprite; a slot is the entity's id, and the slots in play are
+ * packed in the archetype's rows so that update and draw are a straight
+ * loop over its columns. Scrolling is the ScrollSystem. Nothing is
+ * allocated after construction. Live obstacles are also filed in a
+ * CollisionGrid, which query() uses to find the ones near a point without
+ * looking at all of them.
+ *
+ * Coordinates are the same as the player's: x grows to the right from the
+ * player's column, y grows upwards from the middle of the screen. (x, y) is
+ * the bottom-left corner of the obstacle.
+ */
+public class ObstaclePool {
+    /*
+     * Pool constants
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /** Components of an obstacle */
+    public static final int COMPONENTS = Archetype.POSITION | Archetype.COLLIDER
+            | Archetype.SPRITE;
+
+    /** The obstacles; x and y are the bottom-left corner */
+    private final Archetype mEntities;
+    /** Scratch space for readState() */
+    private final int[] mFree;
+
+    /** Broad phase index of the live slots, in track coordinates. */
+    private final CollisionGrid mGrid;
+    /** Distance scrolled since clear(); world x plus this is track x. */
+    private double mScroll;
+    /** Distance scrolled by the last physics step. */
+    private float mStepDistance;
+
+    public ObstaclePool(int capacity) {
+        mEntities = new Archetype(COMPONENTS, capacity, Archetype.PRECISION_FLOAT);
+        mFree = new int[capacity];
+        mGrid = new CollisionGrid(capacity);
+        clear();
+    }
+
+    /**
+     * Recycles every obstacle.
+     */
+    public void clear() {
+        mEntities.clear();
+        mGrid.clear();
+        mScroll = 0;
+        mStepDistance = 0;
+    }
+
+    /**
+     * Places a new obstacle.
+     *
+     * @return the slot holding it, or -1 if the pool is full
+     */
+    public int spawn(float x, float y, float width, float height) {
+        int slot = mEntities.create();
+        if (slot < 0) return -1;
+        int row = mEntities.rowOf(slot);
+        mEntities.getFloatX()[row] = x;
+        mEntities.getFloatY()[row] = y;
+        mEntities.getFloatPrevX()[row] = x;
+        mEntities.getFloatPrevY()[row] = y;
+        mEntities.getFloatWidth()[row] = width;
+        mEntities.getFloatHeight()[row] = height;
+        mEntities.getSprite()[row] = Renderer.SPRITE_OBSTACLE;
+        mGrid.insert(slot, x + mScroll, y, width, height);
+        return slot;
+    }
+
+    /**
+     * Returns a slot to the pool. The last live slot takes its place in the
+     * live list, so iteration order is not stable across recycles.
+     *
+     * @param slot a slot returned by spawn() and not yet recycled
+     */
+    public void recycle(int slot) {
+        if (!mEntities.isAlive(slot)) return;
+        mEntities.destroy(slot);
+        mGrid.remove(slot);
+    }
+
+    /**
+     * Recycles every obstacle whose right edge is left of the given x.
+     *
+     * @param minX left edge of the visible world
+     * @return how many obstacles were recycled
+     */
+    public int cull(float minX) {
+        int culled = 0;
+        float[] x = mEntities.getFloatX();
+        float[] width = mEntities.getFloatWidth();
+        // Walk backwards so the swap in recycle() never skips a row.
+        for (int i = mEntities.size() - 1; i >= 0; i--) {
+            if (x[i] + width[i] < minX) {
+                recycle(mEntities.idAt(i));
+                culled++;
+            }
+        }
+        return culled;
+    }
+
+    /**
+     * Scrolls every obstacle towards the player by one physics step at
+     * Obstacle.HORIZONTAL_SPEED.
+     *
+     * @param elapsed length of the step in seconds
+     */
+    public void updatePhysics(double elapsed) {
+        updatePhysics(elapsed, Obstacle.HORIZONTAL_SPEED);
+    }
+
+    /**
+     * Scrolls every obstacle towards the player by one physics step.
+     *
+     * @param elapsed length of the step in seconds
+     * @param speed how fast the track scrolls, in pixels per second
+     */
+    public void updatePhysics(double elapsed, double speed) {
+        float dx = (float) (speed * elapsed);
+        mScroll += dx;
+        mStepDistance = dx;
+        ScrollSystem.update(mEntities, dx);
+    }
+
+    /**
+     * Makes this pool hold the same obstacles in the same slots, rows and
+     * grid cells as another of the same capacity, so that both go on to
+     * step the same. Allocates nothing.
+     */
+    public void copyFrom(ObstaclePool other) {
+        mEntities.copyFrom(other.mEntities);
+        mGrid.copyFrom(other.mGrid);
+        mScroll = other.mScroll;
+        mStepDistance = other.mStepDistance;
+    }
+
+    /**
+     * Writes the live obstacles in live order and the free stack, so that a
+     * restored pool hands out the same slots in the same order. For
+     * SaveState.
+     */
+    void writeState(ByteBuffer out) {
+        out.putDouble(mScroll);
+        out.putFloat(mStepDistance);
+        out.putShort((short) mEntities.size());
+        for (int i = 0; i < mEntities.size(); i++) {
+            out.putShort((short) mEntities.idAt(i));
+            out.putFloat(mEntities.getFloatX()[i]);
+            out.putFloat(mEntities.getFloatY()[i]);
+            out.putFloat(mEntities.getFloatWidth()[i]);
+            out.putFloat(mEntities.getFloatHeight()[i]);
+            out.putFloat(mEntities.getFloatPrevX()[i]);
+        }
+        out.putShort((short) mEntities.getFreeCount());
+        for (int i = 0; i < mEntities.getFreeCount(); i++) {
+            out.putShort((short) mEntities.getFree(i));
+        }
+    }
+
+    /**
+     * Reads back what writeState() wrote.
+     *
+     * @throws IllegalArgumentException if the saved pool does not fit this one
+     */
+    void readState(ByteBuffer in) {
+        clear();
+        double scroll = in.getDouble();
+        float stepDistance = in.getFloat();
+        int live = in.getShort();
+        if (live < 0 || live > capacity()) {
+            throw new IllegalArgumentException("Saved " + live + " obstacles, capacity "
+                    + capacity());
+        }
+        // Files the obstacles in the grid at the current scroll.
+        mScroll = scroll;
+        for (int i = 0; i < live; i++) {
+            int slot = in.getShort();
+            int row = mEntities.restore(slot);
+            float x = in.getFloat();
+            float y = in.getFloat();
+            float width = in.getFloat();
+            float height = in.getFloat();
+            mEntities.getFloatX()[row] = x;
+            mEntities.getFloatY()[row] = y;
+            mEntities.getFloatPrevY()[row] = y;
+            mEntities.getFloatWidth()[row] = width;
+            mEntities.getFloatHeight()[row] = height;
+            mEntities.getFloatPrevX()[row] = in.getFloat();
+            mEntities.getSprite()[row] = Renderer.SPRITE_OBSTACLE;
+            mGrid.insert(slot, x + mScroll, y, width, height);
+        }
+        int free = in.getShort();
+        if (free < 0 || free > capacity()) {
+            throw new IllegalArgumentException("Saved " + free + " free slots");
+        }
+        for (int i = 0; i < free; i++) {
+            mFree[i] = in.getShort();
+        }
+        mEntities.setFree(mFree, free);
+        mStepDistance = stepDistance;
+    }
+
+    /**
+     * @return most bytes writeState() writes for a pool of this capacity
+     */
+    static int maxStateSize(int capacity) {
+        return 8 + 4 + 2 + capacity * (2 + 5 * 4) + 2 + capacity * 2;
+    }
+
+    /**
+     * Collects the slots of obstacles that may overlap the given box, in
+     * world coordinates. May report some that do not overlap it.
+     *
+     * @param out receives the slots; must be at least capacity() long
+     * @return how many slots were written to out
+     */
+    public int query(float minX, float minY, float maxX, float maxY, int[] out) {
+        return mGrid.query(minX + mScroll, minY, maxX + mScroll, maxY, out);
+    }
+
+    /**
+     * @return how far the obstacles moved left in the last physics step
+     */
+    public float getStepDistance() {
+        return mStepDistance;
+    }
+
+    /**
+     * @return the number of obstacles in play
+     */
+    public int size() {
+        return mEntities.size();
+    }
+
+    public int capacity() {
+        return mEntities.capacity();
+    }
+
+    /**
+     * @param index between 0 and size() - 1
+     * @return the slot of the index-th live obstacle
+     */
+    public int slotAt(int index) {
+        return mEntities.idAt(index);
+    }
+
+    public boolean isActive(int slot) {
+        return mEntities.isAlive(slot);
+    }
+
+    public float getX(int slot) {
+        return mEntities.getFloatX()[mEntities.rowOf(slot)];
+    }
+
+    public float getY(int slot) {
+        return mEntities.getFloatY()[mEntities.rowOf(slot)];
+    }
+
+    public float getWidth(int slot) {
+        return mEntities.getFloatWidth()[mEntities.rowOf(slot)];
+    }
+
+    public float getHeight(int slot) {
+        return mEntities.getFloatHeight()[mEntities.rowOf(slot)];
+    }
+
+    public float getPrevX(int slot) {
+        return mEntities.getFloatPrevX()[mEntities.rowOf(slot)];
+    }
+
+    public int getSprite(int slot) {
+        return mEntities.getSprite()[mEntities.rowOf(slot)];
+    }
+
+    /**
+     * @return the archetype holding the obstacles, for systems; its rows
+     *         are in the same order as slotAt()
+     */
+    public Archetype getEntities() {
+        return mEntities;
+    }
+}
@@ -0,0 +1,191 @@
+package com.therl.fliprunner;
+
+/**
+ * Short-lived sparks and streaks for feedback on flips and crashes.
+ *
+ * Particles are parallel float arrays of a fixed capacity with the live
+ * ones packed at the front, like the obstacles: emit() fills rows at the
+ * end, update() moves them and swaps the last live row into each one that
+ * died. Nothing is allocated after construction. The budget caps how many
+ * are alive, and so what a step and a frame cost; a burst that does not fit
+ * is cut short rather than pushing older particles out.
+ *
+ * Particles are in world coordinates but are not part of the World: they
+ * never touch the simulation, so they are not saved, replayed or searched.
+ */
+public class ParticleSystem {
+    /*
+     * Kinds, which decide how a particle is drawn
+     */
+    /** Drawn as a point */
+    public static final int KIND_SPARK = 0;
+    /** Drawn as a line along its velocity */
+    public static final int KIND_STREAK = 1;
+    public static final int KIND_COUNT = 2;
+
+    /** Most particles alive on a device with a small GPU */
+    public static final int DEFAULT_BUDGET = 512;
+    /** Fraction of its speed a particle keeps after a second */
+    private static final float DRAG_PER_SEC = 0.05f;
+
+    private final float[] mX;
+    private final float[] mY;
+    private final float[] mPrevX;
+    private final float[] mPrevY;
+    private final float[] mDX;
+    private final float[] mDY;
+    /** Seconds left to live */
+    private final float[] mLife;
+    private final int[] mKind;
+    private int mCount;
+    private int mBudget;
+
+    /** Directions and speeds of new particles; no need to be reproducible */
+    private final SeededRandom mRandom = new SeededRandom(System.nanoTime());
+
+    /**
+     * @param capacity most particles the budget can ever be raised to
+     */
+    public ParticleSystem(int capacity) {
+        mX = new float[capacity];
+        mY = new float[capacity];
+        mPrevX = new float[capacity];
+        mPrevY = new float[capacity];
+        mDX = new float[capacity];
+        mDY = new float[capacity];
+        mLife = new float[capacity];
+        mKind = new int[capacity];
+        mBudget = Math.min(capacity, DEFAULT_BUDGET);
+    }
+
+    /**
+     * Sets the most particles alive at once, at most the capacity. Lowering
+     * it does not kill particles already alive.
+     */
+    public void setBudget(int budget) {
+        mBudget = Math.max(0, Math.min(mX.length, budget));
+    }
+
+    public int getBudget() {
+        return mBudget;
+    }
+
+    /**
+     * Sends particles off from a point in every direction.
+     *
+     * @param kind one of the KIND_* constants
+     * @param speed fastest a particle starts, in pixels per second
+     * @param life seconds a particle lives
+     * @return how many were emitted, fewer than count if over budget
+     */
+    public int emit(int kind, float x, float y, int count, float speed, float life) {
+        int emitted = Math.max(0, Math.min(count, mBudget - mCount));
+        for (int i = 0; i < emitted; i++) {
+            int p = mCount++;
+            // a random point in the unit disc, for a direction and a speed
+            float dx;
+            float dy;
+            do {
+                dx = mRandom.nextFloat() * 2 - 1;
+                dy = mRandom.nextFloat() * 2 - 1;
+            } while (dx * dx + dy * dy > 1);
+            mX[p] = x;
+            mY[p] = y;
+            mPrevX[p] = x;
+            mPrevY[p] = y;
+            mDX[p] = dx * speed;
+            mDY[p] = dy * speed;
+            mLife[p] = life * (0.5f + 0.5f * mRandom.nextFloat());
+            mKind[p] = kind;
+        }
+        return emitted;
+    }
+
+    /**
+     * Moves every particle and removes the ones whose time is up.
+     *
+     * @param elapsed seconds since the last update
+     */
+    public void update(double elapsed) {
+        float dt = (float) elapsed;
+        float drag = (float) Math.pow(DRAG_PER_SEC, elapsed);
+        float[] x = mX;
+        float[] y = mY;
+        float[] dx = mDX;
+        float[] dy = mDY;
+        float[] life = mLife;
+        // Walk backwards so the swap never skips a particle.
+        for (int i = mCount - 1; i >= 0; i--) {
+            life[i] -= dt;
+            if (life[i] <= 0) {
+                remove(i);
+                continue;
+            }
+            mPrevX[i] = x[i];
+            mPrevY[i] = y[i];
+            x[i] += dx[i] * dt;
+            y[i] += dy[i] * dt;
+            dx[i] *= drag;
+            dy[i] *= drag;
+        }
+    }
+
+    private void remove(int i) {
+        int last = --mCount;
+        mX[i] = mX[last];
+        mY[i] = mY[last];
+        mPrevX[i] = mPrevX[last];
+        mPrevY[i] = mPrevY[last];
+        mDX[i] = mDX[last];
+        mDY[i] = mDY[last];
+        mLife[i] = mLife[last];
+        mKind[i] = mKind[last];
+    }
+
+    public void clear() {
+        mCount = 0;
+    }
+
+    /**
+     * @return the number of particles alive
+     */
+    public int size() {
+        return mCount;
+    }
+
+    public int capacity() {
+        return mX.length;
+    }
+
+    /*
+     * Columns, for copying out; live particles are rows 0 to size() - 1.
+     */
+
+    public float[] getX() {
+        return mX;
+    }
+
+    public float[] getY() {
+        return mY;
+    }
+
+    public float[] getPrevX() {
+        return mPrevX;
+    }
+
+    public float[] getPrevY() {
+        return mPrevY;
+    }
+
+    public float[] getDX() {
+        return mDX;
+    }
+
+    public float[] getDY() {
+        return mDY;
+    }
+
+    public int[] getKind() {
+        return mKind;
+    }
+}
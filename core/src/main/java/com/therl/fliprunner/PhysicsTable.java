@@ -0,0 +1,199 @@
+package com.therl.fliprunner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The tuning numbers of the physics, so difficulty can be changed without
+ * touching code: gravity and flip impulses per lane and per zone of the
+ * track, and how fast the track scrolls as the run goes on.
+ *
+ * Lanes are where the player is relative to the running line, indexed by
+ * Player.getJumping() + 1: below it, on it, or above it. Zones start at a
+ * distance along the track and last until the next one. The scroll speed
+ * ramps linearly between points in time since the start of the run and
+ * holds after the last one.
+ *
+ * The table is text, one entry per line:
+ *
+ *   zone <start> <gravity below> <gravity above> <impulse down> <impulse up>
+ *   speed <seconds> <pixels per second>
+ *
+ * in ascending order of start and seconds, the first zone starting at 0.
+ * Gravity is in pixels per second squared, upwards positive, and only pulls
+ * while the player is off the line; an impulse is added to the vertical
+ * speed on a flip. Blank lines and lines starting with '#' are ignored.
+ *
+ * Everything is read once into flat arrays, so the lookups in the physics
+ * step are plain array loads. Tables never change once made and can be
+ * shared between worlds.
+ */
+public class PhysicsTable {
+    /*
+     * Lanes
+     */
+    public static final int LANE_BELOW = 0;
+    public static final int LANE_LINE = 1;
+    public static final int LANE_ABOVE = 2;
+    public static final int LANE_COUNT = 3;
+
+    /** The physics the game always had: one zone, constant speed. */
+    public static final PhysicsTable DEFAULT = new PhysicsTable(
+            new double[] {0},
+            new double[] {World.PHYS_DOWN_ACCEL_SEC, 0, -World.PHYS_DOWN_ACCEL_SEC},
+            new double[] {-Player.JUMP_SPEED, 0, Player.JUMP_SPEED},
+            new double[] {0},
+            new double[] {Obstacle.HORIZONTAL_SPEED});
+
+    /** Track distance each zone starts at, ascending */
+    private final double[] mZoneStart;
+    /** Gravity by zone * LANE_COUNT + lane */
+    private final double[] mGravity;
+    /** Flip impulse by zone * LANE_COUNT + lane flipped towards */
+    private final double[] mImpulse;
+    /** Seconds since the start of the run of each speed point, ascending */
+    private final double[] mRampTime;
+    /** Scroll speed at each point, in pixels per second */
+    private final double[] mRampSpeed;
+
+    private PhysicsTable(double[] zoneStart, double[] gravity, double[] impulse,
+                         double[] rampTime, double[] rampSpeed) {
+        mZoneStart = zoneStart;
+        mGravity = gravity;
+        mImpulse = impulse;
+        mRampTime = rampTime;
+        mRampSpeed = rampSpeed;
+    }
+
+    /**
+     * Reads a table. Does not close the reader.
+     *
+     * @throws IOException if it cannot be read or is malformed
+     */
+    public static PhysicsTable read(Reader in) throws IOException {
+        BufferedReader reader = new BufferedReader(in);
+        List<double[]> zones = new ArrayList<double[]>();
+        List<double[]> ramp = new ArrayList<double[]>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] f = line.split("\\s+");
+            try {
+                if (f[0].equals("zone") && f.length == 6) {
+                    double[] zone = parse(f);
+                    double last = zones.isEmpty() ? -1 : zones.get(zones.size() - 1)[0];
+                    if (zones.isEmpty() ? zone[0] != 0 : zone[0] <= last) {
+                        throw new IOException("Zone out of order on line " + lineNumber);
+                    }
+                    zones.add(zone);
+                } else if (f[0].equals("speed") && f.length == 3) {
+                    double[] point = parse(f);
+                    if (!ramp.isEmpty() && point[0] <= ramp.get(ramp.size() - 1)[0]) {
+                        throw new IOException("Speed out of order on line " + lineNumber);
+                    }
+                    ramp.add(point);
+                } else {
+                    throw new IOException("Bad physics line " + lineNumber + ": " + line);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad physics line " + lineNumber + ": " + line);
+            }
+        }
+        if (zones.isEmpty()) throw new IOException("Physics table has no zone line");
+        if (ramp.isEmpty()) throw new IOException("Physics table has no speed line");
+
+        double[] zoneStart = new double[zones.size()];
+        double[] gravity = new double[zones.size() * LANE_COUNT];
+        double[] impulse = new double[zones.size() * LANE_COUNT];
+        for (int i = 0; i < zones.size(); i++) {
+            double[] zone = zones.get(i);
+            int base = i * LANE_COUNT;
+            zoneStart[i] = zone[0];
+            gravity[base + LANE_BELOW] = zone[1];
+            gravity[base + LANE_ABOVE] = zone[2];
+            impulse[base + LANE_BELOW] = zone[3];
+            impulse[base + LANE_ABOVE] = zone[4];
+        }
+        double[] rampTime = new double[ramp.size()];
+        double[] rampSpeed = new double[ramp.size()];
+        for (int i = 0; i < ramp.size(); i++) {
+            rampTime[i] = ramp.get(i)[0];
+            rampSpeed[i] = ramp.get(i)[1];
+        }
+        return new PhysicsTable(zoneStart, gravity, impulse, rampTime, rampSpeed);
+    }
+
+    /**
+     * Makes a copy of this table with every gravity, impulse and speed
+     * multiplied by a factor, for sweeping the tuning from tools.
+     */
+    public PhysicsTable scale(double gravity, double impulse, double speed) {
+        return new PhysicsTable(mZoneStart, multiply(mGravity, gravity),
+                multiply(mImpulse, impulse), mRampTime, multiply(mRampSpeed, speed));
+    }
+
+    private static double[] multiply(double[] values, double factor) {
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) result[i] = values[i] * factor;
+        return result;
+    }
+
+    /** Parses every field after the keyword. */
+    private static double[] parse(String[] fields) {
+        double[] values = new double[fields.length - 1];
+        for (int i = 1; i < fields.length; i++) values[i - 1] = Double.parseDouble(fields[i]);
+        return values;
+    }
+
+    /**
+     * @param distance how far the track has scrolled, in pixels
+     * @return the zone the distance falls in
+     */
+    public int zoneAt(double distance) {
+        int zone = mZoneStart.length - 1;
+        while (zone > 0 && distance < mZoneStart[zone]) zone--;
+        return zone;
+    }
+
+    /**
+     * @param seconds time since the start of the run
+     * @return how fast the track scrolls then, in pixels per second
+     */
+    public double speedAt(double seconds) {
+        int last = mRampTime.length - 1;
+        if (seconds >= mRampTime[last]) return mRampSpeed[last];
+        if (seconds <= mRampTime[0]) return mRampSpeed[0];
+        int i = 1;
+        while (seconds >= mRampTime[i]) i++;
+        double t = (seconds - mRampTime[i - 1]) / (mRampTime[i] - mRampTime[i - 1]);
+        return mRampSpeed[i - 1] + (mRampSpeed[i] - mRampSpeed[i - 1]) * t;
+    }
+
+    /**
+     * @return the vertical acceleration in the lane while off the line
+     */
+    public double getGravity(int zone, int lane) {
+        return mGravity[zone * LANE_COUNT + lane];
+    }
+
+    /**
+     * @return the vertical speed added by a flip towards the lane
+     */
+    public double getImpulse(int zone, int lane) {
+        return mImpulse[zone * LANE_COUNT + lane];
+    }
+
+    public int getZoneCount() {
+        return mZoneStart.length;
+    }
+
+    public double getZoneStart(int zone) {
+        return mZoneStart[zone];
+    }
+}
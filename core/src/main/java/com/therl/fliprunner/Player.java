@@ -0,0 +1,204 @@
+package com.therl.fliprunner;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Created by Limmy on 1/3/2017.
+ *
+ * The player entity. Its state lives in an Archetype of its own and its
+ * physics is the FlipSystem; this class is the handle the rest of the game
+ * reads it through.
+ */
+
+public class Player {
+
+    /*
+     * Jumping constants
+     */
+    public static final int JUMPING_DOWN = -1;
+    public static final int JUMPING_NONE = 0;
+    public static final int JUMPING_UP = 1;
+    /*
+     * Player Constants
+     */
+    /** Flip impulse of PhysicsTable.DEFAULT */
+    public static final int JUMP_SPEED = 3000;
+    /** Radius of the circle the player is drawn as. */
+    public static final int RADIUS = 30;
+
+    /** Components of the player entity */
+    public static final int COMPONENTS = FlipSystem.COMPONENTS | Archetype.COLLIDER
+            | Archetype.SPRITE;
+
+    /**
+     * The player, as the only entity of its own archetype; it is never
+     * destroyed, so it always sits in row 0.
+     */
+    private final Archetype mEntity = new Archetype(COMPONENTS, 1);
+
+    /** Gravity and flip impulses */
+    private PhysicsTable mPhysics = PhysicsTable.DEFAULT;
+    /** Zone of mPhysics the player is in */
+    private int mZone;
+
+    public Player(){
+        mEntity.create();
+        // TODO: 1/3/2017 temp width/height
+        mEntity.getWidth()[0] = 20;
+        mEntity.getHeight()[0] = 20;
+        mEntity.getSprite()[0] = Renderer.SPRITE_PLAYER;
+        reset();
+    }
+
+    public void reset(){
+        // a run that crashed mid-flip must not start the next one flipping
+        mEntity.getJumping()[0] = JUMPING_NONE;
+        mEntity.getX()[0] = 0;
+        mEntity.getY()[0] = 0;
+        mEntity.getDX()[0] = 0;
+        mEntity.getDY()[0] = 0;
+        mEntity.getPrevX()[0] = 0;
+        mEntity.getPrevY()[0] = 0;
+    }
+    /**
+     * Puts the player at a saved position and velocity, e.g. when the
+     * Activity is being restored after having been previously destroyed.
+     */
+    public void restore(double x, double y, double dx, double dy){
+        mEntity.getX()[0] = x;
+        mEntity.getY()[0] = y;
+        mEntity.getDX()[0] = dx;
+        mEntity.getDY()[0] = dy;
+        mEntity.getPrevX()[0] = x;
+        mEntity.getPrevY()[0] = y;
+    }
+
+    /**
+     * Sets the gravity and impulses to use, from zone 0 on.
+     */
+    public void setPhysics(PhysicsTable physics) {
+        mPhysics = physics;
+        mZone = 0;
+    }
+
+    /**
+     * Sets the zone of the physics table the player is in, which decides
+     * the gravity of the following steps and the impulse of flips.
+     */
+    public void setZone(int zone) {
+        mZone = zone;
+    }
+
+    /**
+     * Sets if the player is jumping. That is, whether upwards, downwards, or not.
+     *
+     * @param jumping one of the STATE_* constants
+     * @return true
+     */
+    public boolean setJumping(int jumping) {
+        return FlipSystem.flip(mEntity, 0, jumping, mPhysics, mZone);
+    }
+
+    /**
+     * @return x of the centre of the player's circle
+     */
+    public double getCenterX() {
+        return mEntity.getX()[0] - mEntity.getWidth()[0] / 2;
+    }
+
+    /**
+     * @return y of the centre of the player's circle, upwards from the line
+     */
+    public double getCenterY() {
+        return mEntity.getY()[0] + mEntity.getHeight()[0] / 2;
+    }
+
+    /**
+     * @return x of the centre at the end of the previous physics step
+     */
+    public double getPrevCenterX() {
+        return mEntity.getPrevX()[0] - mEntity.getWidth()[0] / 2;
+    }
+
+    /**
+     * @return y of the centre at the end of the previous physics step
+     */
+    public double getPrevCenterY() {
+        return mEntity.getPrevY()[0] + mEntity.getHeight()[0] / 2;
+    }
+
+    public double getX() {
+        return mEntity.getX()[0];
+    }
+
+    public double getY() {
+        return mEntity.getY()[0];
+    }
+
+    public double getDX() {
+        return mEntity.getDX()[0];
+    }
+
+    public double getDY() {
+        return mEntity.getDY()[0];
+    }
+
+    public int getJumping() {
+        return mEntity.getJumping()[0];
+    }
+
+    /**
+     * @return the archetype holding the player, for systems
+     */
+    public Archetype getEntity() {
+        return mEntity;
+    }
+
+    /**
+     * Makes this player the same as another, e.g. to branch a search off
+     * the player in play.
+     */
+    public void copyFrom(Player other) {
+        mEntity.copyFrom(other.mEntity);
+        mPhysics = other.mPhysics;
+        mZone = other.mZone;
+    }
+
+    /** Bytes written by writeState() */
+    static final int STATE_SIZE = 1 + 6 * 8;
+
+    /**
+     * Writes everything updatePhysics() depends on, for SaveState.
+     */
+    void writeState(ByteBuffer out) {
+        out.put((byte) mEntity.getJumping()[0]);
+        out.putDouble(mEntity.getX()[0]);
+        out.putDouble(mEntity.getY()[0]);
+        out.putDouble(mEntity.getDX()[0]);
+        out.putDouble(mEntity.getDY()[0]);
+        out.putDouble(mEntity.getPrevX()[0]);
+        out.putDouble(mEntity.getPrevY()[0]);
+    }
+
+    /**
+     * Reads back what writeState() wrote.
+     */
+    void readState(ByteBuffer in) {
+        mEntity.getJumping()[0] = in.get();
+        mEntity.getX()[0] = in.getDouble();
+        mEntity.getY()[0] = in.getDouble();
+        mEntity.getDX()[0] = in.getDouble();
+        mEntity.getDY()[0] = in.getDouble();
+        mEntity.getPrevX()[0] = in.getDouble();
+        mEntity.getPrevY()[0] = in.getDouble();
+    }
+
+    /**
+     * Advances the player by one physics step.
+     *
+     * @param elapsed length of the step in seconds, normally PHYS_STEP_SEC
+     */
+    public void updatePhysics(double elapsed){
+        FlipSystem.update(mEntity, mPhysics, mZone, elapsed);
+    }
+}
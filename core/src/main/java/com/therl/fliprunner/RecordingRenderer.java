@@ -0,0 +1,177 @@
+package com.therl.fliprunner;
+
+/**
+ * A Renderer that draws nothing and remembers the calls of the last frame
+ * instead, so tests and tools can check what would have been drawn without
+ * a device.
+ *
+ * Calls are kept in parallel arrays that only grow, so once it has seen its
+ * busiest frame recording allocates nothing.
+ */
+public class RecordingRenderer implements Renderer {
+    /*
+     * Recorded operations
+     */
+    public static final int OP_BACKGROUND = 0;
+    public static final int OP_SPRITE = 1;
+    public static final int OP_POINTS = 2;
+    public static final int OP_LINES = 3;
+
+    private int mFrames;
+    private int mWidth;
+    private int mHeight;
+    private boolean mInFrame;
+
+    private int mCount;
+    private int[] mOps = new int[16];
+    private int[] mSprites = new int[16];
+    /**
+     * left, top, right, bottom per call; the scroll for backgrounds; count
+     * and size for points and lines, whose color is kept as the sprite.
+     */
+    private float[] mCoords = new float[16 * 4];
+
+    @Override
+    public boolean beginFrame(int width, int height) {
+        if (mInFrame) throw new IllegalStateException("beginFrame() inside a frame");
+        mInFrame = true;
+        mWidth = width;
+        mHeight = height;
+        mCount = 0;
+        return true;
+    }
+
+    @Override
+    public void drawBackground(double scroll) {
+        add(OP_BACKGROUND, -1, (float) scroll, 0, 0, 0);
+    }
+
+    @Override
+    public void drawSprite(int sprite, float left, float top, float right, float bottom) {
+        add(OP_SPRITE, sprite, left, top, right, bottom);
+    }
+
+    @Override
+    public void drawPoints(float[] points, int count, float size, int color) {
+        add(OP_POINTS, color, count, size, 0, 0);
+    }
+
+    @Override
+    public void drawLines(float[] lines, int count, float width, int color) {
+        add(OP_LINES, color, count, width, 0, 0);
+    }
+
+    @Override
+    public void endFrame() {
+        if (!mInFrame) throw new IllegalStateException("endFrame() outside a frame");
+        mInFrame = false;
+        mFrames++;
+    }
+
+    private void add(int op, int sprite, float a, float b, float c, float d) {
+        if (!mInFrame) throw new IllegalStateException("drawing outside a frame");
+        if (mCount == mOps.length) {
+            int size = mCount * 2;
+            mOps = copyOf(mOps, size);
+            mSprites = copyOf(mSprites, size);
+            float[] coords = new float[size * 4];
+            System.arraycopy(mCoords, 0, coords, 0, mCount * 4);
+            mCoords = coords;
+        }
+        mOps[mCount] = op;
+        mSprites[mCount] = sprite;
+        int c4 = mCount * 4;
+        mCoords[c4] = a;
+        mCoords[c4 + 1] = b;
+        mCoords[c4 + 2] = c;
+        mCoords[c4 + 3] = d;
+        mCount++;
+    }
+
+    private static int[] copyOf(int[] array, int size) {
+        int[] copy = new int[size];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    /**
+     * @return frames finished so far
+     */
+    public int getFrameCount() {
+        return mFrames;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return calls recorded in the current or last frame
+     */
+    public int getCallCount() {
+        return mCount;
+    }
+
+    /**
+     * @return how many calls of the last frame drew a sprite
+     */
+    public int countSprites(int sprite) {
+        int n = 0;
+        for (int i = 0; i < mCount; i++) {
+            if (mOps[i] == OP_SPRITE && mSprites[i] == sprite) n++;
+        }
+        return n;
+    }
+
+    /*
+     * Per-call accessors take an index below getCallCount().
+     */
+    /**
+     * @return one of the OP_* constants
+     */
+    public int getOp(int call) {
+        return mOps[call];
+    }
+
+    /**
+     * @return the sprite drawn, -1 for a background, or the color of points
+     *         and lines
+     */
+    public int getSprite(int call) {
+        return mSprites[call];
+    }
+
+    /**
+     * @return the scroll passed to drawBackground()
+     */
+    public double getScroll(int call) {
+        return mCoords[call * 4];
+    }
+
+    /**
+     * @return the number of points or lines drawn
+     */
+    public int getPrimitiveCount(int call) {
+        return (int) mCoords[call * 4];
+    }
+
+    public float getLeft(int call) {
+        return mCoords[call * 4];
+    }
+
+    public float getTop(int call) {
+        return mCoords[call * 4 + 1];
+    }
+
+    public float getRight(int call) {
+        return mCoords[call * 4 + 2];
+    }
+
+    public float getBottom(int call) {
+        return mCoords[call * 4 + 3];
+    }
+}
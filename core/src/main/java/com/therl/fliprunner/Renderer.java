@@ -0,0 +1,71 @@
+package com.therl.fliprunner;
+
+/**
+ * What the game draws with. WorldRenderer works out what goes where and
+ * hands it to a Renderer as a handful of primitives; the backends decide
+ * how to get them on screen, e.g. a software Canvas, batched OpenGL ES
+ * quads, or a list of calls recorded for a test.
+ *
+ * Coordinates are screen pixels with y growing downwards. Calls come from a
+ * single thread, in beginFrame(), draw*, endFrame() order.
+ */
+public interface Renderer {
+    /*
+     * Sprites
+     */
+    /** The player's ball; the rect is its bounding box. */
+    int SPRITE_PLAYER = 0;
+    /** A solid obstacle block. */
+    int SPRITE_OBSTACLE = 1;
+    int SPRITE_COUNT = 2;
+
+    /**
+     * Starts a frame.
+     *
+     * @param width width of the frame, in pixels
+     * @param height height of the frame, in pixels
+     * @return false if there is nothing to draw on right now, in which case
+     *         the frame must be skipped and endFrame() not called
+     */
+    boolean beginFrame(int width, int height);
+
+    /**
+     * Covers the whole frame with the scrolling background. Operations
+     * accumulate, so this is like clearing the screen.
+     *
+     * @param scroll distance the track has scrolled, in pixels
+     */
+    void drawBackground(double scroll);
+
+    /**
+     * Draws a sprite stretched over a rect.
+     *
+     * @param sprite one of the SPRITE_* constants
+     */
+    void drawSprite(int sprite, float left, float top, float right, float bottom);
+
+    /**
+     * Draws many dots of one color with a single call.
+     *
+     * @param points x, y of each dot
+     * @param count number of dots
+     * @param size diameter of a dot, in pixels
+     * @param color ARGB
+     */
+    void drawPoints(float[] points, int count, float size, int color);
+
+    /**
+     * Draws many line segments of one color with a single call.
+     *
+     * @param lines x0, y0, x1, y1 of each segment
+     * @param count number of segments
+     * @param width width of a segment, in pixels
+     * @param color ARGB
+     */
+    void drawLines(float[] lines, int count, float width, int color);
+
+    /**
+     * Finishes the frame and shows it.
+     */
+    void endFrame();
+}
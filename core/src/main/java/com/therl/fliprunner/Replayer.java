@@ -0,0 +1,71 @@
+package com.therl.fliprunner;
+
+/**
+ * Plays a recorded InputLog back into a World, applying each command before
+ * the same step it was applied before when it was recorded. Since the world
+ * is deterministic this reproduces the run exactly, as fast as it is
+ * stepped: the game loop can show it at any speed, and tests and tools can
+ * run it headless at full CPU speed.
+ */
+public class Replayer {
+    private final World mWorld;
+    private InputLog mLog;
+    /** Index of the next command in mLog */
+    private int mNext;
+
+    public Replayer(World world) {
+        mWorld = world;
+    }
+
+    /**
+     * Resets the world to the start of the recorded run.
+     */
+    public void start(InputLog log) {
+        mLog = log;
+        mNext = 0;
+        mWorld.setViewSize(log.getViewWidth(), log.getViewHeight());
+        mWorld.reset(log.getSeed());
+    }
+
+    /**
+     * Applies the commands due before the next step and takes it.
+     *
+     * @return false once the run is over: the player crashed, or the
+     *         recording ended there
+     */
+    public boolean step() {
+        if (isFinished()) return false;
+        long tick = mWorld.getTick();
+        while (mNext < mLog.size() && mLog.getTick(mNext) <= tick) {
+            mWorld.applyCommand(mLog.getCommand(mNext++));
+        }
+        return mWorld.step() && !isFinished();
+    }
+
+    /**
+     * Steps until the run is over.
+     *
+     * @param maxTicks most steps to take, for recordings without an end
+     * @return the number of steps taken
+     */
+    public long run(long maxTicks) {
+        long start = mWorld.getTick();
+        while (mWorld.getTick() - start < maxTicks && step()) {
+            // headless; as fast as we can
+        }
+        return mWorld.getTick() - start;
+    }
+
+    /**
+     * @return whether the recorded run is over
+     */
+    public boolean isFinished() {
+        if (mLog == null || mWorld.isCrashed()) return true;
+        long end = mLog.getEndTick();
+        return end >= 0 && mWorld.getTick() >= end;
+    }
+
+    public World getWorld() {
+        return mWorld;
+    }
+}
@@ -0,0 +1,143 @@
+package com.therl.fliprunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * A memory-mapped file holding the latest SaveState, for getting a run back
+ * after the process was killed.
+ *
+ * Writes go to the mapping, i.e. straight into the page cache, so they
+ * survive the process dying without a system call or an fsync, and cost
+ * about as much as copying a couple of kilobytes. The file has two slots
+ * that are written in turn, each with a sequence number and a CRC32, so
+ * dying half way through a write only loses that write: load() picks the
+ * newest slot that checks out.
+ *
+ * Not thread safe; the game thread owns it.
+ */
+public class SaveFile {
+    /** sequence, length, crc */
+    private static final int SLOT_HEADER_SIZE = 8 + 4 + 4;
+
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mMap;
+    private final int mSlotSize;
+    /** Scratch copy of a slot, so the CRC is taken without allocating */
+    private final byte[] mBytes;
+    private final ByteBuffer mBuffer;
+    private final CRC32 mCrc = new CRC32();
+
+    /** Sequence number of the newest slot, 0 if neither is valid */
+    private long mSequence;
+    /** Slot written last; starting at 1 makes the first save go in slot 0 */
+    private int mSlot = 1;
+
+    /**
+     * Opens or creates the file, mapping room for two states of up to
+     * capacity bytes each.
+     */
+    public SaveFile(File file, int capacity) throws IOException {
+        mSlotSize = SLOT_HEADER_SIZE + capacity;
+        mBytes = new byte[capacity];
+        mBuffer = ByteBuffer.wrap(mBytes);
+        mFile = new RandomAccessFile(file, "rw");
+        try {
+            mMap = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 2L * mSlotSize);
+        } catch (IOException e) {
+            mFile.close();
+            throw e;
+        }
+        for (int slot = 0; slot < 2; slot++) {
+            long sequence = checkSlot(slot);
+            if (sequence > mSequence) {
+                mSequence = sequence;
+                mSlot = slot;
+            }
+        }
+    }
+
+    /**
+     * Saves the world and mode into the older slot.
+     */
+    public void save(World world, int mode) {
+        mBuffer.clear();
+        int length = SaveState.write(world, mode, mBuffer);
+        mCrc.reset();
+        mCrc.update(mBytes, 0, length);
+
+        int slot = 1 - mSlot;
+        int base = slot * mSlotSize;
+        // The payload goes in before the header that vouches for it.
+        mMap.position(base + SLOT_HEADER_SIZE);
+        mMap.put(mBytes, 0, length);
+        mMap.putInt(base + 8, length);
+        mMap.putInt(base + 12, (int) mCrc.getValue());
+        mMap.putLong(base, mSequence + 1);
+        mSequence++;
+        mSlot = slot;
+    }
+
+    /**
+     * Restores the newest valid state into the world.
+     *
+     * @return the saved mode, or -1 if there is nothing to restore, in which
+     *         case the world should be reset
+     */
+    public int load(World world) {
+        if (mSequence == 0) return -1;
+        int length = mMap.getInt(mSlot * mSlotSize + 8);
+        mMap.position(mSlot * mSlotSize + SLOT_HEADER_SIZE);
+        mMap.get(mBytes, 0, length);
+        mBuffer.clear();
+        mBuffer.limit(length);
+        try {
+            return SaveState.read(world, mBuffer);
+        } catch (IllegalArgumentException e) {
+            // e.g. a save from an older version of the game
+            return -1;
+        }
+    }
+
+    /**
+     * Forgets the saved state, e.g. once the run it belongs to is over.
+     */
+    public void clear() {
+        mMap.putLong(0, 0);
+        mMap.putLong(mSlotSize, 0);
+        mSequence = 0;
+        mSlot = 1;
+    }
+
+    /**
+     * Writes the mapping to storage, e.g. before the app goes to the
+     * background. Not needed to survive the process dying, only the device.
+     */
+    public void flush() {
+        mMap.force();
+    }
+
+    public void close() throws IOException {
+        mFile.close();
+    }
+
+    /**
+     * @return the slot's sequence number, or 0 if it fails its CRC
+     */
+    private long checkSlot(int slot) {
+        int base = slot * mSlotSize;
+        long sequence = mMap.getLong(base);
+        int length = mMap.getInt(base + 8);
+        if (sequence <= 0 || length <= 0 || length > mBytes.length) return 0;
+        mMap.position(base + SLOT_HEADER_SIZE);
+        mMap.get(mBytes, 0, length);
+        mCrc.reset();
+        mCrc.update(mBytes, 0, length);
+        return (int) mCrc.getValue() == mMap.getInt(base + 12) ? sequence : 0;
+    }
+}
@@ -0,0 +1,92 @@
+package com.therl.fliprunner;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Versioned binary snapshot of a whole World plus the game mode, small and
+ * cheap enough to take every few seconds.
+ *
+ * The layout is a fixed header (magic, version, mode, body length) followed
+ * by the body World.writeState() writes: seed, tick, player, every live
+ * obstacle with the pool's free list, and the level generator with its
+ * random state. Restoring it and stepping on gives exactly the run that was
+ * saved. Numbers are big endian; both methods set the buffer to that order.
+ *
+ * Nothing here allocates; the caller owns the buffer, sized with
+ * {@link #maxSize(World)}.
+ */
+public final class SaveState {
+    /** "FRSV" */
+    public static final int MAGIC = 0x46525356;
+    /** Bump whenever the body layout changes; older saves are then refused. */
+    public static final int VERSION = 1;
+    /** magic, version, mode, body length */
+    public static final int HEADER_SIZE = 4 + 2 + 2 + 4;
+
+    private SaveState() {
+    }
+
+    /**
+     * @return the most bytes write() can need for this world
+     */
+    public static int maxSize(World world) {
+        return HEADER_SIZE + world.maxStateSize();
+    }
+
+    /**
+     * Writes the world and mode at the buffer's position, which is left
+     * just after them.
+     *
+     * @param mode the game mode to restore along with the world
+     * @param out must have at least maxSize(world) bytes remaining
+     * @return the number of bytes written
+     */
+    public static int write(World world, int mode, ByteBuffer out) {
+        int start = out.position();
+        out.order(ByteOrder.BIG_ENDIAN);
+        out.putInt(MAGIC);
+        out.putShort((short) VERSION);
+        out.putShort((short) mode);
+        // the body length is filled in once it is known
+        out.putInt(0);
+        world.writeState(out);
+        int size = out.position() - start;
+        out.putInt(start + 8, size - HEADER_SIZE);
+        return size;
+    }
+
+    /**
+     * Reads a state written by write() into the world, from the buffer's
+     * position. If this throws, the world may be half restored and should
+     * be reset.
+     *
+     * @return the saved mode
+     * @throws IllegalArgumentException if the buffer holds no valid state of
+     *         this version, or one that does not fit the world
+     */
+    public static int read(World world, ByteBuffer in) {
+        in.order(ByteOrder.BIG_ENDIAN);
+        try {
+            if (in.getInt() != MAGIC) throw new IllegalArgumentException("Not a save state");
+            int version = in.getShort();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported save state version " + version);
+            }
+            int mode = in.getShort();
+            int length = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                throw new IllegalArgumentException("Truncated save state");
+            }
+            int end = in.position() + length;
+            world.readState(in);
+            if (in.position() != end) {
+                throw new IllegalArgumentException("Save state length mismatch");
+            }
+            return mode;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated save state", e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.therl.fliprunner;
+
+/**
+ * One finished run, as kept in the ScoreLog and sent to the leaderboard.
+ * Runs are ranked by distance.
+ */
+public final class Score {
+    private final long mId;
+    private final long mSeed;
+    private final long mTicks;
+    private final double mDistance;
+    private final long mTimeMillis;
+
+    /**
+     * @param id position in the log, starting at 0; lets the leaderboard
+     *        drop a batch it already has when an upload is retried
+     * @param timeMillis wall clock time the run ended
+     */
+    public Score(long id, long seed, long ticks, double distance, long timeMillis) {
+        mId = id;
+        mSeed = seed;
+        mTicks = ticks;
+        mDistance = distance;
+        mTimeMillis = timeMillis;
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    /**
+     * @return physics steps the run lasted
+     */
+    public long getTicks() {
+        return mTicks;
+    }
+
+    /**
+     * @return distance scrolled before the crash, in pixels
+     */
+    public double getDistance() {
+        return mDistance;
+    }
+
+    public long getTimeMillis() {
+        return mTimeMillis;
+    }
+
+    /**
+     * @return whether this score ranks above the other: further, or as far
+     *         and earlier
+     */
+    public boolean beats(Score other) {
+        if (mDistance != other.mDistance) return mDistance > other.mDistance;
+        return mId < other.mId;
+    }
+
+    @Override
+    public String toString() {
+        return "Score #" + mId + ": " + mDistance + " px in " + mTicks + " ticks, seed " + mSeed;
+    }
+}
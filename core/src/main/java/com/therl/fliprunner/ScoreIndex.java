@@ -0,0 +1,59 @@
+package com.therl.fliprunner;
+
+import java.util.List;
+
+/**
+ * The best scores, best first, for answering top-N queries from memory.
+ * Keeps at most a fixed number; a score that does not make it is dropped.
+ *
+ * Not thread safe; ScoreStore locks around it.
+ */
+public class ScoreIndex {
+    private final Score[] mScores;
+    private int mCount;
+
+    /**
+     * @param capacity most scores kept, i.e. the largest N worth asking for
+     */
+    public ScoreIndex(int capacity) {
+        mScores = new Score[capacity];
+    }
+
+    /**
+     * Files a score in rank order.
+     *
+     * @return its rank from 0, or -1 if it did not make the index
+     */
+    public int add(Score score) {
+        int rank = mCount;
+        while (rank > 0 && score.beats(mScores[rank - 1])) rank--;
+        if (rank == mScores.length) return -1;
+        int moved = Math.min(mCount, mScores.length - 1) - rank;
+        System.arraycopy(mScores, rank, mScores, rank + 1, moved);
+        mScores[rank] = score;
+        if (mCount < mScores.length) mCount++;
+        return rank;
+    }
+
+    /**
+     * Adds the best scores to a list, best first.
+     *
+     * @param count most scores to add
+     */
+    public void top(int count, List<Score> out) {
+        for (int i = 0; i < count && i < mCount; i++) out.add(mScores[i]);
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    public int capacity() {
+        return mScores.length;
+    }
+
+    public void clear() {
+        for (int i = 0; i < mCount; i++) mScores[i] = null;
+        mCount = 0;
+    }
+}
@@ -0,0 +1,113 @@
+package com.therl.fliprunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The append-only file every finished run is written to.
+ *
+ * Records are a fixed size, each with a CRC32: a score, or a mark that
+ * every score up to an id has been uploaded to the leaderboard. A record
+ * cut short or garbled, e.g. by the process dying during a write, ends the
+ * log; read() cuts it off there so that later appends follow the last good
+ * record. Every append is synced to the disk before it returns, so it
+ * belongs on a background thread.
+ *
+ * Not thread safe; ScoreStore's thread owns it.
+ */
+public class ScoreLog {
+    /*
+     * Record types
+     */
+    static final int TYPE_SCORE = 1;
+    static final int TYPE_SYNCED = 2;
+
+    /** type, id, seed, ticks, distance, time, crc */
+    static final int RECORD_SIZE = 1 + 5 * 8 + 4;
+
+    private final RandomAccessFile mFile;
+    private final byte[] mBytes = new byte[RECORD_SIZE];
+    private final ByteBuffer mBuffer = ByteBuffer.wrap(mBytes);
+    private final CRC32 mCrc = new CRC32();
+
+    /**
+     * Opens or creates the log.
+     */
+    public ScoreLog(File file) throws IOException {
+        mFile = new RandomAccessFile(file, "rw");
+    }
+
+    /**
+     * Reads every good record, and drops whatever follows the last one.
+     *
+     * @param scores every score in the log is added to it, in id order
+     * @return the id of the last score known to be uploaded, or -1
+     */
+    public long read(List<Score> scores) throws IOException {
+        long synced = -1;
+        long good = 0;
+        mFile.seek(0);
+        while (good + RECORD_SIZE <= mFile.length()) {
+            mFile.readFully(mBytes);
+            mCrc.reset();
+            mCrc.update(mBytes, 0, RECORD_SIZE - 4);
+            mBuffer.clear();
+            if (mBuffer.getInt(RECORD_SIZE - 4) != (int) mCrc.getValue()) break;
+            int type = mBuffer.get();
+            long id = mBuffer.getLong();
+            if (type == TYPE_SCORE) {
+                scores.add(new Score(id, mBuffer.getLong(), mBuffer.getLong(),
+                        mBuffer.getDouble(), mBuffer.getLong()));
+            } else if (type == TYPE_SYNCED) {
+                synced = id;
+            } else {
+                break;
+            }
+            good += RECORD_SIZE;
+        }
+        mFile.setLength(good);
+        mFile.seek(good);
+        return synced;
+    }
+
+    /**
+     * Appends a score. Call read() once first.
+     */
+    public void appendScore(Score score) throws IOException {
+        mBuffer.clear();
+        mBuffer.put((byte) TYPE_SCORE);
+        mBuffer.putLong(score.getId());
+        mBuffer.putLong(score.getSeed());
+        mBuffer.putLong(score.getTicks());
+        mBuffer.putDouble(score.getDistance());
+        mBuffer.putLong(score.getTimeMillis());
+        append();
+    }
+
+    /**
+     * Appends a mark that every score up to the given id is uploaded.
+     */
+    public void appendSynced(long id) throws IOException {
+        mBuffer.clear();
+        mBuffer.put((byte) TYPE_SYNCED);
+        mBuffer.putLong(id);
+        for (int i = 0; i < 4; i++) mBuffer.putLong(0);
+        append();
+    }
+
+    private void append() throws IOException {
+        mCrc.reset();
+        mCrc.update(mBytes, 0, RECORD_SIZE - 4);
+        mBuffer.putInt((int) mCrc.getValue());
+        mFile.write(mBytes);
+        mFile.getFD().sync();
+    }
+
+    public void close() throws IOException {
+        mFile.close();
+    }
+}
@@ -0,0 +1,233 @@
+package com.therl.fliprunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the score of every finished run: appends it to a ScoreLog, ranks it
+ * in a ScoreIndex, and uploads it to a LeaderboardClient.
+ *
+ * All the file and network work happens on one background thread of its
+ * own, so submit() only queues a task and is safe to call from the game
+ * thread. That thread starts by reading the log back, which rebuilds the
+ * index and finds the scores not uploaded yet; top() waits for it if it has
+ * not finished. Uploads go in batches of up to BATCH_SIZE, oldest first.
+ * A failed upload is retried after a delay that doubles up to a maximum,
+ * and the pending scores wait in the log meanwhile, across restarts too.
+ */
+public class ScoreStore {
+    /** Most scores in one upload */
+    public static final int BATCH_SIZE = 32;
+    /** Most scores top() can return */
+    public static final int INDEX_CAPACITY = 100;
+    /** Wait before the first retry of a failed upload */
+    public static final long DEFAULT_MIN_BACKOFF_MILLIS = 1000;
+    /** Longest wait between retries */
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 5 * 60 * 1000;
+
+    private static final Logger LOG = Logger.getLogger(ScoreStore.class.getName());
+
+    private final File mFile;
+    /** Null to keep scores local */
+    private final LeaderboardClient mClient;
+    private final ScheduledExecutorService mExecutor;
+    /** Released once the log has been read */
+    private final CountDownLatch mLoaded = new CountDownLatch(1);
+    /** Released once close() has written everything and closed the log */
+    private final CountDownLatch mClosed = new CountDownLatch(1);
+
+    /*
+     * Owned by the executor thread
+     */
+    private ScoreLog mLog;
+    /** Scores not uploaded yet, oldest first */
+    private final List<Score> mPending = new ArrayList<Score>();
+    private final List<Score> mBatch = new ArrayList<Score>();
+    private long mNextId;
+    private boolean mSyncScheduled;
+    private long mMinBackoffMillis = DEFAULT_MIN_BACKOFF_MILLIS;
+    private long mMaxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+    private long mBackoffMillis;
+
+    /** Guarded by itself */
+    private final ScoreIndex mIndex = new ScoreIndex(INDEX_CAPACITY);
+
+    /**
+     * Starts reading the log in the background.
+     *
+     * @param client where to upload scores, or null to keep them local
+     */
+    public ScoreStore(File file, LeaderboardClient client) {
+        mFile = file;
+        mClient = client;
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ScoreStore");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    /**
+     * Sets how long to wait before retrying a failed upload, e.g. to retry
+     * at once in tests.
+     */
+    public void setBackoff(final long minMillis, final long maxMillis) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mMinBackoffMillis = minMillis;
+                mMaxBackoffMillis = maxMillis;
+            }
+        });
+    }
+
+    /**
+     * Records a finished run. Returns at once; the write happens on the
+     * store's thread.
+     */
+    public void submit(final long seed, final long ticks, final double distance) {
+        final long time = System.currentTimeMillis();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                add(seed, ticks, distance, time);
+            }
+        });
+    }
+
+    /**
+     * @param count most scores to return
+     * @return the best scores on this device, best first
+     */
+    public List<Score> top(int count) throws InterruptedException {
+        mLoaded.await();
+        List<Score> top = new ArrayList<Score>(Math.min(count, INDEX_CAPACITY));
+        synchronized (mIndex) {
+            mIndex.top(count, top);
+        }
+        return top;
+    }
+
+    /**
+     * Finishes the writes queued so far and stops. Uploads not done yet,
+     * e.g. waiting out a backoff, are left in the log for next time.
+     */
+    public void close() throws InterruptedException {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (mLog != null) mLog.close();
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Could not close " + mFile, e);
+                }
+                mLog = null;
+                mPending.clear();
+                mClosed.countDown();
+            }
+        });
+        mClosed.await();
+        // drops a retry waiting out its backoff
+        mExecutor.shutdownNow();
+        mExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    private void load() {
+        List<Score> scores = new ArrayList<Score>();
+        long synced = -1;
+        try {
+            mLog = new ScoreLog(mFile);
+            synced = mLog.read(scores);
+        } catch (IOException e) {
+            // play on; scores of this session are lost
+            LOG.log(Level.WARNING, "Could not read " + mFile, e);
+            mLog = null;
+        }
+        synchronized (mIndex) {
+            for (Score score : scores) mIndex.add(score);
+        }
+        for (Score score : scores) {
+            if (score.getId() > synced) mPending.add(score);
+        }
+        mNextId = scores.isEmpty() ? 0 : scores.get(scores.size() - 1).getId() + 1;
+        mLoaded.countDown();
+        scheduleSync(0);
+    }
+
+    private void add(long seed, long ticks, double distance, long time) {
+        Score score = new Score(mNextId++, seed, ticks, distance, time);
+        if (mLog != null) {
+            try {
+                mLog.appendScore(score);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Could not write " + mFile, e);
+            }
+        }
+        synchronized (mIndex) {
+            mIndex.add(score);
+        }
+        mPending.add(score);
+        // an upload waiting out a backoff takes this one along
+        scheduleSync(0);
+    }
+
+    private void scheduleSync(long delayMillis) {
+        if (mClient == null || mSyncScheduled || mPending.isEmpty()) return;
+        mSyncScheduled = true;
+        mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                mSyncScheduled = false;
+                sync();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Uploads the oldest batch of pending scores, then schedules the next
+     * one or a retry.
+     */
+    private void sync() {
+        if (mPending.isEmpty()) return;
+        mBatch.clear();
+        for (int i = 0; i < BATCH_SIZE && i < mPending.size(); i++) mBatch.add(mPending.get(i));
+        try {
+            mClient.upload(mBatch);
+        } catch (IOException e) {
+            mBackoffMillis = mBackoffMillis == 0
+                    ? mMinBackoffMillis : Math.min(mMaxBackoffMillis, mBackoffMillis * 2);
+            LOG.log(Level.FINE, "Upload failed, retrying in " + mBackoffMillis + " ms", e);
+            scheduleSync(mBackoffMillis);
+            return;
+        }
+        mBackoffMillis = 0;
+        mPending.subList(0, mBatch.size()).clear();
+        if (mLog != null) {
+            try {
+                mLog.appendSynced(mBatch.get(mBatch.size() - 1).getId());
+            } catch (IOException e) {
+                // the batch goes again next start; the server drops it
+                LOG.log(Level.WARNING, "Could not write " + mFile, e);
+            }
+        }
+        scheduleSync(0);
+    }
+}
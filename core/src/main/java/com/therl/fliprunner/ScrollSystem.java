@@ -0,0 +1,28 @@
+package com.therl.fliprunner;
+
+/**
+ * Moves entities that are fixed to the track towards the player as it
+ * scrolls. Works on archetypes of PRECISION_FLOAT, which is what obstacles
+ * have always been simulated in.
+ */
+public final class ScrollSystem {
+    /** Components an archetype needs for this system */
+    public static final int COMPONENTS = Archetype.POSITION;
+
+    private ScrollSystem() {
+    }
+
+    /**
+     * Scrolls every entity of the archetype left by one physics step.
+     *
+     * @param distance how far the track scrolled
+     */
+    public static void update(Archetype entities, float distance) {
+        float[] x = entities.getFloatX();
+        float[] prevX = entities.getFloatPrevX();
+        for (int i = 0; i < entities.size(); i++) {
+            prevX[i] = x[i];
+            x[i] -= distance;
+        }
+    }
+}
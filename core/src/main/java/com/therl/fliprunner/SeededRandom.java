@@ -0,0 +1,69 @@
+package com.therl.fliprunner;
+
+/**
+ * Small, fast random number generator (xorshift64*) whose whole state is a
+ * single long. The same seed always gives the same sequence on every device
+ * and JVM. Unlike java.util.Random, whose seed can be set but not read
+ * back, the full 64-bit state can be saved in a SaveState and restored for
+ * replays. It also costs a few shifts and a multiply per number rather than
+ * the atomic compare-and-set java.util.Random does on every call.
+ */
+public class SeededRandom {
+    private long mState;
+
+    public SeededRandom(long seed) {
+        setSeed(seed);
+    }
+
+    /**
+     * Restarts the sequence from a seed.
+     */
+    public void setSeed(long seed) {
+        // Scramble the seed (splitmix64 finalizer) so that close seeds give
+        // unrelated sequences, and make sure the state is never zero.
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        mState = z == 0 ? 0x9E3779B97F4A7C15L : z;
+    }
+
+    public long getState() {
+        return mState;
+    }
+
+    /**
+     * Puts the generator back to a state returned by getState().
+     *
+     * @throws IllegalArgumentException if the state is zero, which
+     *         getState() never returns: xorshift would stay at zero for good
+     */
+    public void setState(long state) {
+        if (state == 0) throw new IllegalArgumentException("Zero random state");
+        mState = state;
+    }
+
+    public long nextLong() {
+        long x = mState;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        mState = x;
+        return x * 0x2545F4914F6CDD1DL;
+    }
+
+    /**
+     * @param bound upper bound, exclusive; must be positive
+     * @return a value between 0 and bound - 1
+     */
+    public int nextInt(int bound) {
+        return (int) (((nextLong() >>> 33) * bound) >>> 31);
+    }
+
+    /**
+     * @return a value between 0 (inclusive) and 1 (exclusive)
+     */
+    public float nextFloat() {
+        return (nextLong() >>> 40) * (1.0f / (1 << 24));
+    }
+}
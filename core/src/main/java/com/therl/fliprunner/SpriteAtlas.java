@@ -0,0 +1,130 @@
+package com.therl.fliprunner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where each sprite sits in a packed atlas image, as written at build time
+ * by the packAtlas task.
+ *
+ * The index is text: a "page <image> <width> <height>" line, then one
+ * "<name> <x> <y> <width> <height>" line per sprite, in pixels from the top
+ * left. Blank lines and lines starting with '#' are ignored.
+ */
+public class SpriteAtlas {
+    private final String mImageName;
+    private final int mPageWidth;
+    private final int mPageHeight;
+    private final String[] mNames;
+    /** x, y, width, height per sprite */
+    private final int[] mRects;
+
+    private SpriteAtlas(String imageName, int pageWidth, int pageHeight, String[] names,
+                        int[] rects) {
+        mImageName = imageName;
+        mPageWidth = pageWidth;
+        mPageHeight = pageHeight;
+        mNames = names;
+        mRects = rects;
+    }
+
+    /**
+     * Reads an index. Does not close the reader.
+     *
+     * @throws IOException if it cannot be read or is malformed
+     */
+    public static SpriteAtlas read(Reader in) throws IOException {
+        BufferedReader reader = new BufferedReader(in);
+        String imageName = null;
+        int pageWidth = 0;
+        int pageHeight = 0;
+        List<String> names = new ArrayList<String>();
+        List<int[]> rects = new ArrayList<int[]>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] f = line.split("\\s+");
+            try {
+                if (f[0].equals("page") && f.length == 4) {
+                    imageName = f[1];
+                    pageWidth = Integer.parseInt(f[2]);
+                    pageHeight = Integer.parseInt(f[3]);
+                } else if (f.length == 5 && imageName != null) {
+                    names.add(f[0]);
+                    rects.add(new int[] {Integer.parseInt(f[1]), Integer.parseInt(f[2]),
+                            Integer.parseInt(f[3]), Integer.parseInt(f[4])});
+                } else {
+                    throw new IOException("Bad atlas line " + lineNumber + ": " + line);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad atlas line " + lineNumber + ": " + line);
+            }
+        }
+        if (imageName == null) throw new IOException("Atlas index has no page line");
+
+        int[] packed = new int[rects.size() * 4];
+        for (int i = 0; i < rects.size(); i++) {
+            System.arraycopy(rects.get(i), 0, packed, i * 4, 4);
+        }
+        return new SpriteAtlas(imageName, pageWidth, pageHeight,
+                names.toArray(new String[names.size()]), packed);
+    }
+
+    /**
+     * @return the index of a sprite, or -1 if the atlas has none by that name
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < mNames.length; i++) {
+            if (mNames[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    public int getSpriteCount() {
+        return mNames.length;
+    }
+
+    /**
+     * @return the name of the atlas image, relative to the index
+     */
+    public String getImageName() {
+        return mImageName;
+    }
+
+    public int getPageWidth() {
+        return mPageWidth;
+    }
+
+    public int getPageHeight() {
+        return mPageHeight;
+    }
+
+    /*
+     * Per-sprite accessors take an index from indexOf().
+     */
+    public String getName(int sprite) {
+        return mNames[sprite];
+    }
+
+    public int getX(int sprite) {
+        return mRects[sprite * 4];
+    }
+
+    public int getY(int sprite) {
+        return mRects[sprite * 4 + 1];
+    }
+
+    public int getWidth(int sprite) {
+        return mRects[sprite * 4 + 2];
+    }
+
+    public int getHeight(int sprite) {
+        return mRects[sprite * 4 + 3];
+    }
+}
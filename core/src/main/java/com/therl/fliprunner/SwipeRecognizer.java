@@ -0,0 +1,116 @@
+package com.therl.fliprunner;
+
+/**
+ * Decides the direction of a swipe from touch samples as they arrive,
+ * instead of waiting for the finger to lift like a fling does.
+ *
+ * Feed it the samples of one touch in order, including the historical ones
+ * MotionEvent batches into each ACTION_MOVE. As soon as the finger has
+ * moved threshold pixels from where it went down, mostly along one axis,
+ * that sample is reported as a swipe in that direction. Only the first
+ * swipe of a touch counts; the finger has to lift before the next one.
+ *
+ * Pure Java and allocation-free, so it can be driven from recorded
+ * samples on the JVM.
+ */
+public class SwipeRecognizer {
+    /*
+     * Directions
+     */
+    public static final int DIRECTION_NONE = 0;
+    public static final int DIRECTION_UP = 1;
+    public static final int DIRECTION_DOWN = 2;
+    public static final int DIRECTION_LEFT = 3;
+    public static final int DIRECTION_RIGHT = 4;
+
+    /*
+     * Tracking states
+     */
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_TRACKING = 1;
+    private static final int STATE_DONE = 2;
+
+    /** Distance from the down point that makes a swipe, in pixels. */
+    private final float mThreshold;
+
+    private int mState = STATE_IDLE;
+    private float mDownX;
+    private float mDownY;
+    private long mDownTime;
+    /** Time from down to the sample that decided the last swipe. */
+    private long mLatency;
+
+    /**
+     * @param thresholdPx distance the finger has to travel, in pixels
+     */
+    public SwipeRecognizer(float thresholdPx) {
+        mThreshold = thresholdPx;
+    }
+
+    /**
+     * Starts a new touch.
+     *
+     * @param time event time of the sample, in milliseconds
+     */
+    public void onDown(float x, float y, long time) {
+        mDownX = x;
+        mDownY = y;
+        mDownTime = time;
+        mState = STATE_TRACKING;
+    }
+
+    /**
+     * Adds a sample of the current touch.
+     *
+     * @param time event time of the sample, in milliseconds
+     * @return the direction if this sample completes a swipe, otherwise
+     *         DIRECTION_NONE
+     */
+    public int onMove(float x, float y, long time) {
+        if (mState != STATE_TRACKING) return DIRECTION_NONE;
+        float dx = x - mDownX;
+        float dy = y - mDownY;
+        float adx = Math.abs(dx);
+        float ady = Math.abs(dy);
+        int direction;
+        if (ady >= mThreshold && ady > adx) {
+            // screen y grows downwards
+            direction = dy < 0 ? DIRECTION_UP : DIRECTION_DOWN;
+        } else if (adx >= mThreshold && adx > ady) {
+            direction = dx < 0 ? DIRECTION_LEFT : DIRECTION_RIGHT;
+        } else {
+            return DIRECTION_NONE;
+        }
+        mState = STATE_DONE;
+        mLatency = time - mDownTime;
+        return direction;
+    }
+
+    /**
+     * Ends the current touch. The last sample still counts, since a quick
+     * flick can arrive as a down followed directly by an up.
+     *
+     * @return the direction if this sample completes a swipe, otherwise
+     *         DIRECTION_NONE
+     */
+    public int onUp(float x, float y, long time) {
+        int direction = onMove(x, y, time);
+        mState = STATE_IDLE;
+        return direction;
+    }
+
+    /**
+     * Abandons the current touch, e.g. when a second finger comes down.
+     */
+    public void cancel() {
+        mState = STATE_IDLE;
+    }
+
+    /**
+     * @return milliseconds from the finger going down to the sample that
+     *         decided the last swipe
+     */
+    public long getLatency() {
+        return mLatency;
+    }
+}
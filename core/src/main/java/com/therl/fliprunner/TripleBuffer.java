@@ -0,0 +1,73 @@
+package com.therl.fliprunner;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the latest of a stream of values from one thread to another
+ * through three pre-allocated buffers, without locks or copying.
+ *
+ * The producer fills getBack() and calls publish(), which swaps it with the
+ * middle buffer. The consumer calls acquire(), which swaps the middle buffer
+ * with its front one if something new was published, and reads the front
+ * buffer until its next acquire(). Neither side ever waits for the other;
+ * values the consumer was too slow to see are simply overwritten.
+ */
+public class TripleBuffer<T> {
+    /** Set in mMiddle when it holds a value the consumer has not seen. */
+    private static final int FRESH = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final Object[] mBuffers;
+    /** Index of the middle buffer, plus FRESH; swapped by both threads. */
+    private final AtomicInteger mMiddle = new AtomicInteger(1);
+    /** Index of the buffer being filled; producer thread only. */
+    private int mBack = 0;
+    /** Index of the buffer being read; consumer thread only. */
+    private int mFront = 2;
+
+    /**
+     * Takes the three buffers to rotate. Which one is the back, middle or
+     * front buffer changes with every swap.
+     */
+    public TripleBuffer(T first, T second, T third) {
+        mBuffers = new Object[] {first, second, third};
+    }
+
+    /**
+     * @return the buffer to fill before the next publish(); producer thread
+     *         only
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) mBuffers[mBack];
+    }
+
+    /**
+     * Makes the back buffer the latest value and hands the producer a new
+     * back buffer. Producer thread only.
+     */
+    public void publish() {
+        mBack = mMiddle.getAndSet(mBack | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * @return whether a value was published since the last acquire()
+     */
+    public boolean hasUpdate() {
+        return (mMiddle.get() & FRESH) != 0;
+    }
+
+    /**
+     * Takes the latest published value, if there is one the consumer has
+     * not seen yet. Consumer thread only.
+     *
+     * @return the front buffer, which stays the same until the next call
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if (hasUpdate()) {
+            mFront = mMiddle.getAndSet(mFront) & INDEX_MASK;
+        }
+        return (T) mBuffers[mFront];
+    }
+}
@@ -0,0 +1,247 @@
+package com.therl.fliprunner;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The whole game simulation: the player, the obstacles, the level generator
+ * and collision detection, advanced one fixed step at a time.
+ *
+ * World knows nothing about Android. The game thread drives it from real
+ * time and draws it through a WorldRenderer; tests, benchmarks and tools can
+ * step it directly on a plain JVM as fast as the CPU allows.
+ */
+public class World {
+    /*
+     * Physics constants
+     */
+    /** Gravity of PhysicsTable.DEFAULT */
+    public static final int PHYS_DOWN_ACCEL_SEC = 10000;
+    /** Length of one physics step, in nanoseconds (120 steps a second) */
+    public static final long PHYS_STEP_NANOS = 1000000000L / 120;
+    /** Length of one physics step, in seconds */
+    public static final double PHYS_STEP_SEC = PHYS_STEP_NANOS / 1000000000.0;
+
+    /*
+     * Input commands
+     */
+    public static final int COMMAND_NONE = 0;
+    public static final int COMMAND_FLIP_UP = 1;
+    public static final int COMMAND_FLIP_DOWN = 2;
+
+    /** View size used until setViewSize() is called, e.g. when headless. */
+    public static final int DEFAULT_VIEW_WIDTH = 1920;
+    public static final int DEFAULT_VIEW_HEIGHT = 1080;
+
+    private final Player mPlayer = new Player();
+    private final ObstaclePool mObstacles;
+    private final LevelGenerator mLevel;
+    private final CollisionDetector mCollisions;
+
+    /** Seed the current level was generated from. */
+    private long mSeed;
+    /** Physics steps taken since reset(). */
+    private long mTick;
+    /** Whether the player has hit an obstacle. */
+    private boolean mCrashed;
+    /** Gravity, impulses and scroll speed */
+    private PhysicsTable mPhysics = PhysicsTable.DEFAULT;
+    /** Distance the track scrolled in the last step. */
+    private double mStepDistance;
+
+    /** Width of the visible world; the player's column is an eighth in. */
+    private int mViewWidth = DEFAULT_VIEW_WIDTH;
+    private int mViewHeight = DEFAULT_VIEW_HEIGHT;
+
+    public World() {
+        this(ObstaclePool.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param obstacleCapacity most obstacles that can be alive at once
+     */
+    public World(int obstacleCapacity) {
+        mObstacles = new ObstaclePool(obstacleCapacity);
+        mLevel = new LevelGenerator(mObstacles);
+        mCollisions = new CollisionDetector(obstacleCapacity);
+        setViewSize(DEFAULT_VIEW_WIDTH, DEFAULT_VIEW_HEIGHT);
+    }
+
+    /**
+     * Starts a new run on the level generated from the given seed.
+     */
+    public void reset(long seed) {
+        mSeed = seed;
+        mTick = 0;
+        mCrashed = false;
+        mStepDistance = 0;
+        mPlayer.reset();
+        mPlayer.setZone(0);
+        mObstacles.clear();
+        mLevel.reset(seed);
+    }
+
+    /**
+     * Sets the size of the visible world, which decides how far ahead
+     * obstacles are generated and when they are culled.
+     */
+    public void setViewSize(int width, int height) {
+        mViewWidth = width;
+        mViewHeight = height;
+        // have obstacles ready an eighth of a screen past the edge
+        mLevel.setLookahead(width);
+    }
+
+    /**
+     * Sets the tuning of the physics. Takes effect from the next step, and
+     * like the seed has to be the same for a run to be reproduced.
+     */
+    public void setPhysics(PhysicsTable physics) {
+        mPhysics = physics;
+        mPlayer.setPhysics(physics);
+        mPlayer.setZone(physics.zoneAt(getDistance()));
+    }
+
+    public PhysicsTable getPhysics() {
+        return mPhysics;
+    }
+
+    /**
+     * Applies one input command to the player.
+     *
+     * @param command one of the COMMAND_* constants
+     * @return whether the command had an effect
+     */
+    public boolean applyCommand(int command) {
+        if (mCrashed) return false;
+        switch (command) {
+            case COMMAND_FLIP_UP:
+                return mPlayer.setJumping(Player.JUMPING_UP);
+            case COMMAND_FLIP_DOWN:
+                return mPlayer.setJumping(Player.JUMPING_DOWN);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Advances the world by one step of PHYS_STEP_SEC. Does nothing once the
+     * player has crashed.
+     *
+     * @return false if the player crashed during this step or before
+     */
+    public boolean step() {
+        if (mCrashed) return false;
+        double speed = mPhysics.speedAt(mTick * PHYS_STEP_SEC);
+        mTick++;
+        mPlayer.updatePhysics(PHYS_STEP_SEC);
+        mObstacles.updatePhysics(PHYS_STEP_SEC, speed);
+        if (mCollisions.findHit(mPlayer, mObstacles) >= 0) {
+            mCrashed = true;
+            return false;
+        }
+        mObstacles.cull(-mViewWidth / 8);
+        mLevel.update(PHYS_STEP_SEC, speed);
+        mStepDistance = speed * PHYS_STEP_SEC;
+        // flips before the next step get the impulse of the zone it is in
+        mPlayer.setZone(mPhysics.zoneAt(mLevel.getDistance()));
+        return true;
+    }
+
+    /**
+     * Makes this world a copy of another with the same obstacle capacity,
+     * view size and physics included, so that stepping both with the same
+     * commands gives the same run. Allocates nothing, so a search can
+     * branch off the world in play and rewind as often as it likes.
+     */
+    public void copyFrom(World other) {
+        mSeed = other.mSeed;
+        mTick = other.mTick;
+        mCrashed = other.mCrashed;
+        mPhysics = other.mPhysics;
+        mStepDistance = other.mStepDistance;
+        mViewWidth = other.mViewWidth;
+        mViewHeight = other.mViewHeight;
+        mPlayer.copyFrom(other.mPlayer);
+        mObstacles.copyFrom(other.mObstacles);
+        mLevel.copyFrom(other.mLevel);
+    }
+
+    /**
+     * Writes the whole simulation, for SaveState. The view size is left
+     * out; it belongs to the device, not the run.
+     */
+    void writeState(ByteBuffer out) {
+        out.putLong(mSeed);
+        out.putLong(mTick);
+        out.put((byte) (mCrashed ? 1 : 0));
+        mPlayer.writeState(out);
+        mObstacles.writeState(out);
+        mLevel.writeState(out);
+    }
+
+    /**
+     * Reads back what writeState() wrote. Stepping on from here gives the
+     * same run as stepping on the world that was saved.
+     *
+     * @throws IllegalArgumentException if the state does not fit this world
+     */
+    void readState(ByteBuffer in) {
+        mSeed = in.getLong();
+        mTick = in.getLong();
+        mCrashed = in.get() != 0;
+        mPlayer.readState(in);
+        mObstacles.readState(in);
+        mLevel.readState(in);
+        mPlayer.setZone(mPhysics.zoneAt(getDistance()));
+    }
+
+    /**
+     * @return most bytes writeState() writes for this world
+     */
+    int maxStateSize() {
+        return 8 + 8 + 1 + Player.STATE_SIZE + ObstaclePool.maxStateSize(mObstacles.capacity())
+                + LevelGenerator.maxStateSize();
+    }
+
+    public Player getPlayer() {
+        return mPlayer;
+    }
+
+    public ObstaclePool getObstacles() {
+        return mObstacles;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    public long getTick() {
+        return mTick;
+    }
+
+    public boolean isCrashed() {
+        return mCrashed;
+    }
+
+    /**
+     * @return distance scrolled since reset(), in pixels
+     */
+    public double getDistance() {
+        return mLevel.getDistance();
+    }
+
+    /**
+     * @return distance the track scrolled in the last step, in pixels
+     */
+    public double getStepDistance() {
+        return mStepDistance;
+    }
+
+    public int getViewWidth() {
+        return mViewWidth;
+    }
+
+    public int getViewHeight() {
+        return mViewHeight;
+    }
+}
@@ -0,0 +1,109 @@
+package com.therl.fliprunner;
+
+/**
+ * Draws a WorldSnapshot through a Renderer.
+ *
+ * World space has x growing to the right from the player's column, which
+ * sits an eighth of the way across the screen, and y growing upwards from
+ * the middle of the screen. Entities are drawn between their previous and
+ * current physics step positions.
+ */
+public class WorldRenderer {
+    /*
+     * Particle looks
+     */
+    private static final float SPARK_SIZE = 4;
+    private static final int SPARK_COLOR = 0xFFFFE082;
+    private static final float STREAK_WIDTH = 2;
+    private static final int STREAK_COLOR = 0xFFFF7043;
+    /** A streak is as long as this many seconds of its motion */
+    private static final float STREAK_SECONDS = 0.03f;
+
+    /** x, y of each spark, handed to drawPoints(); only grows */
+    private float[] mPoints = new float[0];
+    /** x0, y0, x1, y1 of each streak, handed to drawLines(); only grows */
+    private float[] mLines = new float[0];
+
+    /**
+     * Draws the background, the player, the obstacles and the particles. Must be called
+     * between the renderer's beginFrame() and endFrame().
+     *
+     * @param alpha how far to go from the previous towards the current
+     *              physics step, between 0 and 1
+     */
+    public void doDraw(Renderer renderer, WorldSnapshot world, int width, int height,
+                       double alpha) {
+        double scroll = world.getDistance() - (1 - alpha) * world.getStepDistance();
+        renderer.drawBackground(Math.max(0, scroll));
+        drawPlayer(renderer, world, width, height, alpha);
+        drawObstacles(renderer, world, width, height, alpha);
+        drawParticles(renderer, world, width, height, alpha);
+    }
+
+    private void drawPlayer(Renderer renderer, WorldSnapshot world, int width, int height,
+                            double alpha) {
+        double x = world.getPlayerPrevX() + (world.getPlayerX() - world.getPlayerPrevX()) * alpha;
+        double y = world.getPlayerPrevY() + (world.getPlayerY() - world.getPlayerPrevY()) * alpha;
+
+        int offset = width / 8;
+        int yMid = height / 2 - (int) y;
+        int xLeft = (int) x + offset;
+
+        renderer.drawSprite(Renderer.SPRITE_PLAYER, xLeft - Player.RADIUS, yMid - Player.RADIUS,
+                xLeft + Player.RADIUS, yMid + Player.RADIUS);
+    }
+
+    private void drawObstacles(Renderer renderer, WorldSnapshot world, int width, int height,
+                               double alpha) {
+        int offset = width / 8;
+        int yMid = height / 2;
+        float a = (float) alpha;
+        for (int i = 0; i < world.getObstacleCount(); i++) {
+            float prevX = world.getObstaclePrevX(i);
+            float left = prevX + (world.getObstacleX(i) - prevX) * a + offset;
+            float bottom = yMid - world.getObstacleY(i);
+            renderer.drawSprite(Renderer.SPRITE_OBSTACLE, left,
+                    bottom - world.getObstacleHeight(i),
+                    left + world.getObstacleWidth(i), bottom);
+        }
+    }
+
+    /**
+     * Draws every spark with one drawPoints() and every streak with one
+     * drawLines(), however many there are.
+     */
+    private void drawParticles(Renderer renderer, WorldSnapshot world, int width, int height,
+                               double alpha) {
+        int count = world.getParticleCount();
+        if (count == 0) return;
+        if (mPoints.length < count * 2) {
+            mPoints = new float[count * 2];
+            mLines = new float[count * 4];
+        }
+        float offset = width / 8;
+        float yMid = height / 2;
+        float a = (float) alpha;
+        int sparks = 0;
+        int streaks = 0;
+        for (int i = 0; i < count; i++) {
+            float prevX = world.getParticlePrevX(i);
+            float prevY = world.getParticlePrevY(i);
+            float x = prevX + (world.getParticleX(i) - prevX) * a + offset;
+            float y = yMid - (prevY + (world.getParticleY(i) - prevY) * a);
+            if (world.getParticleKind(i) == ParticleSystem.KIND_SPARK) {
+                mPoints[sparks * 2] = x;
+                mPoints[sparks * 2 + 1] = y;
+                sparks++;
+            } else {
+                int l = streaks * 4;
+                mLines[l] = x;
+                mLines[l + 1] = y;
+                mLines[l + 2] = x - world.getParticleDX(i) * STREAK_SECONDS;
+                mLines[l + 3] = y + world.getParticleDY(i) * STREAK_SECONDS;
+                streaks++;
+            }
+        }
+        if (sparks > 0) renderer.drawPoints(mPoints, sparks, SPARK_SIZE, SPARK_COLOR);
+        if (streaks > 0) renderer.drawLines(mLines, streaks, STREAK_WIDTH, STREAK_COLOR);
+    }
+}
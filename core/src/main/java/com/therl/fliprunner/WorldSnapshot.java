@@ -0,0 +1,247 @@
+package com.therl.fliprunner;
+
+/**
+ * Everything needed to draw a World at one physics step, copied out so it
+ * can be drawn on another thread while the simulation moves on.
+ *
+ * Snapshots are allocated up front and refilled with copyFrom(); the copy
+ * only allocates if the world holds more obstacles than ever before. Once
+ * published through a TripleBuffer a snapshot is never written again until
+ * the renderer has let go of it, so readers need no locking.
+ */
+public class WorldSnapshot {
+    private double mPlayerX;
+    private double mPlayerY;
+    private double mPlayerPrevX;
+    private double mPlayerPrevY;
+
+    private int mObstacleCount;
+    private float[] mObstacleX;
+    private float[] mObstaclePrevX;
+    private float[] mObstacleY;
+    private float[] mObstacleWidth;
+    private float[] mObstacleHeight;
+
+    private int mParticleCount;
+    private float[] mParticleX = new float[0];
+    private float[] mParticleY = new float[0];
+    private float[] mParticlePrevX = new float[0];
+    private float[] mParticlePrevY = new float[0];
+    private float[] mParticleDX = new float[0];
+    private float[] mParticleDY = new float[0];
+    private int[] mParticleKind = new int[0];
+
+    private double mDistance;
+    private double mStepDistance;
+    private long mTick;
+    private boolean mCrashed;
+    private int mViewWidth;
+    private int mViewHeight;
+
+    /** Time the current step stands for, in System.nanoTime() units. */
+    private long mTimeNanos;
+    /** Whether the world is advancing, i.e. worth redrawing every frame. */
+    private boolean mRunning;
+
+    public WorldSnapshot() {
+        this(ObstaclePool.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param obstacleCapacity obstacles to make room for up front
+     */
+    public WorldSnapshot(int obstacleCapacity) {
+        allocateObstacles(obstacleCapacity);
+    }
+
+    /**
+     * Copies the drawable state of a world.
+     *
+     * @param timeNanos time the world's current step stands for
+     * @param running whether the world is still being stepped
+     */
+    public void copyFrom(World world, long timeNanos, boolean running) {
+        Player player = world.getPlayer();
+        mPlayerX = player.getCenterX();
+        mPlayerY = player.getCenterY();
+        mPlayerPrevX = player.getPrevCenterX();
+        mPlayerPrevY = player.getPrevCenterY();
+
+        ObstaclePool obstacles = world.getObstacles();
+        int count = obstacles.size();
+        if (count > mObstacleX.length) allocateObstacles(obstacles.capacity());
+        for (int i = 0; i < count; i++) {
+            int slot = obstacles.slotAt(i);
+            mObstacleX[i] = obstacles.getX(slot);
+            mObstaclePrevX[i] = obstacles.getPrevX(slot);
+            mObstacleY[i] = obstacles.getY(slot);
+            mObstacleWidth[i] = obstacles.getWidth(slot);
+            mObstacleHeight[i] = obstacles.getHeight(slot);
+        }
+        mObstacleCount = count;
+
+        mDistance = world.getDistance();
+        mStepDistance = world.getStepDistance();
+        mTick = world.getTick();
+        mCrashed = world.isCrashed();
+        mViewWidth = world.getViewWidth();
+        mViewHeight = world.getViewHeight();
+        mTimeNanos = timeNanos;
+        mRunning = running;
+    }
+
+    /**
+     * Copies the particles alive, to draw along with the world. Only
+     * allocates the first time there are more than ever before.
+     */
+    public void copyParticles(ParticleSystem particles) {
+        int count = particles.size();
+        if (count > mParticleX.length) allocateParticles(particles.capacity());
+        System.arraycopy(particles.getX(), 0, mParticleX, 0, count);
+        System.arraycopy(particles.getY(), 0, mParticleY, 0, count);
+        System.arraycopy(particles.getPrevX(), 0, mParticlePrevX, 0, count);
+        System.arraycopy(particles.getPrevY(), 0, mParticlePrevY, 0, count);
+        System.arraycopy(particles.getDX(), 0, mParticleDX, 0, count);
+        System.arraycopy(particles.getDY(), 0, mParticleDY, 0, count);
+        System.arraycopy(particles.getKind(), 0, mParticleKind, 0, count);
+        mParticleCount = count;
+    }
+
+    private void allocateParticles(int capacity) {
+        mParticleX = new float[capacity];
+        mParticleY = new float[capacity];
+        mParticlePrevX = new float[capacity];
+        mParticlePrevY = new float[capacity];
+        mParticleDX = new float[capacity];
+        mParticleDY = new float[capacity];
+        mParticleKind = new int[capacity];
+    }
+
+    private void allocateObstacles(int capacity) {
+        mObstacleX = new float[capacity];
+        mObstaclePrevX = new float[capacity];
+        mObstacleY = new float[capacity];
+        mObstacleWidth = new float[capacity];
+        mObstacleHeight = new float[capacity];
+    }
+
+    public double getPlayerX() {
+        return mPlayerX;
+    }
+
+    public double getPlayerY() {
+        return mPlayerY;
+    }
+
+    public double getPlayerPrevX() {
+        return mPlayerPrevX;
+    }
+
+    public double getPlayerPrevY() {
+        return mPlayerPrevY;
+    }
+
+    public int getObstacleCount() {
+        return mObstacleCount;
+    }
+
+    /*
+     * Obstacle accessors take an index below getObstacleCount(), not a pool
+     * slot.
+     */
+    public float getObstacleX(int index) {
+        return mObstacleX[index];
+    }
+
+    public float getObstaclePrevX(int index) {
+        return mObstaclePrevX[index];
+    }
+
+    public float getObstacleY(int index) {
+        return mObstacleY[index];
+    }
+
+    public float getObstacleWidth(int index) {
+        return mObstacleWidth[index];
+    }
+
+    public float getObstacleHeight(int index) {
+        return mObstacleHeight[index];
+    }
+
+    public int getParticleCount() {
+        return mParticleCount;
+    }
+
+    /*
+     * Particle accessors take an index below getParticleCount().
+     */
+    public float getParticleX(int index) {
+        return mParticleX[index];
+    }
+
+    public float getParticleY(int index) {
+        return mParticleY[index];
+    }
+
+    public float getParticlePrevX(int index) {
+        return mParticlePrevX[index];
+    }
+
+    public float getParticlePrevY(int index) {
+        return mParticlePrevY[index];
+    }
+
+    public float getParticleDX(int index) {
+        return mParticleDX[index];
+    }
+
+    public float getParticleDY(int index) {
+        return mParticleDY[index];
+    }
+
+    /**
+     * @return one of the ParticleSystem.KIND_* constants
+     */
+    public int getParticleKind(int index) {
+        return mParticleKind[index];
+    }
+
+    /**
+     * @return distance scrolled since reset(), in pixels
+     */
+    public double getDistance() {
+        return mDistance;
+    }
+
+    /**
+     * @return distance scrolled by the last step, in pixels
+     */
+    public double getStepDistance() {
+        return mStepDistance;
+    }
+
+    public long getTick() {
+        return mTick;
+    }
+
+    public boolean isCrashed() {
+        return mCrashed;
+    }
+
+    public int getViewWidth() {
+        return mViewWidth;
+    }
+
+    public int getViewHeight() {
+        return mViewHeight;
+    }
+
+    public long getTimeNanos() {
+        return mTimeNanos;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+}
@@ -0,0 +1,91 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ArchetypeTest {
+    @Test
+    public void columns_onlyForComponentsPresent() {
+        Archetype archetype = new Archetype(Archetype.POSITION | Archetype.SPRITE, 4);
+        assertNotNull(archetype.getX());
+        assertNotNull(archetype.getSprite());
+        assertNull(archetype.getDX());
+        assertNull(archetype.getWidth());
+        assertNull(archetype.getJumping());
+        assertTrue(archetype.has(Archetype.POSITION | Archetype.SPRITE));
+        assertFalse(archetype.has(Archetype.POSITION | Archetype.COLLIDER));
+    }
+
+    @Test
+    public void floatPrecision_hasOnlyFloatCoordinates() {
+        Archetype archetype = new Archetype(Archetype.POSITION | Archetype.COLLIDER, 4,
+                Archetype.PRECISION_FLOAT);
+        assertNull(archetype.getX());
+        assertNull(archetype.getWidth());
+        assertNotNull(archetype.getFloatX());
+        assertNotNull(archetype.getFloatHeight());
+
+        int first = archetype.create();
+        int second = archetype.create();
+        archetype.getFloatX()[archetype.rowOf(second)] = 0.1f;
+        archetype.getFloatWidth()[archetype.rowOf(second)] = 7;
+        archetype.destroy(first);
+        assertEquals(0.1f, archetype.getFloatX()[archetype.rowOf(second)], 0);
+        assertEquals(7, archetype.getFloatWidth()[archetype.rowOf(second)], 0);
+
+        Archetype copy = new Archetype(Archetype.POSITION | Archetype.COLLIDER, 4,
+                Archetype.PRECISION_FLOAT);
+        copy.copyFrom(archetype);
+        assertEquals(0.1f, copy.getFloatX()[copy.rowOf(second)], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void floatPrecision_rejectsVelocity() {
+        new Archetype(Archetype.POSITION | Archetype.VELOCITY, 4, Archetype.PRECISION_FLOAT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void copyFrom_rejectsOtherPrecision() {
+        new Archetype(Archetype.POSITION, 4).copyFrom(
+                new Archetype(Archetype.POSITION, 4, Archetype.PRECISION_FLOAT));
+    }
+
+    @Test
+    public void destroy_keepsRowsPackedAndIdsStable() {
+        Archetype archetype = new Archetype(Archetype.POSITION, 4);
+        int[] ids = new int[4];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = archetype.create();
+            archetype.getX()[archetype.rowOf(ids[i])] = i * 10;
+        }
+        assertEquals(0, ids[0]);
+        assertEquals(-1, archetype.create());
+
+        archetype.destroy(ids[1]);
+        assertEquals(3, archetype.size());
+        assertFalse(archetype.isAlive(ids[1]));
+        // the last row moved into the hole and kept its values
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 1) continue;
+            int row = archetype.rowOf(ids[i]);
+            assertTrue(row < archetype.size());
+            assertEquals(ids[i], archetype.idAt(row));
+            assertEquals(i * 10, archetype.getX()[row], 0);
+        }
+
+        // the freed id is handed out again
+        assertEquals(ids[1], archetype.create());
+        assertEquals(4, archetype.size());
+    }
+
+    @Test
+    public void clear_freesEverything() {
+        Archetype archetype = new Archetype(Archetype.POSITION, 2);
+        archetype.create();
+        archetype.create();
+        archetype.clear();
+        assertEquals(0, archetype.size());
+        assertEquals(0, archetype.create());
+    }
+}
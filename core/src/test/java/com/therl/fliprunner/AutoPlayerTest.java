@@ -0,0 +1,42 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AutoPlayerTest {
+    /** A minute of play */
+    private static final int TICKS = 120 * 60;
+
+    @Test
+    public void bot_beatsGeneratedLevels() throws Exception {
+        AutoPlayer bot = new AutoPlayer(ObstaclePool.DEFAULT_CAPACITY);
+        // generous, so the result does not depend on the machine
+        bot.setBudgetNanos(1000000000L);
+        World world = new World();
+        for (long seed = 1; seed <= 3; seed++) {
+            world.reset(seed);
+            for (int i = 0; i < TICKS; i++) {
+                world.applyCommand(bot.decide(world));
+                assertTrue("crashed on seed " + seed + " at tick " + world.getTick(),
+                        world.step());
+            }
+        }
+    }
+
+    @Test
+    public void search_leavesWorldAlone() throws Exception {
+        AutoPlayer bot = new AutoPlayer(ObstaclePool.DEFAULT_CAPACITY);
+        World world = new World();
+        world.reset(5);
+        for (int i = 0; i < 200; i++) world.step();
+        long tick = world.getTick();
+        double y = world.getPlayer().getY();
+        int obstacles = world.getObstacles().size();
+        bot.decide(world);
+        assertTrue(bot.getNodes() > 0);
+        assertEquals(tick, world.getTick());
+        assertEquals(y, world.getPlayer().getY(), 0);
+        assertEquals(obstacles, world.getObstacles().size());
+    }
+}
@@ -0,0 +1,41 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BatchSimulatorTest {
+    /** Not a multiple of the batch size, so one batch is short */
+    private static final int RUNS = 100;
+    private static final long SEED = 7;
+    private static final long MAX_TICKS = (long) (20 / World.PHYS_STEP_SEC);
+
+    @Test
+    public void run_sameResultsWhateverTheModeAndThreads() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        BatchSimulator.Stats expected = run(1, false);
+        // crashes end runs at different ticks, or the comparison proves little
+        assertTrue(expected.getEndCount(BatchSimulator.END_SURVIVED) < RUNS);
+        assertSameRuns(expected, run(1, true));
+        assertSameRuns(expected, run(threads, false));
+        assertSameRuns(expected, run(threads, true));
+    }
+
+    private static BatchSimulator.Stats run(int threads, boolean lockstep) {
+        BatchSimulator simulator = new BatchSimulator(threads);
+        try {
+            return simulator.run(PhysicsTable.DEFAULT, SEED, RUNS, MAX_TICKS, lockstep);
+        } finally {
+            simulator.shutdown();
+        }
+    }
+
+    private static void assertSameRuns(BatchSimulator.Stats expected, BatchSimulator.Stats actual) {
+        assertEquals(expected.getRuns(), actual.getRuns());
+        for (int run = 0; run < expected.getRuns(); run++) {
+            assertEquals("run " + run, expected.getTicks(run), actual.getTicks(run));
+            assertEquals("run " + run, expected.getEnd(run), actual.getEnd(run));
+        }
+        assertEquals(expected.summary(), actual.summary());
+    }
+}
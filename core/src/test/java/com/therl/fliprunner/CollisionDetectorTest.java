@@ -0,0 +1,107 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CollisionDetectorTest {
+    private static final float R = Player.RADIUS;
+
+    @Test
+    public void sweptCircle_hitsThinBoxItCrossesWithinOneStep() {
+        // 3000 px/s over a tenth of a second; both ends are clear of the box
+        assertFalse(CollisionDetector.circleHitsBox(0, -150, R, -50, -2, 50, 2));
+        assertFalse(CollisionDetector.circleHitsBox(0, 150, R, -50, -2, 50, 2));
+        assertTrue(CollisionDetector.sweptCircleHitsBox(0, -150, 0, 150, R, -50, -2, 50, 2));
+        // and diagonally, through a thin upright box
+        assertTrue(CollisionDetector.sweptCircleHitsBox(-200, -100, 200, 100, R, -1, -50, 1, 50));
+    }
+
+    @Test
+    public void sweptCircle_nearMissAndTouchingEdge() {
+        // passing alongside the right edge, just out of reach and just touching
+        assertFalse(CollisionDetector.sweptCircleHitsBox(50 + R + 0.01, -150, 50 + R + 0.01, 150,
+                R, -50, -2, 50, 2));
+        assertTrue(CollisionDetector.sweptCircleHitsBox(50 + R, -150, 50 + R, 150,
+                R, -50, -2, 50, 2));
+        // past the top-right corner: the closest approach is along the diagonal
+        double d = R * Math.sqrt(2);
+        assertTrue(CollisionDetector.sweptCircleHitsBox(-100, 100 + d - 0.01,
+                100, -100 + d - 0.01, R, -50, -50, 0, 0));
+        assertFalse(CollisionDetector.sweptCircleHitsBox(-100, 100 + d + 0.01,
+                100, -100 + d + 0.01, R, -50, -50, 0, 0));
+        // stopping just short of the box
+        assertFalse(CollisionDetector.sweptCircleHitsBox(0, -150, 0, -2 - R - 0.01,
+                R, -50, -2, 50, 2));
+        assertTrue(CollisionDetector.sweptCircleHitsBox(0, -150, 0, -2 - R, R, -50, -2, 50, 2));
+    }
+
+    @Test
+    public void findHit_catchesFlipThroughThinObstacle() {
+        Player player = new Player();
+        // a flip at JUMP_SPEED over a long step, so that it jumps the obstacle
+        player.restore(0, 0, 0, Player.JUMP_SPEED);
+        player.updatePhysics(0.1);
+        ObstaclePool obstacles = new ObstaclePool(4);
+        float x = (float) player.getCenterX() - 50;
+        int thin = obstacles.spawn(x, 150, 100, 4);
+        // one beside the path, out of reach
+        obstacles.spawn((float) player.getCenterX() + R + 1, 150, 100, 4);
+        obstacles.updatePhysics(0.1, 0);
+        assertFalse(CollisionDetector.circleHitsBox(player.getCenterX(), player.getCenterY(), R,
+                x, 150, x + 100, 154));
+        assertEquals(thin, new CollisionDetector(4).findHit(player, obstacles));
+
+        obstacles.recycle(thin);
+        assertEquals(-1, new CollisionDetector(4).findHit(player, obstacles));
+    }
+
+    @Test
+    public void gridQuery_findsEveryOverlapAfterSpawnRecycleAndScroll() {
+        int capacity = 256;
+        ObstaclePool obstacles = new ObstaclePool(capacity);
+        SeededRandom random = new SeededRandom(6);
+        int[] out = new int[capacity];
+        boolean[] reported = new boolean[capacity];
+        int checked = 0;
+        for (int step = 0; step < 2000; step++) {
+            // far enough over the run for the grid's columns to wrap many times
+            obstacles.updatePhysics(World.PHYS_STEP_SEC, 1000 + random.nextFloat() * 9000);
+            obstacles.cull(-1000);
+            for (int i = 0; i < 3; i++) {
+                obstacles.spawn(random.nextFloat() * 4000, random.nextFloat() * 1600 - 800,
+                        10 + random.nextFloat() * 300, 10 + random.nextFloat() * 300);
+            }
+            if (obstacles.size() > 0 && random.nextInt(4) == 0) {
+                obstacles.recycle(obstacles.slotAt(random.nextInt(obstacles.size())));
+            }
+
+            float minX = random.nextFloat() * 5000 - 1000;
+            float minY = random.nextFloat() * 1600 - 800;
+            float maxX = minX + random.nextFloat() * 500;
+            float maxY = minY + random.nextFloat() * 500;
+            int count = obstacles.query(minX, minY, maxX, maxY, out);
+            Arrays.fill(reported, false);
+            for (int i = 0; i < count; i++) {
+                assertTrue(obstacles.isActive(out[i]));
+                assertFalse("reported twice", reported[out[i]]);
+                reported[out[i]] = true;
+            }
+            // every live obstacle that overlaps the box, by brute force
+            for (int i = 0; i < obstacles.size(); i++) {
+                int slot = obstacles.slotAt(i);
+                float left = obstacles.getX(slot);
+                float bottom = obstacles.getY(slot);
+                // a pixel inside the edges, for rounding of the track position
+                if (left + obstacles.getWidth(slot) > minX + 1 && left < maxX - 1
+                        && bottom + obstacles.getHeight(slot) > minY + 1 && bottom < maxY - 1) {
+                    assertTrue("step " + step + " missed slot " + slot, reported[slot]);
+                    checked++;
+                }
+            }
+        }
+        assertTrue(checked > 1000);
+    }
+}
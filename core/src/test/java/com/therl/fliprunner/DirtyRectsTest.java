@@ -0,0 +1,170 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DirtyRectsTest {
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    @Test
+    public void add_roundsOutAndSkipsEmptyRects() {
+        DirtyRects rects = new DirtyRects();
+        rects.add(10.5f, 20.2f, 30.1f, 40.9f);
+        rects.add(50, 50, 50, 60);
+        assertEquals(1, rects.getCount());
+        assertEquals(10, rects.getLeft(0));
+        assertEquals(20, rects.getTop(0));
+        assertEquals(31, rects.getRight(0));
+        assertEquals(41, rects.getBottom(0));
+
+        // grows past its first capacity
+        for (int i = 0; i < 100; i++) rects.add(i * 20, 0, i * 20 + 10, 10);
+        assertEquals(101, rects.getCount());
+        assertEquals(21 * 21 + 100 * 100, rects.getArea());
+    }
+
+    @Test
+    public void merge_joinsOverlapsOnlyWhenItSavesPixels() {
+        DirtyRects rects = new DirtyRects();
+        // a sprite where it was and where it is, a few pixels on
+        rects.add(100, 100, 200, 150);
+        rects.add(95, 100, 195, 150);
+        // far away, and diagonal neighbours whose box would be mostly empty
+        rects.add(1000, 500, 1010, 510);
+        rects.add(500, 0, 600, 100);
+        rects.add(590, 90, 690, 190);
+        rects.merge();
+        assertEquals(4, rects.getCount());
+        assertEquals(105 * 50 + 10 * 10 + 100 * 100 + 100 * 100, rects.getArea());
+
+        DirtyRegion bounds = new DirtyRegion();
+        rects.getBounds(bounds);
+        assertEquals(95, bounds.getLeft());
+        assertEquals(0, bounds.getTop());
+        assertEquals(1010, bounds.getRight());
+        assertEquals(510, bounds.getBottom());
+
+        // one inside another is always merged
+        rects.setEmpty();
+        rects.add(0, 0, 100, 100);
+        rects.add(10, 10, 20, 20);
+        rects.add(30, 30, 40, 40);
+        rects.merge();
+        assertEquals(1, rects.getCount());
+        assertEquals(100 * 100, rects.getArea());
+    }
+
+    @Test
+    public void clip_dropsWhatIsOffScreen() {
+        DirtyRects rects = new DirtyRects();
+        rects.add(-50, -50, 50, 50);
+        rects.add(200, 200, 300, 300);
+        rects.add(90, 10, 120, 20);
+        rects.clip(100, 100);
+        assertEquals(2, rects.getCount());
+        assertEquals(50 * 50 + 10 * 10, rects.getArea());
+        assertTrue(rects.intersects(1, 95, 0, 96, 15));
+        assertFalse(rects.intersects(1, 100, 0, 110, 15));
+    }
+
+    @Test
+    public void addBatch_coversEveryPointWithItsSize() {
+        DirtyRects rects = new DirtyRects();
+        float[] lines = {10, 20, 30, 5, 100, 100, 90, 110};
+        rects.addBatch(lines, 8, 4);
+        assertEquals(1, rects.getCount());
+        assertEquals(10 - 3, rects.getLeft(0));
+        assertEquals(5 - 3, rects.getTop(0));
+        assertEquals(100 + 3, rects.getRight(0));
+        assertEquals(110 + 3, rects.getBottom(0));
+        rects.addBatch(lines, 0, 4);
+        assertEquals(1, rects.getCount());
+    }
+
+    /**
+     * In a run, the rects of every sprite where it was and where it is come
+     * to a small part of the screen, and to a small part of their bounding
+     * box.
+     */
+    @Test
+    public void run_repaintsFarLessThanTheBoundingBox() {
+        World world = new World();
+        world.reset(3);
+        WorldSnapshot snapshot = new WorldSnapshot();
+        WorldRenderer worldRenderer = new WorldRenderer();
+        TrackingRenderer renderer = new TrackingRenderer();
+        long dirty = 0;
+        long bounds = 0;
+        int frames = 0;
+        for (int i = 0; i < 20000; i++) {
+            if (!world.step()) world.reset(i);
+            if (i % 60 == 0) {
+                world.applyCommand(i % 120 == 0 ? World.COMMAND_FLIP_UP : World.COMMAND_FLIP_DOWN);
+            }
+            // a frame every other step, as at 60fps
+            if (i % 2 == 1) continue;
+            snapshot.copyFrom(world, i, true);
+            renderer.beginFrame(WIDTH, HEIGHT);
+            worldRenderer.doDraw(renderer, snapshot, WIDTH, HEIGHT, 1);
+            renderer.endFrame();
+            dirty += renderer.mDirty.getArea();
+            bounds += renderer.mBounds.getArea();
+            frames++;
+        }
+        long screen = (long) WIDTH * HEIGHT * frames;
+        assertTrue("dirty " + dirty * 100 / screen + "% of the screen", dirty * 20 < screen);
+        assertTrue("bounds " + bounds * 100 / screen + "% of the screen", dirty * 10 < bounds);
+    }
+
+    /**
+     * Works out the rects to repaint the way CanvasRenderer does in dirty
+     * rect mode, without painting them.
+     */
+    private static class TrackingRenderer implements Renderer {
+        final DirtyRects mCurrent = new DirtyRects();
+        final DirtyRects mPrevious = new DirtyRects();
+        final DirtyRects mDirty = new DirtyRects();
+        final DirtyRegion mBounds = new DirtyRegion();
+        private int mWidth;
+        private int mHeight;
+
+        @Override
+        public boolean beginFrame(int width, int height) {
+            mWidth = width;
+            mHeight = height;
+            mCurrent.setEmpty();
+            return true;
+        }
+
+        @Override
+        public void drawBackground(double scroll) {
+        }
+
+        @Override
+        public void drawSprite(int sprite, float left, float top, float right, float bottom) {
+            mCurrent.addSprite(left, top, right, bottom);
+        }
+
+        @Override
+        public void drawPoints(float[] points, int count, float size, int color) {
+            mCurrent.addBatch(points, count * 2, size);
+        }
+
+        @Override
+        public void drawLines(float[] lines, int count, float width, int color) {
+            mCurrent.addBatch(lines, count * 4, width);
+        }
+
+        @Override
+        public void endFrame() {
+            mDirty.set(mCurrent);
+            mDirty.add(mPrevious);
+            mDirty.clip(mWidth, mHeight);
+            mDirty.merge();
+            mDirty.getBounds(mBounds);
+            mPrevious.set(mCurrent);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DirtyRegionTest {
+    @Test
+    public void add_coversEveryRectRoundedOut() {
+        DirtyRegion region = new DirtyRegion();
+        assertTrue(region.isEmpty());
+        region.add(10.5f, 20.2f, 30.1f, 40.9f);
+        region.add(100, 5, 110, 15);
+        assertEquals(10, region.getLeft());
+        assertEquals(5, region.getTop());
+        assertEquals(110, region.getRight());
+        assertEquals(41, region.getBottom());
+        assertEquals(100 * 36, region.getArea());
+    }
+
+    @Test
+    public void add_unionsPreviousFrame() {
+        DirtyRegion previous = new DirtyRegion();
+        previous.add(0, 0, 10, 10);
+        DirtyRegion current = new DirtyRegion();
+        current.add(20, 20, 30, 30);
+        DirtyRegion dirty = new DirtyRegion();
+        dirty.set(current);
+        dirty.add(previous);
+        assertEquals(0, dirty.getLeft());
+        assertEquals(30, dirty.getBottom());
+        // an empty region adds nothing
+        dirty.add(new DirtyRegion());
+        assertEquals(900, dirty.getArea());
+    }
+
+    @Test
+    public void clip_dropsWhatIsOffScreen() {
+        DirtyRegion region = new DirtyRegion();
+        region.add(-50, -50, 50, 50);
+        region.clip(40, 100);
+        assertEquals(0, region.getLeft());
+        assertEquals(40, region.getRight());
+        assertEquals(50, region.getBottom());
+
+        region.setEmpty();
+        region.add(200, 200, 300, 300);
+        region.clip(100, 100);
+        assertTrue(region.isEmpty());
+        assertEquals(0, region.getArea());
+    }
+}
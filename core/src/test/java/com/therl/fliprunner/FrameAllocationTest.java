@@ -0,0 +1,56 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a simulated frame (physics step + snapshot + draw) allocates nothing once
+ * warmed up. Any per-frame allocation shows up multiplied by FRAMES, while the
+ * cost of measuring is a fixed few hundred bytes.
+ */
+public class FrameAllocationTest {
+    private static final int WARMUP_FRAMES = 20000;
+    private static final int FRAMES = 100000;
+
+    @Test
+    public void worldFrame_doesNotAllocate() throws Exception {
+        World world = new World();
+        WorldSnapshot snapshot = new WorldSnapshot();
+        WorldRenderer worldRenderer = new WorldRenderer();
+        RecordingRenderer renderer = new RecordingRenderer();
+        runFrames(world, snapshot, worldRenderer, renderer, WARMUP_FRAMES);
+
+        long before = allocatedBytes();
+        runFrames(world, snapshot, worldRenderer, renderer, FRAMES);
+        long allocated = allocatedBytes() - before;
+
+        assertTrue("allocated " + allocated + " bytes over " + FRAMES + " frames",
+                allocated < FRAMES);
+    }
+
+    private static void runFrames(World world, WorldSnapshot snapshot,
+                                  WorldRenderer worldRenderer, RecordingRenderer renderer,
+                                  int frames) {
+        for (int i = 0; i < frames; i++) {
+            // start over whenever we crash, so obstacles keep spawning
+            if (!world.step()) world.reset(i);
+            // flip every so often so both jump branches are exercised
+            if (i % 60 == 0) {
+                world.applyCommand(i % 120 == 0 ? World.COMMAND_FLIP_UP : World.COMMAND_FLIP_DOWN);
+            }
+            snapshot.copyFrom(world, i, true);
+            renderer.beginFrame(1920, 1080);
+            worldRenderer.doDraw(renderer, snapshot, 1920, 1080, 0.5);
+            renderer.endFrame();
+        }
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
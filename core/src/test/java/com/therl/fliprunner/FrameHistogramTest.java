@@ -0,0 +1,41 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameHistogramTest {
+    @Test
+    public void buckets_coverEveryValueOnce() throws Exception {
+        assertEquals(0, FrameHistogram.bucketLowerMicros(0));
+        for (int b = 1; b < FrameHistogram.BUCKET_COUNT; b++) {
+            assertEquals(FrameHistogram.bucketUpperMicros(b - 1) + 1,
+                    FrameHistogram.bucketLowerMicros(b));
+        }
+        assertEquals(FrameHistogram.MAX_MICROS,
+                FrameHistogram.bucketUpperMicros(FrameHistogram.BUCKET_COUNT - 1));
+    }
+
+    @Test
+    public void percentiles_areWithinBucketPrecision() throws Exception {
+        FrameHistogram h = new FrameHistogram();
+        // 1ms .. 100ms, one sample each
+        for (int ms = 1; ms <= 100; ms++) {
+            h.record(ms * 1000000L);
+        }
+        assertEquals(100, h.getCount());
+        assertEquals(50000, h.percentile(0.50), 50000 * 0.07);
+        assertEquals(99000, h.percentile(0.99), 99000 * 0.07);
+        assertEquals(100000, h.getMaxMicros());
+        assertEquals(100000, h.percentile(1.0));
+    }
+
+    @Test
+    public void reset_forgetsSamples() throws Exception {
+        FrameHistogram h = new FrameHistogram();
+        h.record(16000000L);
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.percentile(0.5));
+    }
+}
@@ -0,0 +1,90 @@
+package com.therl.fliprunner;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InputLogWriterTest {
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void runs_appendAcrossWriters() throws Exception {
+        File file = new File(mFolder.getRoot(), "input.log");
+        record(file, 1000, 0, 2);
+        record(file, 1000, 2, 1);
+
+        List<InputLog> runs = read(file);
+        assertEquals(3, runs.size());
+        for (int i = 0; i < runs.size(); i++) {
+            assertEquals(i, runs.get(i).getSeed());
+            assertEquals(10, runs.get(i).size());
+            assertEquals(100, runs.get(i).getEndTick());
+        }
+        assertFalse(new File(file.getPath() + ".1").exists());
+    }
+
+    @Test
+    public void rotateIfFull_startsNewFileBetweenRuns() throws Exception {
+        File file = new File(mFolder.getRoot(), "input.log");
+        // a run is 50 bytes, so every third one starts a new file
+        record(file, 100, 0, 7);
+
+        List<InputLog> runs = read(file);
+        assertEquals(1, runs.size());
+        assertEquals(6, runs.get(0).getSeed());
+        runs = read(new File(file.getPath() + ".1"));
+        assertEquals(2, runs.size());
+        assertEquals(4, runs.get(0).getSeed());
+        for (InputLog run : runs) assertEquals(100, run.getEndTick());
+    }
+
+    @Test
+    public void write_afterCloseFails() throws Exception {
+        InputLogWriter writer = new InputLogWriter(new File(mFolder.getRoot(), "input.log"), 100);
+        writer.close();
+        try {
+            writer.write(new byte[1], 0, 1);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        assertTrue(writer.awaitClosed(TIMEOUT_MILLIS));
+    }
+
+    /**
+     * Records runs the way GameSurface does, each of ten commands, and
+     * waits for them to be written.
+     */
+    private static void record(File file, long maxBytes, long firstSeed, int count)
+            throws Exception {
+        InputLogWriter writer = new InputLogWriter(file, maxBytes);
+        InputRecorder recorder = new InputRecorder(writer);
+        for (long seed = firstSeed; seed < firstSeed + count; seed++) {
+            recorder.startRun(seed, World.DEFAULT_VIEW_WIDTH, World.DEFAULT_VIEW_HEIGHT);
+            writer.rotateIfFull();
+            for (int i = 0; i < 10; i++) recorder.record(i * 10, World.COMMAND_FLIP_UP);
+            recorder.endRun(100);
+        }
+        recorder.close();
+        assertTrue(writer.awaitClosed(TIMEOUT_MILLIS));
+    }
+
+    private static List<InputLog> read(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            return InputLog.readAll(in);
+        } finally {
+            in.close();
+        }
+    }
+}
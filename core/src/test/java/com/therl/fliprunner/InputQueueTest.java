@@ -0,0 +1,55 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InputQueueTest {
+    @Test
+    public void offer_failsWhenFull() throws Exception {
+        InputQueue queue = new InputQueue(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i, i));
+        }
+        assertFalse(queue.offer(4, 4));
+        assertEquals(4, queue.drain(new InputQueue.Consumer() {
+            @Override
+            public void onCommand(int command, long timeNanos) {
+            }
+        }));
+        assertTrue(queue.isEmpty());
+        assertTrue(queue.offer(5, 5));
+    }
+
+    @Test
+    public void concurrentProducer_deliversEveryCommandInOrder() throws Exception {
+        final int count = 100000;
+        final InputQueue queue = new InputQueue(64);
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    while (!queue.offer(i, -i)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        };
+        final int[] next = new int[1];
+        InputQueue.Consumer consumer = new InputQueue.Consumer() {
+            @Override
+            public void onCommand(int command, long timeNanos) {
+                assertEquals(next[0], command);
+                assertEquals(-next[0], timeNanos);
+                next[0]++;
+            }
+        };
+        producer.start();
+        while (next[0] < count) {
+            // on one core the producer only runs when the consumer lets it
+            if (queue.drain(consumer) == 0) Thread.yield();
+        }
+        producer.join();
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,112 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ParticleSystemTest {
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final double FRAME_SEC = 1 / 60.0;
+
+    @Test
+    public void emit_stopsAtBudget() {
+        ParticleSystem particles = new ParticleSystem(100);
+        particles.setBudget(30);
+        assertEquals(20, particles.emit(ParticleSystem.KIND_SPARK, 0, 0, 20, 100, 1));
+        assertEquals(10, particles.emit(ParticleSystem.KIND_STREAK, 0, 0, 20, 100, 1));
+        assertEquals(0, particles.emit(ParticleSystem.KIND_SPARK, 0, 0, 20, 100, 1));
+        assertEquals(30, particles.size());
+
+        // never above the capacity
+        particles.setBudget(1000);
+        assertEquals(100, particles.getBudget());
+    }
+
+    @Test
+    public void update_removesParticlesOnceTheirLifeIsOver() {
+        ParticleSystem particles = new ParticleSystem(100);
+        particles.emit(ParticleSystem.KIND_SPARK, 0, 0, 50, 100, 0.5f);
+        particles.emit(ParticleSystem.KIND_STREAK, 0, 0, 50, 100, 2);
+        // lives are between half and all of the given one
+        particles.update(0.2);
+        assertEquals(100, particles.size());
+        particles.update(0.31);
+        assertEquals(50, particles.size());
+        int[] kind = particles.getKind();
+        for (int i = 0; i < particles.size(); i++) {
+            assertEquals(ParticleSystem.KIND_STREAK, kind[i]);
+        }
+        particles.update(1.5);
+        assertEquals(0, particles.size());
+    }
+
+    @Test
+    public void doDraw_batchesEachKindIntoOneCall() {
+        ParticleSystem particles = new ParticleSystem(100);
+        particles.emit(ParticleSystem.KIND_SPARK, 0, 0, 30, 100, 1);
+        particles.emit(ParticleSystem.KIND_STREAK, 0, 0, 20, 100, 1);
+        particles.update(FRAME_SEC);
+        RecordingRenderer renderer = new RecordingRenderer();
+        draw(particles, snapshot(), new WorldRenderer(), renderer);
+
+        int points = -1;
+        int lines = -1;
+        for (int i = 0; i < renderer.getCallCount(); i++) {
+            if (renderer.getOp(i) == RecordingRenderer.OP_POINTS) {
+                assertEquals(-1, points);
+                points = i;
+            } else if (renderer.getOp(i) == RecordingRenderer.OP_LINES) {
+                assertEquals(-1, lines);
+                lines = i;
+            }
+        }
+        assertEquals(30, renderer.getPrimitiveCount(points));
+        assertEquals(20, renderer.getPrimitiveCount(lines));
+    }
+
+    /**
+     * Ten thousand particles stay well within a frame, update, copy and
+     * draw together. The bound is loose so that slow machines pass; a
+     * regression to per-particle draw calls or allocation blows it anyway.
+     */
+    @Test
+    public void frame_withTenThousandParticles() {
+        int count = 10000;
+        ParticleSystem particles = new ParticleSystem(count);
+        particles.setBudget(count);
+        WorldSnapshot snapshot = snapshot();
+        WorldRenderer worldRenderer = new WorldRenderer();
+        RecordingRenderer renderer = new RecordingRenderer();
+        long nanos = 0;
+        for (int frame = 0; frame < 400; frame++) {
+            // top up what died, as a steady stream of flips would
+            particles.emit(frame % 2 == 0 ? ParticleSystem.KIND_SPARK : ParticleSystem.KIND_STREAK,
+                    0, 0, count, 400, 1);
+            assertEquals(count, particles.size());
+            long start = System.nanoTime();
+            particles.update(FRAME_SEC);
+            draw(particles, snapshot, worldRenderer, renderer);
+            // the first half is warmup
+            if (frame >= 200) nanos += System.nanoTime() - start;
+        }
+        double millis = nanos / 200 / 1e6;
+        assertTrue("frame took " + millis + " ms", millis < 4);
+    }
+
+    private static WorldSnapshot snapshot() {
+        World world = new World();
+        world.reset(1);
+        WorldSnapshot snapshot = new WorldSnapshot();
+        snapshot.copyFrom(world, 0, true);
+        return snapshot;
+    }
+
+    private static void draw(ParticleSystem particles, WorldSnapshot snapshot,
+            WorldRenderer worldRenderer, RecordingRenderer renderer) {
+        snapshot.copyParticles(particles);
+        assertTrue(renderer.beginFrame(WIDTH, HEIGHT));
+        worldRenderer.doDraw(renderer, snapshot, WIDTH, HEIGHT, 1);
+        renderer.endFrame();
+    }
+}
@@ -0,0 +1,122 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+public class PhysicsTableTest {
+    /** The app's physics.table as shipped */
+    private static final String DEFAULT_TABLE = ""
+            + "# defaults\n"
+            + "zone 0 10000 -10000 -3000 3000\n"
+            + "speed 0 1000\n";
+
+    /*
+     * Final states of 200 random runs, taken before the physics was moved
+     * into tables, each run on a new World so that none inherits a flip
+     * from the one before
+     */
+    private static final long GOLDEN_TICKS = 62520;
+    private static final long GOLDEN_CRC = 0xb032fe9fL;
+
+    private static PhysicsTable read(String table) throws IOException {
+        return PhysicsTable.read(new StringReader(table));
+    }
+
+    /**
+     * Plays 200 seeds with random flips.
+     *
+     * @return the CRC32 of every final state, with the total ticks in ticks[0]
+     */
+    private static long playAll(PhysicsTable physics, long[] ticks) {
+        CRC32 crc = new CRC32();
+        World world = new World();
+        world.setPhysics(physics);
+        ByteBuffer buffer = ByteBuffer.allocate(SaveState.maxSize(world));
+        for (long seed = 0; seed < 200; seed++) {
+            world.reset(seed);
+            SeededRandom input = new SeededRandom(seed ^ 0x5EED);
+            while (world.getTick() < 120 * 120) {
+                int roll = input.nextInt(40);
+                if (roll < 2) {
+                    world.applyCommand(roll == 0
+                            ? World.COMMAND_FLIP_UP : World.COMMAND_FLIP_DOWN);
+                }
+                if (!world.step()) break;
+            }
+            buffer.clear();
+            crc.update(buffer.array(), 0, SaveState.write(world, 0, buffer));
+            ticks[0] += world.getTick();
+        }
+        return crc.getValue();
+    }
+
+    @Test
+    public void defaults_reproduceHardCodedPhysics() throws Exception {
+        long[] ticks = new long[1];
+        assertEquals(GOLDEN_CRC, playAll(PhysicsTable.DEFAULT, ticks));
+        assertEquals(GOLDEN_TICKS, ticks[0]);
+        ticks[0] = 0;
+        assertEquals(GOLDEN_CRC, playAll(read(DEFAULT_TABLE), ticks));
+        assertEquals(GOLDEN_TICKS, ticks[0]);
+    }
+
+    @Test
+    public void zonesAndRamp_lookUpByDistanceAndTime() throws Exception {
+        PhysicsTable table = read(""
+                + "zone 0 10000 -10000 -3000 3000\n"
+                + "zone 5000 5000 -5000 -2000 2000\n"
+                + "speed 0 1000\n"
+                + "speed 10 2000\n");
+        assertEquals(2, table.getZoneCount());
+        assertEquals(0, table.zoneAt(4999));
+        assertEquals(1, table.zoneAt(5000));
+        assertEquals(-5000, table.getGravity(1, PhysicsTable.LANE_ABOVE), 0);
+        assertEquals(-2000, table.getImpulse(1, PhysicsTable.LANE_BELOW), 0);
+        assertEquals(0, table.getGravity(1, PhysicsTable.LANE_LINE), 0);
+        assertEquals(1000, table.speedAt(0), 0);
+        assertEquals(1500, table.speedAt(5), 1e-9);
+        assertEquals(2000, table.speedAt(60), 0);
+    }
+
+    @Test
+    public void speedRamp_scrollsFaster() throws Exception {
+        World world = new World();
+        world.setPhysics(read("zone 0 10000 -10000 -3000 3000\nspeed 0 1000\nspeed 1 3000\n"));
+        world.reset(1);
+        // the first obstacle is 900px away, so a second of running is safe
+        for (int i = 0; i < 60; i++) world.step();
+        double early = world.getStepDistance();
+        assertTrue(early > 1000 * World.PHYS_STEP_SEC);
+        assertTrue(early < 3000 * World.PHYS_STEP_SEC);
+    }
+
+    @Test
+    public void zone_changesImpulse() throws Exception {
+        World world = new World();
+        world.setPhysics(read(""
+                + "zone 0 10000 -10000 -3000 3000\n"
+                + "zone 100 10000 -10000 -1000 1000\n"
+                + "speed 0 1000\n"));
+        world.reset(1);
+        // 100px in at 1000px/s
+        for (int i = 0; i < 13; i++) world.step();
+        world.applyCommand(World.COMMAND_FLIP_UP);
+        assertEquals(1000, world.getPlayer().getDY(), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsZonesOutOfOrder() throws Exception {
+        read("zone 0 1 -1 -1 1\nzone 0 1 -1 -1 1\nspeed 0 1000\n");
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsMissingSpeed() throws Exception {
+        read("zone 0 1 -1 -1 1\n");
+    }
+}
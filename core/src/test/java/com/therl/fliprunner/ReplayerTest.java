@@ -0,0 +1,89 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReplayerTest {
+    private static final int MAX_TICKS = 120 * 60;
+
+    /**
+     * Plays a run with pseudo-random flips, the way the game thread does:
+     * commands are applied and recorded between steps.
+     */
+    private static void play(World world, InputRecorder recorder, long seed) throws Exception {
+        world.reset(seed);
+        recorder.startRun(seed, world.getViewWidth(), world.getViewHeight());
+        SeededRandom input = new SeededRandom(seed ^ 0x5EED);
+        while (world.getTick() < MAX_TICKS) {
+            int roll = input.nextInt(40);
+            if (roll < 2) {
+                int command = roll == 0 ? World.COMMAND_FLIP_UP : World.COMMAND_FLIP_DOWN;
+                recorder.record(world.getTick(), command);
+                world.applyCommand(command);
+            }
+            if (!world.step()) break;
+        }
+        recorder.endRun(world.getTick());
+    }
+
+    private static byte[] state(World world) {
+        ByteBuffer buffer = ByteBuffer.allocate(SaveState.maxSize(world));
+        int size = SaveState.write(world, 0, buffer);
+        return Arrays.copyOf(buffer.array(), size);
+    }
+
+    @Test
+    public void replay_reproducesRecordedRuns() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        InputRecorder recorder = new InputRecorder(file);
+        World world = new World();
+        byte[][] expected = new byte[3][];
+        for (int run = 0; run < expected.length; run++) {
+            play(world, recorder, 100 + run);
+            expected[run] = state(world);
+        }
+        recorder.close();
+
+        List<InputLog> runs = InputLog.readAll(new ByteArrayInputStream(file.toByteArray()));
+        assertEquals(expected.length, runs.size());
+        Replayer replayer = new Replayer(new World());
+        for (int run = 0; run < expected.length; run++) {
+            InputLog log = runs.get(run);
+            assertEquals(100 + run, log.getSeed());
+            replayer.start(log);
+            long ticks = replayer.run(Long.MAX_VALUE);
+            assertEquals(log.getEndTick(), ticks);
+            assertTrue(replayer.isFinished());
+            assertArrayEquals(expected[run], state(replayer.getWorld()));
+        }
+    }
+
+    @Test
+    public void readAll_keepsRunCutShort() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        InputRecorder recorder = new InputRecorder(file);
+        recorder.startRun(9, 800, 480);
+        recorder.record(10, World.COMMAND_FLIP_UP);
+        recorder.record(300, World.COMMAND_FLIP_DOWN);
+        recorder.flush();
+        byte[] bytes = file.toByteArray();
+        // the process died in the middle of the last record
+        bytes = Arrays.copyOf(bytes, bytes.length - 1);
+
+        List<InputLog> runs = InputLog.readAll(new ByteArrayInputStream(bytes));
+        assertEquals(1, runs.size());
+        InputLog log = runs.get(0);
+        assertEquals(800, log.getViewWidth());
+        assertEquals(1, log.size());
+        assertEquals(10, log.getTick(0));
+        assertEquals(World.COMMAND_FLIP_UP, log.getCommand(0));
+        assertEquals(-1, log.getEndTick());
+    }
+}
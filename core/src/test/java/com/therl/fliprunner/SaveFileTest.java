@@ -0,0 +1,77 @@
+package com.therl.fliprunner;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class SaveFileTest {
+    private static final int MODE = 4;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void load_returnsNewestSave() throws Exception {
+        File file = mFolder.newFile();
+        World world = new World();
+        world.reset(5);
+        SaveFile save = new SaveFile(file, SaveState.maxSize(world));
+        assertEquals(-1, save.load(world));
+        world.step();
+        save.save(world, MODE);
+        world.step();
+        save.save(world, MODE);
+        save.close();
+
+        World restored = new World();
+        save = new SaveFile(file, SaveState.maxSize(world));
+        assertEquals(MODE, save.load(restored));
+        assertEquals(2, restored.getTick());
+        save.close();
+    }
+
+    @Test
+    public void load_skipsTornWrite() throws Exception {
+        File file = mFolder.newFile();
+        World world = new World();
+        world.reset(5);
+        int capacity = SaveState.maxSize(world);
+        SaveFile save = new SaveFile(file, capacity);
+        world.step();
+        save.save(world, MODE);
+        world.step();
+        // the second save lands in the second slot; spoil its payload
+        save.save(world, MODE);
+        save.close();
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.seek(16 + capacity + 16 + SaveState.HEADER_SIZE);
+        raw.write(0x55);
+        raw.close();
+
+        World restored = new World();
+        save = new SaveFile(file, capacity);
+        assertEquals(MODE, save.load(restored));
+        assertEquals(1, restored.getTick());
+        save.close();
+    }
+
+    @Test
+    public void clear_forgetsSave() throws Exception {
+        File file = mFolder.newFile();
+        World world = new World();
+        world.reset(5);
+        SaveFile save = new SaveFile(file, SaveState.maxSize(world));
+        save.save(world, MODE);
+        save.clear();
+        save.close();
+
+        save = new SaveFile(file, SaveState.maxSize(world));
+        assertEquals(-1, save.load(world));
+        save.close();
+    }
+}
@@ -0,0 +1,109 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class SaveStateTest {
+    private static final int MAX_TICKS = 120 * 60;
+    private static final int MODE = 4;
+
+    /** Flips often enough to get past a few obstacles */
+    private static int command(long tick) {
+        if (tick % 90 == 0) return World.COMMAND_FLIP_UP;
+        if (tick % 90 == 45) return World.COMMAND_FLIP_DOWN;
+        return World.COMMAND_NONE;
+    }
+
+    private static void play(World world, int ticks) {
+        for (int i = 0; i < ticks && !world.isCrashed(); i++) {
+            world.applyCommand(command(world.getTick()));
+            world.step();
+        }
+    }
+
+    @Test
+    public void restoredWorld_continuesSameRun() throws Exception {
+        World saved = new World();
+        saved.reset(42);
+        play(saved, 600);
+        assertTrue(saved.getObstacles().size() > 0);
+
+        ByteBuffer buffer = ByteBuffer.allocate(SaveState.maxSize(saved));
+        int size = SaveState.write(saved, MODE, buffer);
+        assertEquals(size, buffer.position());
+        assertTrue(size <= buffer.capacity());
+
+        World restored = new World();
+        restored.reset(7);
+        buffer.flip();
+        assertEquals(MODE, SaveState.read(restored, buffer));
+        assertEquals(saved.getSeed(), restored.getSeed());
+        assertEquals(saved.getTick(), restored.getTick());
+
+        while (saved.getTick() < MAX_TICKS && !saved.isCrashed()) {
+            play(saved, 1);
+            play(restored, 1);
+            assertEquals(saved.isCrashed(), restored.isCrashed());
+            assertEquals(saved.getPlayer().getY(), restored.getPlayer().getY(), 0);
+            assertEquals(saved.getDistance(), restored.getDistance(), 0);
+            ObstaclePool a = saved.getObstacles();
+            ObstaclePool b = restored.getObstacles();
+            assertEquals(a.size(), b.size());
+            for (int i = 0; i < a.size(); i++) {
+                int slot = a.slotAt(i);
+                assertEquals(slot, b.slotAt(i));
+                assertEquals(a.getX(slot), b.getX(slot), 0);
+                assertEquals(a.getY(slot), b.getY(slot), 0);
+            }
+        }
+        assertEquals(saved.getTick(), restored.getTick());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void read_rejectsOtherVersions() throws Exception {
+        World world = new World();
+        world.reset(1);
+        ByteBuffer buffer = ByteBuffer.allocate(SaveState.maxSize(world));
+        SaveState.write(world, MODE, buffer);
+        buffer.putShort(4, (short) (SaveState.VERSION + 1));
+        buffer.flip();
+        SaveState.read(world, buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void read_rejectsTruncatedState() throws Exception {
+        World world = new World();
+        world.reset(1);
+        play(world, 300);
+        ByteBuffer buffer = ByteBuffer.allocate(SaveState.maxSize(world));
+        int size = SaveState.write(world, MODE, buffer);
+        buffer.flip();
+        buffer.limit(size - 10);
+        SaveState.read(new World(), buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void read_rejectsZeroRandomState() throws Exception {
+        LevelGenerator level = new LevelGenerator(new ObstaclePool(16));
+        ByteBuffer buffer = ByteBuffer.allocate(LevelGenerator.maxStateSize());
+        level.writeState(buffer);
+        // the random state comes first
+        buffer.putLong(0, 0);
+        buffer.flip();
+        level.readState(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void read_rejectsSmallerPool() throws Exception {
+        World world = new World();
+        world.reset(3);
+        play(world, 600);
+        ByteBuffer buffer = ByteBuffer.allocate(SaveState.maxSize(world));
+        SaveState.write(world, MODE, buffer);
+        buffer.flip();
+        SaveState.read(new World(1), buffer);
+    }
+}
@@ -0,0 +1,88 @@
+package com.therl.fliprunner;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScoreStoreTest {
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void top_rebuiltFromLogAfterRestart() throws Exception {
+        File file = mFolder.newFile();
+        ScoreStore store = new ScoreStore(file, null);
+        for (int i = 0; i < 10; i++) store.submit(i, i * 100, (i * 7) % 10 * 1000.0);
+        store.close();
+
+        store = new ScoreStore(file, null);
+        List<Score> top = store.top(3);
+        assertEquals(3, top.size());
+        assertEquals(9000, top.get(0).getDistance(), 0);
+        assertEquals(8000, top.get(1).getDistance(), 0);
+        assertEquals(7000, top.get(2).getDistance(), 0);
+        // ids go on from the log
+        store.submit(10, 1000, 9500);
+        store.close();
+        store = new ScoreStore(file, null);
+        assertEquals(10, store.top(1).get(0).getId());
+        store.close();
+    }
+
+    @Test
+    public void log_dropsTornTail() throws Exception {
+        File file = mFolder.newFile();
+        ScoreStore store = new ScoreStore(file, null);
+        store.submit(1, 100, 1000);
+        store.submit(2, 200, 2000);
+        store.close();
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.setLength(2 * ScoreLog.RECORD_SIZE - 5);
+        raw.close();
+
+        store = new ScoreStore(file, null);
+        assertEquals(1, store.top(10).size());
+        store.submit(3, 300, 3000);
+        store.close();
+        assertEquals(2 * ScoreLog.RECORD_SIZE, file.length());
+    }
+
+    @Test
+    public void sync_retriesUntilEveryScoreIsUploadedOnce() throws Exception {
+        File file = mFolder.newFile();
+        LocalLeaderboard server = new LocalLeaderboard(10);
+        server.failNext(3);
+        ScoreStore store = new ScoreStore(file, server);
+        store.setBackoff(1, 4);
+        int runs = 3 * ScoreStore.BATCH_SIZE;
+        for (int i = 0; i < runs; i++) store.submit(i, i, i);
+        waitFor(server, runs);
+        assertEquals(runs - 1, server.top(1).get(0).getDistance(), 0);
+        assertTrue(server.getBatches() < runs);
+        store.close();
+
+        // nothing is sent again after a restart
+        int batches = server.getBatches();
+        store = new ScoreStore(file, server);
+        store.submit(runs, runs, runs);
+        waitFor(server, runs + 1);
+        store.close();
+        assertEquals(batches + 1, server.getBatches());
+    }
+
+    private static void waitFor(LocalLeaderboard server, int scores) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (server.size() < scores) {
+            assertTrue("uploaded " + server.size(), System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class SpriteAtlasTest {
+    @Test
+    public void read_parsesPageAndSprites() throws IOException {
+        SpriteAtlas atlas = SpriteAtlas.read(new StringReader(
+                "# generated\n"
+                + "page sprites.png 128 64\n"
+                + "\n"
+                + "obstacle 70 2 16 16\n"
+                + "player 2 2 64 64\n"));
+        assertEquals("sprites.png", atlas.getImageName());
+        assertEquals(128, atlas.getPageWidth());
+        assertEquals(64, atlas.getPageHeight());
+        assertEquals(2, atlas.getSpriteCount());
+        int player = atlas.indexOf("player");
+        assertEquals("player", atlas.getName(player));
+        assertEquals(2, atlas.getX(player));
+        assertEquals(2, atlas.getY(player));
+        assertEquals(64, atlas.getWidth(player));
+        assertEquals(64, atlas.getHeight(player));
+        assertEquals(70, atlas.getX(atlas.indexOf("obstacle")));
+        assertEquals(-1, atlas.indexOf("missing"));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsSpritesBeforePage() throws IOException {
+        SpriteAtlas.read(new StringReader("player 0 0 1 1\npage a.png 1 1\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsBadNumbers() throws IOException {
+        SpriteAtlas.read(new StringReader("page a.png 1 1\nplayer 0 zero 1 1\n"));
+    }
+}
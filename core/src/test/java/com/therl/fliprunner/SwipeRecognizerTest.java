@@ -0,0 +1,98 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays the synthetic gestures in swipe_corpus.txt through a
+ * SwipeRecognizer and checks each is recognized as the corpus expects.
+ */
+public class SwipeRecognizerTest {
+    private static final String CORPUS = "/swipe_corpus.txt";
+    /** 24dp at density 2.5, as OnSwipeTouchListener would use. */
+    private static final float THRESHOLD = 60;
+
+    private static final String[] DIRECTION_NAMES = {"NONE", "UP", "DOWN", "LEFT", "RIGHT"};
+
+    @Test
+    public void corpus_isRecognizedAsExpected() throws IOException {
+        InputStream in = getClass().getResourceAsStream(CORPUS);
+        assertNotNull("missing " + CORPUS, in);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            SwipeRecognizer recognizer = new SwipeRecognizer(THRESHOLD);
+            String name = null;
+            String expected = null;
+            long expectedLatency = 0;
+            int recognized = SwipeRecognizer.DIRECTION_NONE;
+            int count = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] f = line.split(" ");
+                if (f[0].equals("gesture")) {
+                    if (name != null) {
+                        check(name, expected, expectedLatency, recognized, recognizer);
+                    }
+                    name = f[1];
+                    expected = f[2];
+                    expectedLatency = Long.parseLong(f[3]);
+                    recognized = SwipeRecognizer.DIRECTION_NONE;
+                    count++;
+                    continue;
+                }
+                float x = Float.parseFloat(f[1]);
+                float y = Float.parseFloat(f[2]);
+                long time = Long.parseLong(f[3]);
+                int direction = SwipeRecognizer.DIRECTION_NONE;
+                if (f[0].equals("down")) {
+                    recognizer.onDown(x, y, time);
+                } else if (f[0].equals("move")) {
+                    direction = recognizer.onMove(x, y, time);
+                } else if (f[0].equals("up")) {
+                    direction = recognizer.onUp(x, y, time);
+                } else if (f[0].equals("pointer_down")) {
+                    recognizer.cancel();
+                } else {
+                    fail("unknown sample " + line);
+                }
+                if (direction != SwipeRecognizer.DIRECTION_NONE) {
+                    assertEquals(name + " recognized twice",
+                            SwipeRecognizer.DIRECTION_NONE, recognized);
+                    recognized = direction;
+                }
+            }
+            if (name != null) check(name, expected, expectedLatency, recognized, recognizer);
+            assertTrue("empty corpus", count > 0);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void swipe_isRecognizedBeforeUp() {
+        SwipeRecognizer recognizer = new SwipeRecognizer(THRESHOLD);
+        recognizer.onDown(100, 500, 0);
+        assertEquals(SwipeRecognizer.DIRECTION_NONE, recognizer.onMove(100, 450, 8));
+        assertEquals(SwipeRecognizer.DIRECTION_UP, recognizer.onMove(100, 430, 16));
+        assertEquals(16, recognizer.getLatency());
+        // the rest of the touch is ignored
+        assertEquals(SwipeRecognizer.DIRECTION_NONE, recognizer.onMove(100, 700, 24));
+        assertEquals(SwipeRecognizer.DIRECTION_NONE, recognizer.onUp(100, 700, 32));
+    }
+
+    private static void check(String name, String expected, long expectedLatency,
+                              int recognized, SwipeRecognizer recognizer) {
+        assertEquals(name, expected, DIRECTION_NAMES[recognized]);
+        if (recognized != SwipeRecognizer.DIRECTION_NONE) {
+            assertEquals(name + " latency", expectedLatency, recognizer.getLatency());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TripleBufferTest {
+    /** A value the consumer could see half-written if buffers were shared. */
+    private static class Pair {
+        long first;
+        long second;
+    }
+
+    @Test
+    public void acquire_returnsLatestPublished() {
+        TripleBuffer<Pair> buffer = new TripleBuffer<Pair>(new Pair(), new Pair(), new Pair());
+        assertFalse(buffer.hasUpdate());
+        for (int i = 1; i <= 3; i++) {
+            buffer.getBack().first = i;
+            buffer.publish();
+        }
+        assertTrue(buffer.hasUpdate());
+        assertEquals(3, buffer.acquire().first);
+        assertFalse(buffer.hasUpdate());
+        // nothing new: the same front buffer again
+        assertEquals(3, buffer.acquire().first);
+    }
+
+    @Test
+    public void concurrentReader_neverSeesTornOrOlderValues() throws Exception {
+        final TripleBuffer<Pair> buffer =
+                new TripleBuffer<Pair>(new Pair(), new Pair(), new Pair());
+        final long count = 2000000;
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (long i = 1; i <= count; i++) {
+                    Pair back = buffer.getBack();
+                    back.first = i;
+                    back.second = i;
+                    buffer.publish();
+                }
+            }
+        };
+        producer.start();
+        long last = 0;
+        while (last < count) {
+            Pair front = buffer.acquire();
+            long first = front.first;
+            assertEquals(first, front.second);
+            assertTrue(first >= last);
+            last = first;
+        }
+        producer.join();
+    }
+}
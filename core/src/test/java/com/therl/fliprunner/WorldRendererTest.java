@@ -0,0 +1,76 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WorldRendererTest {
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    @Test
+    public void doDraw_drawsBackgroundPlayerAndEveryObstacle() {
+        World world = new World();
+        world.reset(42);
+        // run until the level has put something on screen
+        while (world.getObstacles().size() == 0) assertTrue(world.step());
+        WorldSnapshot snapshot = new WorldSnapshot();
+        snapshot.copyFrom(world, 0, true);
+
+        RecordingRenderer renderer = new RecordingRenderer();
+        assertTrue(renderer.beginFrame(WIDTH, HEIGHT));
+        new WorldRenderer().doDraw(renderer, snapshot, WIDTH, HEIGHT, 1);
+        renderer.endFrame();
+
+        assertEquals(1, renderer.getFrameCount());
+        assertEquals(RecordingRenderer.OP_BACKGROUND, renderer.getOp(0));
+        assertEquals(world.getDistance(), renderer.getScroll(0), 1);
+        assertEquals(1, renderer.countSprites(Renderer.SPRITE_PLAYER));
+        assertEquals(snapshot.getObstacleCount(),
+                renderer.countSprites(Renderer.SPRITE_OBSTACLE));
+        assertEquals(2 + snapshot.getObstacleCount(), renderer.getCallCount());
+
+        // the player sits an eighth of the way in, centred on its position
+        Player player = world.getPlayer();
+        assertEquals(Renderer.SPRITE_PLAYER, renderer.getSprite(1));
+        assertEquals(player.getCenterX() + WIDTH / 8,
+                (renderer.getLeft(1) + renderer.getRight(1)) / 2, 1);
+        assertEquals(HEIGHT / 2 - player.getCenterY(),
+                (renderer.getTop(1) + renderer.getBottom(1)) / 2, 1);
+        assertEquals(2 * Player.RADIUS, renderer.getRight(1) - renderer.getLeft(1), 0);
+
+        // obstacles keep their size and sit on their y, measured upwards
+        for (int i = 0; i < snapshot.getObstacleCount(); i++) {
+            int call = 2 + i;
+            assertEquals(snapshot.getObstacleWidth(i),
+                    renderer.getRight(call) - renderer.getLeft(call), 0.01);
+            assertEquals(HEIGHT / 2 - snapshot.getObstacleY(i), renderer.getBottom(call), 0.01);
+        }
+    }
+
+    @Test
+    public void doDraw_interpolatesBetweenSteps() {
+        World world = new World();
+        world.reset(7);
+        while (world.getObstacles().size() == 0) assertTrue(world.step());
+        // obstacles spawned by a step have not moved yet
+        assertTrue(world.step());
+        WorldSnapshot snapshot = new WorldSnapshot();
+        snapshot.copyFrom(world, 0, true);
+
+        RecordingRenderer renderer = new RecordingRenderer();
+        renderer.beginFrame(WIDTH, HEIGHT);
+        new WorldRenderer().doDraw(renderer, snapshot, WIDTH, HEIGHT, 0);
+        renderer.endFrame();
+        float prevLeft = renderer.getLeft(2);
+
+        renderer.beginFrame(WIDTH, HEIGHT);
+        new WorldRenderer().doDraw(renderer, snapshot, WIDTH, HEIGHT, 1);
+        renderer.endFrame();
+
+        // obstacles move left by one step between alpha 0 and 1
+        assertEquals(snapshot.getObstacleX(0) - snapshot.getObstaclePrevX(0),
+                renderer.getLeft(2) - prevLeft, 0.01);
+        assertTrue(renderer.getLeft(2) < prevLeft);
+    }
+}
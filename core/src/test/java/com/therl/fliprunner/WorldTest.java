@@ -0,0 +1,79 @@
+package com.therl.fliprunner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WorldTest {
+    private static final int MAX_TICKS = 120 * 60;
+
+    @Test
+    public void idlePlayer_crashesIntoFirstObstacle() throws Exception {
+        World world = new World();
+        world.reset(1);
+        while (world.step() && world.getTick() < MAX_TICKS) {
+            // no input
+        }
+        assertTrue(world.isCrashed());
+        assertFalse(world.step());
+    }
+
+    @Test
+    public void sameSeedAndInput_giveSameRun() throws Exception {
+        World a = new World();
+        World b = new World();
+        a.reset(42);
+        b.reset(42);
+        for (int i = 0; i < MAX_TICKS; i++) {
+            int command = i % 50 == 0 ? World.COMMAND_FLIP_UP : World.COMMAND_NONE;
+            a.applyCommand(command);
+            b.applyCommand(command);
+            assertEquals(a.step(), b.step());
+        }
+        assertEquals(a.getTick(), b.getTick());
+        assertEquals(a.getPlayer().getY(), b.getPlayer().getY(), 0);
+        assertEquals(a.getObstacles().size(), b.getObstacles().size());
+        for (int i = 0; i < a.getObstacles().size(); i++) {
+            int slot = a.getObstacles().slotAt(i);
+            assertEquals(slot, b.getObstacles().slotAt(i));
+            assertEquals(a.getObstacles().getX(slot), b.getObstacles().getX(slot), 0);
+            assertEquals(a.getObstacles().getY(slot), b.getObstacles().getY(slot), 0);
+        }
+    }
+
+    @Test
+    public void copy_continuesSameRun() throws Exception {
+        World original = new World();
+        original.reset(42);
+        for (int i = 0; i < 300; i++) {
+            original.applyCommand(i % 90 == 0 ? World.COMMAND_FLIP_UP : World.COMMAND_NONE);
+            original.step();
+        }
+        World copy = new World();
+        copy.reset(7);
+        copy.copyFrom(original);
+        for (int i = 0; i < MAX_TICKS; i++) {
+            int command = i % 70 == 0 ? World.COMMAND_FLIP_DOWN : World.COMMAND_NONE;
+            assertEquals(original.applyCommand(command), copy.applyCommand(command));
+            assertEquals(original.step(), copy.step());
+        }
+        assertEquals(original.getTick(), copy.getTick());
+        assertEquals(original.getPlayer().getY(), copy.getPlayer().getY(), 0);
+        assertEquals(original.getObstacles().size(), copy.getObstacles().size());
+        for (int i = 0; i < original.getObstacles().size(); i++) {
+            int slot = original.getObstacles().slotAt(i);
+            assertEquals(slot, copy.getObstacles().slotAt(i));
+            assertEquals(original.getObstacles().getX(slot), copy.getObstacles().getX(slot), 0);
+        }
+    }
+
+    @Test
+    public void flip_onlyWhileOnTheLine() throws Exception {
+        World world = new World();
+        world.reset(7);
+        assertTrue(world.applyCommand(World.COMMAND_FLIP_UP));
+        world.step();
+        assertFalse(world.applyCommand(World.COMMAND_FLIP_DOWN));
+        assertTrue(world.getPlayer().getY() > 0);
+    }
+}
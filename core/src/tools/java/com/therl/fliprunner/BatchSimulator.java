@@ -0,0 +1,268 @@
+package com.therl.fliprunner;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Plays thousands of seeded runs on every core, to see how a tuning of the
+ * physics plays.
+ *
+ * Each run is a World reset to its own seed and flipped at random by a
+ * SeededRandom seeded from the same seed, until the player crashes or the
+ * time limit is up. Runs are split into batches on a fork-join pool; every
+ * thread keeps its own worlds and reuses them, so nothing is allocated per
+ * run. In lockstep mode a batch steps all of its worlds one tick at a time
+ * instead of finishing one run before starting the next. Either way a run
+ * only depends on its seed, so the results are the same whatever the
+ * mode and however many threads there are.
+ */
+public class BatchSimulator {
+    /*
+     * How a run ended. A crash is filed under the PhysicsTable lane the
+     * player was in when it hit.
+     */
+    public static final int END_HIT_BELOW = PhysicsTable.LANE_BELOW;
+    public static final int END_HIT_LINE = PhysicsTable.LANE_LINE;
+    public static final int END_HIT_ABOVE = PhysicsTable.LANE_ABOVE;
+    public static final int END_SURVIVED = 3;
+    public static final int END_COUNT = 4;
+
+    /** Runs per batch, and the number of worlds a thread keeps */
+    private static final int BATCH_RUNS = 32;
+    /** Chance of a random flip on each step, in 1/1000s, as in SoakRunner */
+    private static final int FLIP_PER_MILLE = 20;
+    /** Mixed into the run seed for the flips, so they differ from the level */
+    private static final long FLIP_SEED = 0x5EED;
+
+    private final ForkJoinPool mPool;
+    private final ThreadLocal<Worlds> mWorlds = new ThreadLocal<Worlds>() {
+        @Override
+        protected Worlds initialValue() {
+            return new Worlds();
+        }
+    };
+
+    /** One thread's worlds, reused across batches. */
+    private static class Worlds {
+        final World[] worlds = new World[BATCH_RUNS];
+        final SeededRandom[] flips = new SeededRandom[BATCH_RUNS];
+
+        Worlds() {
+            for (int i = 0; i < BATCH_RUNS; i++) {
+                worlds[i] = new World();
+                flips[i] = new SeededRandom(0);
+            }
+        }
+    }
+
+    /**
+     * @param parallelism number of threads to run on
+     */
+    public BatchSimulator(int parallelism) {
+        mPool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Plays runs on seeds firstSeed to firstSeed + runs - 1.
+     *
+     * @param maxTicks steps after which a run counts as survived
+     * @param lockstep whether batches step their worlds tick by tick
+     */
+    public Stats run(PhysicsTable physics, long firstSeed, int runs, long maxTicks,
+                     boolean lockstep) {
+        Stats stats = new Stats(runs);
+        mPool.invoke(new Batch(physics, firstSeed, 0, runs, maxTicks, lockstep, stats));
+        return stats;
+    }
+
+    public void shutdown() {
+        mPool.shutdown();
+    }
+
+    /**
+     * A range of runs, split in halves until it fits a thread's worlds.
+     */
+    @SuppressWarnings("serial")
+    private class Batch extends RecursiveAction {
+        private final PhysicsTable mPhysics;
+        private final long mFirstSeed;
+        private final int mFrom;
+        private final int mTo;
+        private final long mMaxTicks;
+        private final boolean mLockstep;
+        private final Stats mStats;
+
+        Batch(PhysicsTable physics, long firstSeed, int from, int to, long maxTicks,
+              boolean lockstep, Stats stats) {
+            mPhysics = physics;
+            mFirstSeed = firstSeed;
+            mFrom = from;
+            mTo = to;
+            mMaxTicks = maxTicks;
+            mLockstep = lockstep;
+            mStats = stats;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom > BATCH_RUNS) {
+                int middle = (mFrom + mTo) >>> 1;
+                invokeAll(new Batch(mPhysics, mFirstSeed, mFrom, middle, mMaxTicks, mLockstep,
+                                mStats),
+                        new Batch(mPhysics, mFirstSeed, middle, mTo, mMaxTicks, mLockstep,
+                                mStats));
+                return;
+            }
+            Worlds worlds = mWorlds.get();
+            if (mLockstep) {
+                lockstep(worlds);
+            } else {
+                for (int run = mFrom; run < mTo; run++) {
+                    World world = worlds.worlds[0];
+                    SeededRandom flips = worlds.flips[0];
+                    start(world, flips, run);
+                    while (world.getTick() < mMaxTicks && step(world, flips)) {
+                        // until it crashes
+                    }
+                    finish(world, run);
+                }
+            }
+        }
+
+        private void lockstep(Worlds worlds) {
+            int count = mTo - mFrom;
+            for (int i = 0; i < count; i++) start(worlds.worlds[i], worlds.flips[i], mFrom + i);
+            int alive = count;
+            for (long tick = 0; tick < mMaxTicks && alive > 0; tick++) {
+                for (int i = 0; i < count; i++) {
+                    World world = worlds.worlds[i];
+                    if (world.isCrashed()) continue;
+                    if (!step(world, worlds.flips[i])) alive--;
+                }
+            }
+            for (int i = 0; i < count; i++) finish(worlds.worlds[i], mFrom + i);
+        }
+
+        private void start(World world, SeededRandom flips, int run) {
+            long seed = mFirstSeed + run;
+            world.setPhysics(mPhysics);
+            world.reset(seed);
+            flips.setSeed(seed ^ FLIP_SEED);
+        }
+
+        private boolean step(World world, SeededRandom flips) {
+            if (flips.nextInt(1000) < FLIP_PER_MILLE) {
+                world.applyCommand(flips.nextInt(2) == 0
+                        ? World.COMMAND_FLIP_UP : World.COMMAND_FLIP_DOWN);
+            }
+            return world.step();
+        }
+
+        private void finish(World world, int run) {
+            int end = world.isCrashed()
+                    ? world.getPlayer().getJumping() + 1 : END_SURVIVED;
+            mStats.set(run, world.getTick(), end);
+        }
+    }
+
+    /**
+     * What became of every run of a batch. Each run writes only its own
+     * entries, so batches fill it in without locking.
+     */
+    public static class Stats {
+        private final long[] mTicks;
+        private final byte[] mEnds;
+        /** mTicks sorted, made on first use */
+        private long[] mSorted;
+
+        Stats(int runs) {
+            mTicks = new long[runs];
+            mEnds = new byte[runs];
+        }
+
+        void set(int run, long ticks, int end) {
+            mTicks[run] = ticks;
+            mEnds[run] = (byte) end;
+        }
+
+        public int getRuns() {
+            return mTicks.length;
+        }
+
+        /**
+         * @return steps run i lasted
+         */
+        public long getTicks(int run) {
+            return mTicks[run];
+        }
+
+        /**
+         * @return how run i ended, one of the END_* constants
+         */
+        public int getEnd(int run) {
+            return mEnds[run];
+        }
+
+        /**
+         * @return the number of runs that ended the given way
+         */
+        public int getEndCount(int end) {
+            int count = 0;
+            for (byte e : mEnds) if (e == end) count++;
+            return count;
+        }
+
+        public double getMeanSeconds() {
+            long total = 0;
+            for (long ticks : mTicks) total += ticks;
+            return mTicks.length == 0 ? 0 : total * World.PHYS_STEP_SEC / mTicks.length;
+        }
+
+        /**
+         * @param fraction between 0 and 1
+         * @return the survival time that this fraction of runs did not reach
+         */
+        public double getPercentileSeconds(double fraction) {
+            if (mTicks.length == 0) return 0;
+            if (mSorted == null) {
+                mSorted = mTicks.clone();
+                Arrays.sort(mSorted);
+            }
+            int index = (int) Math.min(mSorted.length - 1, (long) (fraction * mSorted.length));
+            return mSorted[index] * World.PHYS_STEP_SEC;
+        }
+
+        /**
+         * @param bucketSeconds width of each bucket
+         * @param buckets number of buckets; the last one takes everything
+         *        longer
+         * @return the number of runs that lasted within each bucket
+         */
+        public int[] getHistogram(double bucketSeconds, int buckets) {
+            int[] histogram = new int[buckets];
+            for (long ticks : mTicks) {
+                int bucket = (int) (ticks * World.PHYS_STEP_SEC / bucketSeconds);
+                histogram[Math.min(buckets - 1, bucket)]++;
+            }
+            return histogram;
+        }
+
+        /**
+         * @return a one line summary of the survival times and ends
+         */
+        public String summary() {
+            int runs = Math.max(1, getRuns());
+            return String.format(Locale.US,
+                    "survived mean %.1f s, p10 %.1f s, p50 %.1f s, p90 %.1f s;"
+                            + " hit below %.0f%%, on line %.0f%%, above %.0f%%, to the end %.0f%%",
+                    getMeanSeconds(), getPercentileSeconds(0.1), getPercentileSeconds(0.5),
+                    getPercentileSeconds(0.9),
+                    100.0 * getEndCount(END_HIT_BELOW) / runs,
+                    100.0 * getEndCount(END_HIT_LINE) / runs,
+                    100.0 * getEndCount(END_HIT_ABOVE) / runs,
+                    100.0 * getEndCount(END_SURVIVED) / runs);
+        }
+    }
+}
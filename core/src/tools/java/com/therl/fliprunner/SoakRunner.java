@@ -0,0 +1,432 @@
+package com.therl.fliprunner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Drives the game loop headless for a number of simulated minutes and fails
+ * if it got slower or started to leak.
+ *
+ * Each step goes through what GameThread does between frames: input is
+ * offered to and drained from an InputQueue, the world is stepped and a
+ * WorldSnapshot is published through a TripleBuffer. A crash restarts the
+ * run at once, the way a tap on the lose screen calls doStart(), so a leak
+ * per restart piles up quickly.
+ *
+ * Flips come from runs an AutoPlayer played before the soak starts, so
+ * that runs last a minute and a half or so and get well into the speed
+ * ramp and the shrinking gaps, or from an input log recorded by the game.
+ * With --grow N the view widens in N steps from one screen to eight, and
+ * with it how many obstacles are alive at once; the bot runs are played at
+ * each width.
+ *
+ * Throughput is timed over windows of fixed wall-clock length, after a
+ * warm-up of fixed wall-clock length, and the best window of each width
+ * counts: a simulated minute takes only tens of milliseconds, far too
+ * short to time on its own, and the best of several windows is the one
+ * least disturbed by the JIT and the rest of the machine. Each width gets
+ * --windows windows, narrowest first, and the widest goes on until at
+ * least --minutes simulated minutes have passed. Heap growth and GC count
+ * are taken over all of it.
+ *
+ * Reports ticks per second, heap growth and GC count, and compares them to
+ * a baseline properties file. Exits with 1 on a regression and 2 on bad
+ * arguments. Run it with
+ *
+ *   ./gradlew :core:soak
+ *
+ * or write a new baseline for this machine with -PsoakWriteBaseline.
+ */
+public class SoakRunner {
+    private static final int TICKS_PER_MINUTE = 60 * 120;
+    /** Obstacle capacity, enough for the widest view --grow gets to */
+    private static final int CAPACITY = 256;
+    /** Widest view --grow gets to */
+    private static final int MAX_VIEW_WIDTH = 8 * World.DEFAULT_VIEW_WIDTH;
+    /** Bot runs played per view width, from seeds --seed on */
+    private static final int BOT_RUNS = 3;
+    /** Search time per bot decision; enough never to cut a search short */
+    private static final long BOT_BUDGET_NANOS = 1000000000L;
+    /** Longest bot run, should it never crash */
+    private static final long MAX_BOT_TICKS = 10 * TICKS_PER_MINUTE;
+    /** Steps between looks at the clock, ten simulated seconds */
+    private static final int CHUNK_TICKS = 10 * 120;
+
+    /*
+     * Baseline keys
+     */
+    /** Followed by "." and the view width */
+    private static final String KEY_TICKS_PER_SEC = "ticksPerSec";
+    private static final String KEY_HEAP_GROWTH = "heapGrowthBytes";
+    private static final String KEY_GC_COUNT = "gcCount";
+
+    /*
+     * Exit codes
+     */
+    private static final int EXIT_REGRESSION = 1;
+    private static final int EXIT_USAGE = 2;
+
+    /** Heap growth below this is noise, whatever the baseline says */
+    private static final long HEAP_SLACK_BYTES = 1024 * 1024;
+    /** Collections above the baseline that are still noise */
+    private static final int GC_SLACK = 2;
+
+    private double mMinutes = 10;
+    private double mWarmupSeconds = 5;
+    private double mWindowSeconds = 2;
+    private int mWindows = 5;
+    private long mSeed = 1;
+    /** View widths to soak at, from one screen up to MAX_VIEW_WIDTH */
+    private int mWidths = 1;
+    private File mReplay;
+    private File mBaseline;
+    private boolean mWriteBaseline;
+    /** Largest drop in throughput that still passes; timing is noisy */
+    private double mTolerance = 0.3;
+
+    private final World mWorld = new World(CAPACITY);
+    private final InputQueue mInput = new InputQueue(64);
+    private final TripleBuffer<WorldSnapshot> mSnapshots = new TripleBuffer<WorldSnapshot>(
+            new WorldSnapshot(CAPACITY), new WorldSnapshot(CAPACITY),
+            new WorldSnapshot(CAPACITY));
+    private final InputQueue.Consumer mConsumer = new InputQueue.Consumer() {
+        @Override
+        public void onCommand(int command, long timeNanos) {
+            mWorld.applyCommand(command);
+        }
+    };
+    /** Runs to play at each view width, widest last */
+    private final List<List<InputLog>> mRuns = new ArrayList<List<InputLog>>();
+    /** Index into mRuns of the runs being played */
+    private int mWidthIndex;
+    private int mNextRun;
+    /** The run being played, and the index of its next command */
+    private InputLog mRun;
+    private int mNextCommand;
+    /** Most obstacles alive at once since the last reset of this count */
+    private int mMaxObstacles;
+    private int mRestarts;
+    /** Steps taken so far, as the snapshot time */
+    private long mTicks;
+
+    public static void main(String[] args) throws IOException {
+        SoakRunner runner = new SoakRunner();
+        if (!runner.parse(args)) {
+            System.err.println("usage: SoakRunner [--minutes N] [--warmup-seconds N]"
+                    + " [--window-seconds N] [--windows N] [--seed N] [--grow N]"
+                    + " [--replay input.log] [--baseline file [--write-baseline]]"
+                    + " [--tolerance 0.3]");
+            System.exit(EXIT_USAGE);
+        }
+        System.exit(runner.run());
+    }
+
+    private boolean parse(String[] args) {
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--minutes")) {
+                    mMinutes = Double.parseDouble(args[++i]);
+                } else if (arg.equals("--warmup-seconds")) {
+                    mWarmupSeconds = Double.parseDouble(args[++i]);
+                } else if (arg.equals("--window-seconds")) {
+                    mWindowSeconds = Double.parseDouble(args[++i]);
+                } else if (arg.equals("--windows")) {
+                    mWindows = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--seed")) {
+                    mSeed = Long.parseLong(args[++i]);
+                } else if (arg.equals("--grow")) {
+                    mWidths = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--replay")) {
+                    mReplay = new File(args[++i]);
+                } else if (arg.equals("--baseline")) {
+                    mBaseline = new File(args[++i]);
+                } else if (arg.equals("--write-baseline")) {
+                    mWriteBaseline = true;
+                } else if (arg.equals("--tolerance")) {
+                    mTolerance = Double.parseDouble(args[++i]);
+                } else {
+                    return false;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return false;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return mMinutes > 0 && mWindowSeconds > 0 && mWindows > 0 && mWidths > 0
+                && (!mWriteBaseline || mBaseline != null);
+    }
+
+    private int run() throws IOException {
+        int widths = mWidths;
+        if (mReplay != null) {
+            List<InputLog> runs;
+            InputStream in = new FileInputStream(mReplay);
+            try {
+                runs = InputLog.readAll(in);
+            } finally {
+                in.close();
+            }
+            if (runs.isEmpty()) {
+                System.err.println("No runs in " + mReplay);
+                return EXIT_USAGE;
+            }
+            for (int i = 0; i < widths; i++) mRuns.add(runs);
+        } else {
+            playBot(widths);
+        }
+
+        startWidth(0);
+        soakFor((long) (mWarmupSeconds * 1e9));
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        long gcBefore = gcCount();
+        long minTicks = (long) (mMinutes * TICKS_PER_MINUTE);
+        long windowNanos = (long) (mWindowSeconds * 1e9);
+        int restartsBefore = mRestarts;
+        long ticks = 0;
+        long elapsed = 0;
+        int windows = 0;
+        double[] ticksPerSec = new double[widths];
+        while (windows < widths * mWindows || ticks < minTicks) {
+            int width = Math.min(windows / mWindows, widths - 1);
+            startWidth(width);
+            long start = System.nanoTime();
+            long windowTicks = soakFor(windowNanos);
+            long windowElapsed = System.nanoTime() - start;
+            double windowTicksPerSec = windowTicks * 1e9 / windowElapsed;
+            System.out.println(String.format(Locale.US,
+                    "window %d: %d px wide, %.0f ticks/s, up to %d obstacles alive",
+                    windows, viewWidth(width), windowTicksPerSec, mMaxObstacles));
+            ticksPerSec[width] = Math.max(ticksPerSec[width], windowTicksPerSec);
+            ticks += windowTicks;
+            elapsed += windowElapsed;
+            windows++;
+        }
+        long gcs = gcCount() - gcBefore;
+        System.gc();
+        long heapGrowth = memory.getHeapMemoryUsage().getUsed() - heapBefore;
+
+        System.out.println(String.format(Locale.US,
+                "%d ticks (%.1f min simulated) in %.2f s over %d windows, %d restarts,"
+                        + " %.1f s simulated per run",
+                ticks, ticks / (double) TICKS_PER_MINUTE, elapsed / 1e9, windows,
+                mRestarts - restartsBefore,
+                ticks / 120.0 / Math.max(1, mRestarts - restartsBefore)));
+        for (int i = 0; i < widths; i++) {
+            System.out.println(String.format(Locale.US, "%d px wide: best %.0f ticks/s",
+                    viewWidth(i), ticksPerSec[i]));
+        }
+        System.out.println(String.format(Locale.US, "heap growth %d bytes, %d collections",
+                heapGrowth, gcs));
+
+        if (mBaseline == null) return 0;
+        if (mWriteBaseline) {
+            writeBaseline(ticksPerSec, heapGrowth, gcs);
+            System.out.println("Wrote " + mBaseline);
+            return 0;
+        }
+        return compare(ticksPerSec, heapGrowth, gcs);
+    }
+
+    /**
+     * Steps the loop in chunks of CHUNK_TICKS until the given wall-clock
+     * time has passed.
+     *
+     * @return the number of steps taken
+     */
+    private long soakFor(long nanos) {
+        long end = System.nanoTime() + nanos;
+        long ticks = 0;
+        do {
+            soak(CHUNK_TICKS);
+            ticks += CHUNK_TICKS;
+        } while (System.nanoTime() < end);
+        return ticks;
+    }
+
+    /**
+     * Steps the loop the given number of times, restarting after every
+     * crash and at the end of every recorded run.
+     */
+    private void soak(long ticks) {
+        for (long i = 0; i < ticks; i++, mTicks++) {
+            // the run's flips go through the queue like swipes do
+            long tick = mWorld.getTick();
+            while (mNextCommand < mRun.size() && mRun.getTick(mNextCommand) <= tick) {
+                mInput.offer(mRun.getCommand(mNextCommand++), System.nanoTime());
+            }
+            mInput.drain(mConsumer);
+            boolean alive = mWorld.step();
+            if (mRun.getEndTick() >= 0 && mWorld.getTick() >= mRun.getEndTick()) alive = false;
+            int obstacles = mWorld.getObstacles().size();
+            if (obstacles > mMaxObstacles) mMaxObstacles = obstacles;
+            mSnapshots.getBack().copyFrom(mWorld, mTicks, true);
+            mSnapshots.publish();
+            mSnapshots.acquire();
+            if (!alive) restart();
+        }
+    }
+
+    /**
+     * Plays the runs of the given entry of mRuns from now on, starting
+     * with a fresh one.
+     */
+    private void startWidth(int index) {
+        mWidthIndex = index;
+        mNextRun = 0;
+        mMaxObstacles = 0;
+        restart();
+    }
+
+    /**
+     * Starts the next run, the way GameThread.doStart() does.
+     */
+    private void restart() {
+        List<InputLog> runs = mRuns.get(mWidthIndex);
+        mRun = runs.get(mNextRun);
+        mNextRun = (mNextRun + 1) % runs.size();
+        mNextCommand = 0;
+        mWorld.setViewSize(mRun.getViewWidth(), mRun.getViewHeight());
+        if (mWidths > 1 && mReplay != null) {
+            // a recorded log has the device's size; a wider view no longer
+            // matches the recording, which is fine for soaking
+            mWorld.setViewSize(viewWidth(mWidthIndex), World.DEFAULT_VIEW_HEIGHT);
+        }
+        mWorld.reset(mRun.getSeed());
+        mRestarts++;
+    }
+
+    /**
+     * @return the view width of entry index of mRuns, one screen for the
+     *         first and MAX_VIEW_WIDTH for the last
+     */
+    private int viewWidth(int index) {
+        if (mWidths == 1) return World.DEFAULT_VIEW_WIDTH;
+        return World.DEFAULT_VIEW_WIDTH
+                + (MAX_VIEW_WIDTH - World.DEFAULT_VIEW_WIDTH) * index / (mWidths - 1);
+    }
+
+    /**
+     * Lets an AutoPlayer play BOT_RUNS runs at each view width and keeps
+     * their flips in mRuns. Done before the soak, since the search is far
+     * slower than the loop; with a budget it never runs out of, the same
+     * seeds give the same runs on every machine.
+     */
+    private void playBot(int widths) {
+        long start = System.nanoTime();
+        AutoPlayer bot = new AutoPlayer(CAPACITY);
+        bot.setBudgetNanos(BOT_BUDGET_NANOS);
+        long ticks = 0;
+        for (int w = 0; w < widths; w++) {
+            List<InputLog> runs = new ArrayList<InputLog>();
+            for (int i = 0; i < BOT_RUNS; i++) {
+                InputLog run = new InputLog(mSeed + i, viewWidth(w), World.DEFAULT_VIEW_HEIGHT);
+                mWorld.setViewSize(run.getViewWidth(), run.getViewHeight());
+                mWorld.reset(run.getSeed());
+                while (!mWorld.isCrashed() && mWorld.getTick() < MAX_BOT_TICKS) {
+                    int command = bot.decide(mWorld);
+                    if (command != World.COMMAND_NONE) {
+                        run.add(mWorld.getTick(), command);
+                        mWorld.applyCommand(command);
+                    }
+                    mWorld.step();
+                }
+                run.setEndTick(mWorld.getTick());
+                ticks += mWorld.getTick();
+                runs.add(run);
+            }
+            mRuns.add(runs);
+        }
+        System.out.println(String.format(Locale.US,
+                "bot played %d runs of %.1f s on average in %.1f s", widths * BOT_RUNS,
+                ticks / 120.0 / (widths * BOT_RUNS), (System.nanoTime() - start) / 1e9));
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * @return 0 if every number is within tolerance of the baseline,
+     *         EXIT_REGRESSION otherwise
+     */
+    private int compare(double[] ticksPerSec, long heapGrowth, long gcs) throws IOException {
+        Properties baseline = new Properties();
+        InputStream in = new FileInputStream(mBaseline);
+        try {
+            baseline.load(in);
+        } finally {
+            in.close();
+        }
+        boolean failed = false;
+        for (int i = 0; i < ticksPerSec.length; i++) {
+            String key = KEY_TICKS_PER_SEC + "." + viewWidth(i);
+            String value = baseline.getProperty(key);
+            if (value == null) {
+                System.out.println("No " + key + " in the baseline; not compared");
+                continue;
+            }
+            double minTicks = Double.parseDouble(value) * (1 - mTolerance);
+            if (ticksPerSec[i] < minTicks) {
+                System.out.println(String.format(Locale.US,
+                        "REGRESSION: %.0f ticks/s at %d px, baseline allows %.0f",
+                        ticksPerSec[i], viewWidth(i), minTicks));
+                failed = true;
+            }
+        }
+        long maxHeap = Long.parseLong(baseline.getProperty(KEY_HEAP_GROWTH, "0"))
+                + HEAP_SLACK_BYTES;
+        if (heapGrowth > maxHeap) {
+            System.out.println("REGRESSION: heap grew " + heapGrowth
+                    + " bytes, baseline allows " + maxHeap);
+            failed = true;
+        }
+        long maxGcs = (long) (Long.parseLong(baseline.getProperty(KEY_GC_COUNT, "0"))
+                * (1 + mTolerance)) + GC_SLACK;
+        if (gcs > maxGcs) {
+            System.out.println("REGRESSION: " + gcs + " collections, baseline allows "
+                    + maxGcs);
+            failed = true;
+        }
+        if (failed) return EXIT_REGRESSION;
+        System.out.println("Within baseline " + mBaseline);
+        return 0;
+    }
+
+    private void writeBaseline(double[] ticksPerSec, long heapGrowth, long gcs)
+            throws IOException {
+        Properties baseline = new Properties();
+        for (int i = 0; i < ticksPerSec.length; i++) {
+            baseline.setProperty(KEY_TICKS_PER_SEC + "." + viewWidth(i),
+                    String.format(Locale.US, "%.0f", ticksPerSec[i]));
+        }
+        baseline.setProperty(KEY_HEAP_GROWTH, Long.toString(Math.max(0, heapGrowth)));
+        baseline.setProperty(KEY_GC_COUNT, Long.toString(gcs));
+        OutputStream out = new FileOutputStream(mBaseline);
+        try {
+            baseline.store(out, "SoakRunner baseline; machine specific, regenerate with"
+                    + " ./gradlew :core:soak -PsoakWriteBaseline");
+        } finally {
+            out.close();
+        }
+    }
+}
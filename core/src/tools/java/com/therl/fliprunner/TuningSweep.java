@@ -0,0 +1,117 @@
+package com.therl.fliprunner;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Locale;
+
+/**
+ * Sweeps the physics tuning: for every combination of the given gravity,
+ * impulse and speed factors, plays a batch of seeded runs on a
+ * BatchSimulator and prints how long they survived and what ended them.
+ * The factors scale a physics table, PhysicsTable.DEFAULT unless --table
+ * names one, e.g. app/src/main/assets/physics.table. Run it with
+ *
+ *   ./gradlew :core:sweep -PsweepArgs="--runs 10000 --gravity 0.8,1,1.2"
+ *
+ * Exits with 2 on bad arguments.
+ */
+public class TuningSweep {
+    private static final int EXIT_USAGE = 2;
+
+    private int mRuns = 1000;
+    private long mSeed = 1;
+    private double mMaxSeconds = 120;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+    private boolean mLockstep;
+    private String mTable;
+    private double[] mGravity = {1};
+    private double[] mImpulse = {1};
+    private double[] mSpeed = {1};
+
+    public static void main(String[] args) throws IOException {
+        TuningSweep sweep = new TuningSweep();
+        if (!sweep.parse(args)) {
+            System.err.println("usage: TuningSweep [--runs N] [--seed N] [--max-seconds N]"
+                    + " [--threads N] [--lockstep] [--table physics.table]"
+                    + " [--gravity a,b,..] [--impulse a,b,..] [--speed a,b,..]");
+            System.exit(EXIT_USAGE);
+        }
+        sweep.run();
+    }
+
+    private boolean parse(String[] args) {
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--runs")) {
+                    mRuns = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--seed")) {
+                    mSeed = Long.parseLong(args[++i]);
+                } else if (arg.equals("--max-seconds")) {
+                    mMaxSeconds = Double.parseDouble(args[++i]);
+                } else if (arg.equals("--threads")) {
+                    mThreads = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--lockstep")) {
+                    mLockstep = true;
+                } else if (arg.equals("--table")) {
+                    mTable = args[++i];
+                } else if (arg.equals("--gravity")) {
+                    mGravity = parseList(args[++i]);
+                } else if (arg.equals("--impulse")) {
+                    mImpulse = parseList(args[++i]);
+                } else if (arg.equals("--speed")) {
+                    mSpeed = parseList(args[++i]);
+                } else {
+                    return false;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return false;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return mRuns > 0 && mMaxSeconds > 0 && mThreads > 0;
+    }
+
+    private static double[] parseList(String list) {
+        String[] fields = list.split(",");
+        double[] values = new double[fields.length];
+        for (int i = 0; i < fields.length; i++) values[i] = Double.parseDouble(fields[i]);
+        return values;
+    }
+
+    private void run() throws IOException {
+        PhysicsTable base = PhysicsTable.DEFAULT;
+        if (mTable != null) {
+            Reader in = new InputStreamReader(new FileInputStream(mTable), "UTF-8");
+            try {
+                base = PhysicsTable.read(in);
+            } finally {
+                in.close();
+            }
+        }
+        long maxTicks = (long) (mMaxSeconds / World.PHYS_STEP_SEC);
+        BatchSimulator simulator = new BatchSimulator(mThreads);
+        try {
+            for (double gravity : mGravity) {
+                for (double impulse : mImpulse) {
+                    for (double speed : mSpeed) {
+                        PhysicsTable physics = base.scale(gravity, impulse, speed);
+                        long start = System.nanoTime();
+                        BatchSimulator.Stats stats =
+                                simulator.run(physics, mSeed, mRuns, maxTicks, mLockstep);
+                        long elapsed = System.nanoTime() - start;
+                        System.out.println(String.format(Locale.US,
+                                "gravity x%.2f impulse x%.2f speed x%.2f: %d runs in %.2f s; %s",
+                                gravity, impulse, speed, mRuns, elapsed / 1e9,
+                                stats.summary()));
+                    }
+                }
+            }
+        } finally {
+            simulator.shutdown();
+        }
+    }
+}
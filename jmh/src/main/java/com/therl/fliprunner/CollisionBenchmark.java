@@ -0,0 +1,70 @@
+package com.therl.fliprunner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-step collision pass: CollisionDetector's grid broad phase against
+ * a plain loop over every obstacle, on the same scene. The player is in mid
+ * flip so the swept test does real work.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollisionBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int entityCount;
+
+    private ObstaclePool mPool;
+    private Player mPlayer;
+    private CollisionDetector mDetector;
+
+    @Setup
+    public void setUp() {
+        mPool = new ObstaclePool(entityCount);
+        ObstacleBenchmark.fill(mPool, entityCount, new SeededRandom(1));
+        mPool.updatePhysics(World.PHYS_STEP_SEC);
+        mPlayer = new Player();
+        mPlayer.setJumping(Player.JUMPING_UP);
+        mPlayer.updatePhysics(World.PHYS_STEP_SEC);
+        mDetector = new CollisionDetector(entityCount);
+    }
+
+    @Benchmark
+    public int grid() {
+        return mDetector.findHit(mPlayer, mPool);
+    }
+
+    @Benchmark
+    public int bruteForce() {
+        double startX = mPlayer.getPrevCenterX() - mPool.getStepDistance();
+        double startY = mPlayer.getPrevCenterY();
+        double endX = mPlayer.getCenterX();
+        double endY = mPlayer.getCenterY();
+        for (int i = 0; i < mPool.size(); i++) {
+            int slot = mPool.slotAt(i);
+            float left = mPool.getX(slot);
+            float bottom = mPool.getY(slot);
+            if (CollisionDetector.sweptCircleHitsBox(startX, startY, endX, endY,
+                    Player.RADIUS, left, bottom, left + mPool.getWidth(slot),
+                    bottom + mPool.getHeight(slot))) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+}
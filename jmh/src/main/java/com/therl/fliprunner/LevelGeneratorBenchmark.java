@@ -0,0 +1,56 @@
+package com.therl.fliprunner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One step of streaming the level: scroll, cull and spawn. The lookahead is
+ * stretched so that about entityCount obstacles are alive at once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LevelGeneratorBenchmark {
+    /** Rough track length per obstacle once the gaps stop shrinking. */
+    private static final float PX_PER_OBSTACLE = 500;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int entityCount;
+
+    private ObstaclePool mPool;
+    private LevelGenerator mGenerator;
+
+    @Setup
+    public void setUp() {
+        mPool = new ObstaclePool(entityCount * 2);
+        mGenerator = new LevelGenerator(mPool);
+        mGenerator.reset(1);
+        mGenerator.setLookahead(entityCount * PX_PER_OBSTACLE);
+        // Fill the lookahead before measuring; spawning is capped per tick.
+        for (int i = 0; i < entityCount * 4; i++) {
+            tick();
+        }
+    }
+
+    @Benchmark
+    public int tick() {
+        mPool.updatePhysics(World.PHYS_STEP_SEC);
+        mPool.cull(-World.DEFAULT_VIEW_WIDTH / 8);
+        mGenerator.update(World.PHYS_STEP_SEC);
+        return mPool.size();
+    }
+}
@@ -0,0 +1,70 @@
+package com.therl.fliprunner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One step of ObstaclePool scrolling and culling. Everything culled is
+ * spawned again at the right edge, so the pool stays at entityCount.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ObstacleBenchmark {
+    /** Width of the strip of track the obstacles live on... */
+    static final float SPAN = 4096;
+    /** ...starting this far left of the player. */
+    static final float LEFT = -SPAN / 4;
+    /** Height of the strip, centred on the running line. */
+    static final float HEIGHT = 1024;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int entityCount;
+
+    private ObstaclePool mPool;
+
+    @Setup
+    public void setUp() {
+        mPool = new ObstaclePool(entityCount);
+        fill(mPool, entityCount, new SeededRandom(1));
+    }
+
+    @Benchmark
+    public int updateAndCull() {
+        mPool.updatePhysics(World.PHYS_STEP_SEC);
+        int culled = mPool.cull(LEFT);
+        for (int i = 0; i < culled; i++) {
+            mPool.spawn(LEFT + SPAN, (i & 7) * 64 - HEIGHT / 2,
+                    Obstacle.DEFAULT_WIDTH, Obstacle.DEFAULT_HEIGHT);
+        }
+        return mPool.size();
+    }
+
+    /**
+     * Scatters obstacles over the strip, leaving a lane free around the
+     * player's column so that collision queries do not stop at the first
+     * hit.
+     */
+    static void fill(ObstaclePool pool, int count, SeededRandom random) {
+        while (pool.size() < count) {
+            float x = LEFT + random.nextFloat() * SPAN;
+            if (x > -200 && x < 200) continue;
+            float y = random.nextFloat() * HEIGHT - HEIGHT / 2;
+            pool.spawn(x, y, Obstacle.DEFAULT_WIDTH, Obstacle.DEFAULT_HEIGHT);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.therl.fliprunner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One frame of particles: update, copy into a snapshot and draw through a
+ * RecordingRenderer. Whatever died is emitted again, so the system stays
+ * at particleCount, half sparks and half streaks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParticleBenchmark {
+    static final int WIDTH = 1920;
+    static final int HEIGHT = 1080;
+    static final double FRAME_SEC = 1 / 60.0;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int particleCount;
+
+    private ParticleSystem mParticles;
+    private WorldSnapshot mSnapshot;
+    private WorldRenderer mWorldRenderer;
+    private RecordingRenderer mRenderer;
+    private int mFrame;
+
+    @Setup
+    public void setUp() {
+        mParticles = new ParticleSystem(particleCount);
+        mParticles.setBudget(particleCount);
+        World world = new World();
+        world.reset(1);
+        mSnapshot = new WorldSnapshot();
+        mSnapshot.copyFrom(world, 0, true);
+        mWorldRenderer = new WorldRenderer();
+        mRenderer = new RecordingRenderer();
+    }
+
+    @Benchmark
+    public int frame() {
+        int kind = (mFrame++ & 1) == 0 ? ParticleSystem.KIND_SPARK : ParticleSystem.KIND_STREAK;
+        mParticles.emit(kind, 0, 0, particleCount, 400, 1);
+        mParticles.update(FRAME_SEC);
+        mSnapshot.copyParticles(mParticles);
+        mRenderer.beginFrame(WIDTH, HEIGHT);
+        mWorldRenderer.doDraw(mRenderer, mSnapshot, WIDTH, HEIGHT, 1);
+        mRenderer.endFrame();
+        return mRenderer.getCallCount();
+    }
+}
@@ -0,0 +1,54 @@
+package com.therl.fliprunner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One physics step of Player.updatePhysics() over a crowd of players that
+ * keep flipping, so both the airborne and the landing branches are timed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlayerBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int entityCount;
+
+    private Player[] mPlayers;
+
+    @Setup
+    public void setUp() {
+        mPlayers = new Player[entityCount];
+        for (int i = 0; i < entityCount; i++) {
+            mPlayers[i] = new Player();
+        }
+    }
+
+    @Benchmark
+    public double updatePhysics() {
+        double sum = 0;
+        for (int i = 0; i < mPlayers.length; i++) {
+            Player player = mPlayers[i];
+            if (player.getJumping() == Player.JUMPING_NONE) {
+                player.setJumping((i & 1) == 0 ? Player.JUMPING_UP : Player.JUMPING_DOWN);
+            }
+            player.updatePhysics(World.PHYS_STEP_SEC);
+            sum += player.getY();
+        }
+        return sum;
+    }
+}